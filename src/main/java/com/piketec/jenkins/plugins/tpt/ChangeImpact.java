@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
+
+import hudson.model.Run;
+import hudson.scm.ChangeLogSet;
+import jenkins.scm.RunWithSCM;
+
+/**
+ * Selects the test sets and scenario groups affected by the SCM changes of a build. The selection
+ * is based on the {@link JenkinsConfiguration#getChangeImpactMapping() change impact mapping} of a
+ * configuration, which maps Ant style patterns of changed files to test sets or scenario groups,
+ * one rule per line:
+ * 
+ * <pre>
+ * src/lights/** = Lights Tests, Common Tests
+ * doc/** =
+ * </pre>
+ * <p>
+ * The changes of all builds since the last successful build are taken into account, because the
+ * test cases affected by the changes of a failed or aborted build may not have been executed
+ * successfully yet. If nothing can be said about the impact of the changes, e.g. because there is
+ * no previous successful build, no changes were recorded or a changed file is not covered by the
+ * mapping, no selection is made and all test cases are executed.
+ * </p>
+ */
+final class ChangeImpact {
+
+  private ChangeImpact() {
+  }
+
+  /**
+   * Collects the test sets and scenario groups affected by the SCM changes of the build and of all
+   * builds since the last successful build.
+   * 
+   * @param build
+   *          the build whose changes are evaluated
+   * @param mapping
+   *          the change impact mapping of the configuration
+   * @param logger
+   *          to log the selection
+   * @return the names of the affected test sets and scenario groups or <code>null</code> if all
+   *         test cases have to be executed
+   */
+  @CheckForNull
+  static Set<String> getAffectedTestSetsOrGroups(Run< ? , ? > build, String mapping,
+                                                 TptLogger logger) {
+    if (StringUtils.isBlank(mapping)) {
+      return null;
+    }
+    Run< ? , ? > lastSuccessfulBuild = build.getPreviousSuccessfulBuild();
+    if (lastSuccessfulBuild == null) {
+      logger.info("There is no previous successful build. Executing all test cases.");
+      return null;
+    }
+    Set<String> changedPaths = new TreeSet<>();
+    Run< ? , ? > run = build;
+    while (run != null && run != lastSuccessfulBuild) {
+      changedPaths.addAll(getChangedPaths(run));
+      run = run.getPreviousBuild();
+    }
+    if (changedPaths.isEmpty()) {
+      logger.info("No SCM changes recorded since the last successful build "
+          + lastSuccessfulBuild.getDisplayName() + ". Executing all test cases.");
+      return null;
+    }
+    return getAffectedTestSetsOrGroups(changedPaths, mapping, logger);
+  }
+
+  /**
+   * Collects the test sets and scenario groups affected by the given changed files.
+   * 
+   * @param changedPaths
+   *          the paths of the changed files relative to the SCM root
+   * @param mapping
+   *          the change impact mapping of the configuration
+   * @param logger
+   *          to log the selection
+   * @return the names of the affected test sets and scenario groups or <code>null</code> if all
+   *         test cases have to be executed
+   */
+  @CheckForNull
+  @Restricted(NoExternalUse.class)
+  static Set<String> getAffectedTestSetsOrGroups(Collection<String> changedPaths, String mapping,
+                                                 TptLogger logger) {
+    List<Rule> rules = parse(mapping, logger);
+    Set<String> affected = new TreeSet<>();
+    for (String path : changedPaths) {
+      boolean covered = false;
+      for (Rule rule : rules) {
+        if (SelectorUtils.matchPath(toSystemSeparators(rule.pattern), toSystemSeparators(path))) {
+          affected.addAll(rule.testSetsOrGroups);
+          covered = true;
+        }
+      }
+      if (!covered) {
+        logger.info("The change of \"" + path + "\" is not covered by the change impact mapping."
+            + " Executing all test cases.");
+        return null;
+      }
+    }
+    logger.info(changedPaths.size() + " changed files affect the test sets and scenario groups "
+        + affected);
+    return affected;
+  }
+
+  private static Set<String> getChangedPaths(Run< ? , ? > build) {
+    Set<String> changedPaths = new TreeSet<>();
+    if (build instanceof RunWithSCM) {
+      for (ChangeLogSet< ? extends ChangeLogSet.Entry> changeSet : ((RunWithSCM< ? , ? >)build)
+          .getChangeSets()) {
+        for (ChangeLogSet.Entry entry : changeSet) {
+          changedPaths.addAll(entry.getAffectedPaths());
+        }
+      }
+    }
+    return changedPaths;
+  }
+
+  private static List<Rule> parse(String mapping, TptLogger logger) {
+    List<Rule> rules = new ArrayList<>();
+    for (String rawLine : mapping.split("\\r?\\n")) {
+      String line = rawLine.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int separator = line.indexOf('=');
+      if (separator <= 0) {
+        logger.warn("Ignoring invalid line \"" + line + "\" of the change impact mapping.");
+        continue;
+      }
+      Rule rule = new Rule(line.substring(0, separator).trim());
+      for (String testSetOrGroup : line.substring(separator + 1).split(",")) {
+        if (!testSetOrGroup.trim().isEmpty()) {
+          rule.testSetsOrGroups.add(testSetOrGroup.trim());
+        }
+      }
+      rules.add(rule);
+    }
+    return rules;
+  }
+
+  private static String toSystemSeparators(String path) {
+    return path.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+  }
+
+  private static final class Rule {
+
+    private final String pattern;
+
+    private final List<String> testSetsOrGroups = new ArrayList<>();
+
+    Rule(String pattern) {
+      this.pattern = pattern;
+    }
+
+  }
+
+}
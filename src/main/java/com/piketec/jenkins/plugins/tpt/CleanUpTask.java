@@ -117,7 +117,8 @@ public class CleanUpTask {
   }
 
   /**
-   * removes and executes a list of CleanUpTask from the registry
+   * removes and executes a list of CleanUpTask from the registry. Afterwards the TPT instances
+   * reserved for the build are released.
    * 
    * @param distributingJobRun
    *          to identify to which registry the task is going to be removed
@@ -130,14 +131,18 @@ public class CleanUpTask {
   public static synchronized boolean cleanUp(Run< ? , ? > distributingJobRun, TptLogger logger)
       throws InterruptedException {
     List<CleanUpTask> tasks = registry.remove(distributingJobRun);
-    if (tasks == null) {
-      // nothing to clean up
-      return true;
-    }
-    boolean success = true;
-    for (CleanUpTask task : tasks) {
-      success &= task.clean(logger);
+    try {
+      if (tasks == null) {
+        // nothing to clean up
+        return true;
+      }
+      boolean success = true;
+      for (CleanUpTask task : tasks) {
+        success &= task.clean(logger);
+      }
+      return success;
+    } finally {
+      TptPortAllocator.release(distributingJobRun);
     }
-    return success;
   }
 }
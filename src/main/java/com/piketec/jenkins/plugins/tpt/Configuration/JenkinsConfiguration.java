@@ -45,6 +45,11 @@ import jenkins.model.Jenkins;
  */
 public class JenkinsConfiguration implements Describable<JenkinsConfiguration> {
 
+  /**
+   * Value for {@link #setCores(String)} to use as many cores as the node has
+   */
+  public static final String AUTO_CORES = "auto";
+
   private boolean enableTest = DescriptorImpl.getDefaultEnableTest();
 
   @CheckForNull
@@ -67,6 +72,17 @@ public class JenkinsConfiguration implements Describable<JenkinsConfiguration> {
   @CheckForNull
   private String id = null;
 
+  @CheckForNull
+  private String cores = null;
+
+  private boolean distributePlatforms = false;
+
+  @CheckForNull
+  private String cacheInputFiles = null;
+
+  @CheckForNull
+  private String changeImpactMapping = null;
+
   /**
    * the execution configuration is used by tpt to determine which file and which arguments is used.
    * later on, the back 2 back test determine the reference files with this.
@@ -202,6 +218,82 @@ public class JenkinsConfiguration implements Describable<JenkinsConfiguration> {
     this.id = Util.fixEmpty(id);
   }
 
+  /**
+   * @return the number of cores TPT should use for the test execution, {@link #AUTO_CORES} for the
+   *         number of cores of the node or empty if the setting of the execution configuration
+   *         should be used.
+   */
+  public String getCores() {
+    return Util.fixNull(cores);
+  }
+
+  /**
+   * @param cores
+   *          the number of cores TPT should use for the test execution, {@link #AUTO_CORES} for the
+   *          number of cores of the node or empty if the setting of the execution configuration
+   *          should be used.
+   */
+  @DataBoundSetter
+  public void setCores(String cores) {
+    this.cores = Util.fixEmptyAndTrim(cores);
+  }
+
+  /**
+   * @return <code>true</code> if a distributing job should distribute every combination of a test
+   *         case and an active execution configuration item as a separate work item
+   */
+  public boolean isDistributePlatforms() {
+    return distributePlatforms;
+  }
+
+  /**
+   * @param distributePlatforms
+   *          <code>true</code> to distribute every combination of a test case and an active
+   *          execution configuration item as a separate work item
+   */
+  @DataBoundSetter
+  public void setDistributePlatforms(boolean distributePlatforms) {
+    this.distributePlatforms = distributePlatforms;
+  }
+
+  /**
+   * @return the Ant style patterns of the files in the workspace the test results depend on, e.g.
+   *         the binaries of the system under test. Empty if there are none.
+   */
+  public String getCacheInputFiles() {
+    return Util.fixNull(cacheInputFiles);
+  }
+
+  /**
+   * @param cacheInputFiles
+   *          the comma separated Ant style patterns of the files in the workspace the test results
+   *          depend on. Cached test results are only reused if none of these files changed.
+   */
+  @DataBoundSetter
+  public void setCacheInputFiles(String cacheInputFiles) {
+    this.cacheInputFiles = Util.fixEmptyAndTrim(cacheInputFiles);
+  }
+
+  /**
+   * @return the mapping of changed files to the test sets or scenario groups affected by them, one
+   *         rule per line. Empty if all test cases are executed on every build.
+   */
+  public String getChangeImpactMapping() {
+    return Util.fixNull(changeImpactMapping);
+  }
+
+  /**
+   * @param changeImpactMapping
+   *          the mapping of changed files to the test sets or scenario groups affected by them, one
+   *          rule <code>&lt;Ant style pattern&gt; = &lt;test set or scenario group&gt;, ...</code>
+   *          per line. If set, only the test cases affected by the SCM changes of the build are
+   *          executed.
+   */
+  @DataBoundSetter
+  public void setChangeImpactMapping(String changeImpactMapping) {
+    this.changeImpactMapping = Util.fixEmptyAndTrim(changeImpactMapping);
+  }
+
   /**
    * 
    * This method resolves all variables that are used for the definition of the test set and the
@@ -223,6 +315,10 @@ public class JenkinsConfiguration implements Describable<JenkinsConfiguration> {
     normalizedCfg.setEnableTest(isEnableTest());
     normalizedCfg.setTimeout(getTimeout());
     normalizedCfg.setTestSet(Util.replaceMacro(testSet, environment));
+    normalizedCfg.setCores(Util.replaceMacro(cores, environment));
+    normalizedCfg.setDistributePlatforms(isDistributePlatforms());
+    normalizedCfg.setCacheInputFiles(Util.replaceMacro(cacheInputFiles, environment));
+    normalizedCfg.setChangeImpactMapping(Util.replaceMacro(changeImpactMapping, environment));
     return normalizedCfg;
   }
 
@@ -277,6 +373,29 @@ public class JenkinsConfiguration implements Describable<JenkinsConfiguration> {
       }
     }
 
+    /**
+     * @param cores
+     *          The number of cores
+     * @return An error if the value is neither empty, {@link JenkinsConfiguration#AUTO_CORES}, a
+     *         positive integer nor a variable
+     */
+    @SuppressWarnings({ "lgtm[jenkins/csrf]", "lgtm[jenkins/no-permission-check]" })
+    public static FormValidation doCheckCores(@QueryParameter String cores) {
+      String trimmed = Util.fixEmptyAndTrim(cores);
+      if (trimmed == null || AUTO_CORES.equalsIgnoreCase(trimmed) || trimmed.contains("$")) {
+        return FormValidation.ok();
+      }
+      try {
+        if (Integer.parseInt(trimmed) >= 1) {
+          return FormValidation.ok();
+        }
+      } catch (NumberFormatException e) {
+        // NOP, error below
+      }
+      return FormValidation
+          .error("Enter a positive number, \"" + AUTO_CORES + "\" or leave the field empty.");
+    }
+
     /**
      * @return <code>true</code>
      */
@@ -0,0 +1,361 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
+
+import hudson.FilePath;
+
+/**
+ * The options of a distributing job build with all $-variables expanded and all numbers parsed.
+ * The distributing job gets them from {@link TptPlugin} and hands them to its worker jobs via the
+ * {@link WorkLoad workloads}. Every option has its own setter, so the options cannot be mixed up
+ * like positional constructor parameters. Options that are not set keep the default of
+ * {@link TptPlugin.DescriptorImpl}.
+ */
+public final class DistributingSettings {
+
+  private FilePath[] exePaths = new FilePath[0];
+
+  private String arguments = "";
+
+  private int tptPort = Utils.DEFAULT_TPT_PORT;
+
+  private String tptBindingName = TptPlugin.DescriptorImpl.getDefaultTptBindingName();
+
+  private long tptStartupWaitTime = Utils.DEFAULT_STARTUP_WAIT_TIME * 1000;
+
+  private String workerJobName = "";
+
+  private int workerJobCount = 1;
+
+  private int workerJobTries = 1;
+
+  private int workerBatchSize = 0;
+
+  private double speculationFactor = 0;
+
+  private int workerJobPriority = 1;
+
+  private boolean keepTptProjectOpen = false;
+
+  private boolean recordRmiStatistics = false;
+
+  private boolean shareQueueAcrossConfigurations = false;
+
+  private String resultCacheDir = "";
+
+  private String jUnitXmlPath = "";
+
+  private LogLevel jUnitLogLevel = TptPlugin.DescriptorImpl.getDefaultJUnitLogLevel();
+
+  private boolean enableJunit = false;
+
+  /**
+   * @return the paths to the tpt executables
+   */
+  public FilePath[] getExePaths() {
+    return exePaths.clone();
+  }
+
+  /**
+   * @param exePaths
+   *          the paths to the tpt executables
+   */
+  public void setExePaths(FilePath[] exePaths) {
+    this.exePaths = exePaths.clone();
+  }
+
+  /**
+   * @return the startup arguments if a fresh TPT is started
+   */
+  public String getArguments() {
+    return arguments;
+  }
+
+  /**
+   * @param arguments
+   *          the startup arguments if a fresh TPT is started
+   */
+  public void setArguments(String arguments) {
+    this.arguments = arguments;
+  }
+
+  /**
+   * @return the port for binding to the TptApi
+   */
+  public int getTptPort() {
+    return tptPort;
+  }
+
+  /**
+   * @param tptPort
+   *          the port for binding to the TptApi
+   */
+  public void setTptPort(int tptPort) {
+    this.tptPort = tptPort;
+  }
+
+  /**
+   * @return the binding name used to connect to the TptApi (for the registry)
+   */
+  public String getTptBindingName() {
+    return tptBindingName;
+  }
+
+  /**
+   * @param tptBindingName
+   *          the binding name used to connect to the TptApi (for the registry)
+   */
+  public void setTptBindingName(String tptBindingName) {
+    this.tptBindingName = tptBindingName;
+  }
+
+  /**
+   * @return the time in milliseconds to wait for TPT to start up
+   */
+  public long getTptStartupWaitTime() {
+    return tptStartupWaitTime;
+  }
+
+  /**
+   * @param tptStartupWaitTime
+   *          the time in milliseconds to wait for TPT to start up
+   */
+  public void setTptStartupWaitTime(long tptStartupWaitTime) {
+    this.tptStartupWaitTime = tptStartupWaitTime;
+  }
+
+  /**
+   * @return the name of the worker job, used for putting the workload to the right worker job
+   */
+  public String getWorkerJobName() {
+    return workerJobName;
+  }
+
+  /**
+   * @param workerJobName
+   *          the name of the worker job, used for putting the workload to the right worker job
+   */
+  public void setWorkerJobName(String workerJobName) {
+    this.workerJobName = workerJobName;
+  }
+
+  /**
+   * @return the number of worker job builds that are started per configuration
+   */
+  public int getWorkerJobCount() {
+    return workerJobCount;
+  }
+
+  /**
+   * @param workerJobCount
+   *          the number of worker job builds that are started per configuration
+   */
+  public void setWorkerJobCount(int workerJobCount) {
+    this.workerJobCount = workerJobCount;
+  }
+
+  /**
+   * @return how often a failed worker job build is tried
+   */
+  public int getWorkerJobTries() {
+    return workerJobTries;
+  }
+
+  /**
+   * @param workerJobTries
+   *          how often a failed worker job build is tried
+   */
+  public void setWorkerJobTries(int workerJobTries) {
+    this.workerJobTries = workerJobTries;
+  }
+
+  /**
+   * @return the number of test cases a worker job takes at once from the queue shared by all
+   *         worker jobs. A value below 1 means every worker job gets a fixed sub test set.
+   */
+  public int getWorkerBatchSize() {
+    return workerBatchSize;
+  }
+
+  /**
+   * @param workerBatchSize
+   *          the number of test cases a worker job takes at once from the queue shared by all
+   *          worker jobs. A value below 1 means every worker job gets a fixed sub test set.
+   */
+  public void setWorkerBatchSize(int workerBatchSize) {
+    this.workerBatchSize = workerBatchSize;
+  }
+
+  /**
+   * @return the factor of its expected duration after which a batch of a shared queue is executed
+   *         a second time by an idle worker job. 0 disables speculative execution.
+   */
+  public double getSpeculationFactor() {
+    return speculationFactor;
+  }
+
+  /**
+   * @param speculationFactor
+   *          the factor of its expected duration after which a batch of a shared queue is executed
+   *          a second time by an idle worker job. 0 disables speculative execution.
+   */
+  public void setSpeculationFactor(double speculationFactor) {
+    this.speculationFactor = speculationFactor;
+  }
+
+  /**
+   * @return the weight of the build when the worker job is shared with other distributing job
+   *         builds
+   */
+  public int getWorkerJobPriority() {
+    return workerJobPriority;
+  }
+
+  /**
+   * @param workerJobPriority
+   *          the weight of the build when the worker job is shared with other distributing job
+   *          builds. Values below 1 are treated as 1.
+   */
+  public void setWorkerJobPriority(int workerJobPriority) {
+    this.workerJobPriority = Math.max(1, workerJobPriority);
+  }
+
+  /**
+   * @return if the TPT project should not be closed at the end so the next build can reuse it
+   */
+  public boolean isKeepTptProjectOpen() {
+    return keepTptProjectOpen;
+  }
+
+  /**
+   * @param keepTptProjectOpen
+   *          if the TPT project should not be closed at the end so the next build can reuse it
+   */
+  public void setKeepTptProjectOpen(boolean keepTptProjectOpen) {
+    this.keepTptProjectOpen = keepTptProjectOpen;
+  }
+
+  /**
+   * @return if the number and the latency of the TPT API calls of the distributing job and the
+   *         worker jobs should be recorded
+   */
+  public boolean isRecordRmiStatistics() {
+    return recordRmiStatistics;
+  }
+
+  /**
+   * @param recordRmiStatistics
+   *          if the number and the latency of the TPT API calls of the distributing job and the
+   *          worker jobs should be recorded
+   */
+  public void setRecordRmiStatistics(boolean recordRmiStatistics) {
+    this.recordRmiStatistics = recordRmiStatistics;
+  }
+
+  /**
+   * @return if the worker jobs should take the batches of all configurations from one queue
+   */
+  public boolean isShareQueueAcrossConfigurations() {
+    return shareQueueAcrossConfigurations;
+  }
+
+  /**
+   * @param shareQueueAcrossConfigurations
+   *          if the worker jobs should take the batches of all configurations from one queue
+   */
+  public void setShareQueueAcrossConfigurations(boolean shareQueueAcrossConfigurations) {
+    this.shareQueueAcrossConfigurations = shareQueueAcrossConfigurations;
+  }
+
+  /**
+   * @return the directory where test results are cached, empty if the cache is disabled
+   */
+  public String getResultCacheDir() {
+    return resultCacheDir;
+  }
+
+  /**
+   * @param resultCacheDir
+   *          the directory where test results are cached, empty if the cache is disabled
+   */
+  public void setResultCacheDir(String resultCacheDir) {
+    this.resultCacheDir = resultCacheDir;
+  }
+
+  /**
+   * @return the path where the jUnit XML is going to be created
+   */
+  public String getJUnitXmlPath() {
+    return jUnitXmlPath;
+  }
+
+  /**
+   * @param jUnitXmlPath
+   *          the path where the jUnit XML is going to be created
+   */
+  public void setJUnitXmlPath(String jUnitXmlPath) {
+    this.jUnitXmlPath = jUnitXmlPath;
+  }
+
+  /**
+   * @return the threshold for the severity of the log messages in the jUnit XML
+   */
+  public LogLevel getJUnitLogLevel() {
+    return jUnitLogLevel;
+  }
+
+  /**
+   * @param jUnitLogLevel
+   *          the threshold for the severity of the log messages in the jUnit XML
+   */
+  public void setJUnitLogLevel(LogLevel jUnitLogLevel) {
+    this.jUnitLogLevel = jUnitLogLevel;
+  }
+
+  /**
+   * @return if the results should be published as jUnit XML
+   */
+  public boolean isEnableJunit() {
+    return enableJunit;
+  }
+
+  /**
+   * @param enableJunit
+   *          if the results should be published as jUnit XML
+   */
+  public void setEnableJunit(boolean enableJunit) {
+    this.enableJunit = enableJunit;
+  }
+
+  /**
+   * @return the log level of the JUnit XML fragments the worker jobs write or <code>null</code> if
+   *         they should not write them because JUnit results are not published
+   */
+  @CheckForNull
+  public LogLevel getJUnitFragmentLogLevel() {
+    return enableJunit ? jUnitLogLevel : null;
+  }
+
+}
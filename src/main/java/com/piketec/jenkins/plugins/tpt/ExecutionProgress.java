@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.api.callables.ExecutionProgressListener;
+import com.piketec.jenkins.plugins.tpt.api.callables.ExecutionProgressListener.FinishedTestCase;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Run;
+
+/**
+ * Aggregates the test cases finished by the worker jobs of a distributing job build while they
+ * are executed. The distributing job build logs how many test cases are done, the estimated time
+ * until all test cases are done and the throughput of every node at most every
+ * {@link #LOG_INTERVAL} milliseconds.
+ * <p>
+ * Test cases executed again by a retry or as a copy of a long running batch are counted again, so
+ * the numbers are an estimation.
+ * </p>
+ */
+public class ExecutionProgress {
+
+  static final long LOG_INTERVAL = 10 * 1000;
+
+  private static Map<Run< ? , ? >, ExecutionProgress> progresses = new HashMap<>();
+
+  private final TptLogger logger;
+
+  private final long startTime = System.currentTimeMillis();
+
+  private long lastLog = startTime;
+
+  private int total = 0;
+
+  private int done = 0;
+
+  private int failed = 0;
+
+  private final Map<String, NodeProgress> nodes = new TreeMap<>();
+
+  private ExecutionProgress(TptLogger logger) {
+    this.logger = logger;
+  }
+
+  /**
+   * Starts to aggregate the progress of a distributing job build.
+   * 
+   * @param distributingJobRun
+   *          the build of the distributing job
+   * @param logger
+   *          the logger of the distributing job build to log the progress to
+   * @return the progress of the build
+   */
+  public static synchronized ExecutionProgress start(Run< ? , ? > distributingJobRun,
+                                                     TptLogger logger) {
+    ExecutionProgress progress = new ExecutionProgress(logger);
+    progresses.put(distributingJobRun, progress);
+    return progress;
+  }
+
+  /**
+   * @param distributingJobRun
+   *          the build of the distributing job
+   * @return the progress of the build or <code>null</code> if it is not aggregated
+   */
+  @CheckForNull
+  public static synchronized ExecutionProgress get(Run< ? , ? > distributingJobRun) {
+    return progresses.get(distributingJobRun);
+  }
+
+  /**
+   * Stops to aggregate the progress of a distributing job build.
+   * 
+   * @param distributingJobRun
+   *          the build of the distributing job
+   */
+  public static synchronized void stop(Run< ? , ? > distributingJobRun) {
+    progresses.remove(distributingJobRun);
+  }
+
+  /**
+   * @param count
+   *          the number of test cases that are distributed to the worker jobs additionally
+   */
+  public synchronized void addTestCases(int count) {
+    total += count;
+  }
+
+  /**
+   * Creates the listener a worker job passes to the execution on its node.
+   * 
+   * @param workspace
+   *          the workspace of the worker job, used to determine the node
+   * @return the listener that adds the finished test cases to this progress
+   */
+  public ExecutionProgressListener getListener(FilePath workspace) {
+    Computer computer = workspace.toComputer();
+    final String nodeName = computer == null ? workspace.getRemote()
+        : computer.getName().isEmpty() ? "built-in" : computer.getName();
+    synchronized (this) {
+      if (!nodes.containsKey(nodeName)) {
+        nodes.put(nodeName, new NodeProgress());
+      }
+    }
+    return new ExecutionProgressListener() {
+
+      @Override
+      public void testCasesFinished(List<FinishedTestCase> finished) {
+        ExecutionProgress.this.testCasesFinished(nodeName, finished);
+      }
+    };
+  }
+
+  private synchronized void testCasesFinished(String nodeName, List<FinishedTestCase> finished) {
+    for (FinishedTestCase testCase : finished) {
+      String status = testCase.getStatus();
+      if ("ResultFailed".equals(status) || "ResultError".equals(status)) {
+        failed++;
+      }
+    }
+    done += finished.size();
+    nodes.get(nodeName).done += finished.size();
+    long now = System.currentTimeMillis();
+    if (now - lastLog >= LOG_INTERVAL || done >= total) {
+      lastLog = now;
+      logger.info(getSummary());
+    }
+  }
+
+  /**
+   * @return how many test cases are done, the estimated remaining time and the throughput of every
+   *         node
+   */
+  public synchronized String getSummary() {
+    long now = System.currentTimeMillis();
+    int doneTestCases = Math.min(done, total);
+    StringBuilder sb = new StringBuilder();
+    sb.append("Progress: ").append(doneTestCases).append(" of ").append(total)
+        .append(" test cases done");
+    if (failed > 0) {
+      sb.append(", ").append(failed).append(" failed");
+    }
+    if (doneTestCases > 0 && doneTestCases < total) {
+      long remaining = (now - startTime) * (total - doneTestCases) / doneTestCases;
+      sb.append(", ETA ").append(remaining / 1000).append("s");
+    }
+    for (Map.Entry<String, NodeProgress> node : nodes.entrySet()) {
+      double minutes = Math.max(1, now - node.getValue().startTime) / 60000.0;
+      sb.append(String.format("%n  %s: %d test cases, %.1f per minute", node.getKey(),
+          node.getValue().done, node.getValue().done / minutes));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The test cases finished on one node.
+   */
+  private static final class NodeProgress {
+
+    private final long startTime = System.currentTimeMillis();
+
+    private int done = 0;
+
+  }
+
+}
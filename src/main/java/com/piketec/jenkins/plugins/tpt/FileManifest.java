@@ -0,0 +1,250 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * The list of all regular files below a directory. The directory is walked on the node that holds
+ * it, so a whole tree is listed with a single remote call instead of one call per file and
+ * directory.
+ */
+public class FileManifest implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<Entry> entries;
+
+  private FileManifest(List<Entry> entries) {
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Lists all files below the given directory on the node that holds the directory.
+   * 
+   * @param dir
+   *          the directory to list
+   * @return the manifest of the directory. Empty if the directory does not exist.
+   * @throws IOException
+   *           If the directory could not be walked
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static FileManifest of(FilePath dir) throws IOException, InterruptedException {
+    return of(dir, false);
+  }
+
+  /**
+   * Lists all files below the given directory on the node that holds the directory. Optionally the
+   * content digest of every file is computed on that node, too.
+   * 
+   * @param dir
+   *          the directory to list
+   * @param withDigests
+   *          if the digests of the file contents should be computed
+   * @return the manifest of the directory. Empty if the directory does not exist.
+   * @throws IOException
+   *           If the directory could not be walked
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static FileManifest of(FilePath dir, boolean withDigests)
+      throws IOException, InterruptedException {
+    return dir.act(new ListFilesCallable(withDigests));
+  }
+
+  /**
+   * Lists all files below the given local directory.
+   * 
+   * @param dir
+   *          the directory to list
+   * @return the manifest of the directory. Empty if the directory does not exist.
+   * @throws IOException
+   *           If the directory could not be walked
+   */
+  public static FileManifest of(File dir) throws IOException {
+    return of(dir, false);
+  }
+
+  /**
+   * Lists all files below the given local directory.
+   * 
+   * @param dir
+   *          the directory to list
+   * @param withDigests
+   *          if the digests of the file contents should be computed
+   * @return the manifest of the directory. Empty if the directory does not exist.
+   * @throws IOException
+   *           If the directory could not be walked
+   */
+  public static FileManifest of(File dir, final boolean withDigests) throws IOException {
+    final List<Entry> entries = new ArrayList<>();
+    if (!dir.isDirectory()) {
+      return new FileManifest(entries);
+    }
+    final Path root = dir.toPath();
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (attrs.isRegularFile()) {
+          String relativePath = root.relativize(file).toString().replace(File.separatorChar, '/');
+          String digest = withDigests ? Util.getDigestOf(file.toFile()) : null;
+          entries.add(new Entry(relativePath, attrs.size(), attrs.lastModifiedTime().toMillis(),
+              digest));
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e) {
+        // files that vanished or cannot be accessed are simply not listed
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return new FileManifest(entries);
+  }
+
+  /**
+   * @return all files of the manifest
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Finds all files with the given name, ignoring the case.
+   * 
+   * @param fileName
+   *          the name of the files to find
+   * @return the matching files
+   */
+  public List<Entry> find(String fileName) {
+    List<Entry> result = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (entry.getName().equalsIgnoreCase(fileName)) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A single file of a {@link FileManifest}.
+   */
+  public static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String digest;
+
+    private Entry(String path, long size, long lastModified, String digest) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+
+    /**
+     * @return the path of the file relative to the listed directory, separated by '/'
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @return the name of the file without its directory
+     */
+    public String getName() {
+      return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return the size of the file in bytes
+     */
+    public long getSize() {
+      return size;
+    }
+
+    /**
+     * @return the modification time of the file in milliseconds since the epoch
+     */
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return the MD5 digest of the file content as hex string or <code>null</code> if the
+     *         manifest has been created without digests
+     */
+    @CheckForNull
+    public String getDigest() {
+      return digest;
+    }
+
+    @Override
+    public String toString() {
+      return path;
+    }
+
+  }
+
+  private static final class ListFilesCallable extends MasterToSlaveFileCallable<FileManifest> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean withDigests;
+
+    ListFilesCallable(boolean withDigests) {
+      this.withDigests = withDigests;
+    }
+
+    @Override
+    public FileManifest invoke(File dir, VirtualChannel channel) throws IOException {
+      return of(dir, withDigests);
+    }
+
+  }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.CheckForNull;
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLStreamException;
+
+import com.piketec.jenkins.plugins.tpt.TptLog.LogEntry;
+import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Transforms the TPT test data in a directory into a JUnit XML file. This code is executed on the
+ * node that holds the test data, so the test data directory is walked with a single file system
+ * walk instead of one remote call per directory. The "testcase_information.xml" files are parsed in
+ * parallel and every test case is written to the JUnit XML file as soon as it is parsed, so only a
+ * bounded number of parsed test cases is held in memory at any time.
+ * <p>
+ * A worker job converts only the test data of its batch into a fragment. Fragments do not contain
+ * the global assesslet result, which is only known when all test cases are executed.
+ * </p>
+ */
+class JUnitConversionCallable extends MasterToSlaveFileCallable<JUnitConversionCallable.Result> {
+
+  private static final long serialVersionUID = 1L;
+
+  static final String TESTCASE_INFORMATION_XML = "testcase_information.xml";
+
+  private static final int MAX_PARSER_THREADS = 8;
+
+  private final String tptFileName;
+
+  private final String jUnitXmlFile;
+
+  private final LogLevel logLevel;
+
+  private final boolean fragment;
+
+  /**
+   * @param tptFileName
+   *          the name of the TPT file the tests originate from
+   * @param jUnitXmlFile
+   *          the path of the JUnit XML file to write. It must be on the same node as the test data.
+   * @param logLevel
+   *          the threshold for the severity of the log messages written to the JUnit XML file
+   * @param fragment
+   *          <code>true</code> if the test data of a single batch is converted
+   */
+  JUnitConversionCallable(String tptFileName, String jUnitXmlFile, LogLevel logLevel,
+                          boolean fragment) {
+    this.tptFileName = tptFileName;
+    this.jUnitXmlFile = jUnitXmlFile;
+    this.logLevel = logLevel;
+    this.fragment = fragment;
+  }
+
+  @Override
+  public Result invoke(File testDataDir, VirtualChannel channel)
+      throws IOException, InterruptedException {
+    Result result = new Result();
+    List<File> files = findTestcaseInformationFiles(testDataDir);
+    FilePath xmlFile = new FilePath(new File(testDataDir, "test_summary.xml"));
+    TestCasesParseResult testSummaryTestcases;
+    if (xmlFile.exists()) {
+      testSummaryTestcases = TestcaseSummaryParser.parseXml(xmlFile);
+    } else if (fragment && !files.isEmpty()) {
+      testSummaryTestcases = new TestCasesParseResult(new ArrayList<Testcase>(), null);
+    } else {
+      throw new IOException("No \"test_summary.xml\" found in \"" + testDataDir + "\"");
+    }
+    XmlStreamWriter xmlPub = new XmlStreamWriter();
+    try {
+      xmlPub.initalize(new FilePath(new File(jUnitXmlFile)));
+      xmlPub.writeTestsuite(tptFileName);
+      // Wenn es kein testcase_information.xml gibt bedeutet nicht, dass es keine Tests gibt. (Es
+      // ist wegen den GenerateOverviewReport bug)
+      // Es muss dann trotzdem eine test_summary.xml geben bei der testDataDir
+      if (files.isEmpty()) {
+        for (Testcase tc : testSummaryTestcases.testCases) {
+          writeTestcase(xmlPub, tc);
+          result.testCaseCount++;
+        }
+      } else {
+        // we use the testcase_information.xml files, if available. But we need to add the global
+        // assesslet result from test summary xml.
+        writeTestcasesInParallel(xmlPub, files, result);
+      }
+      if (!fragment) {
+        writeGlobalAssessletTestcase(xmlPub, tptFileName,
+            testSummaryTestcases.virtualGlobalAssessletTestCase);
+      }
+      return result;
+    } catch (XMLStreamException e) {
+      throw new IOException("XML stream error: " + e.getMessage());
+    } catch (FactoryConfigurationError e) {
+      throw new IOException("XML configuration error: " + e.getMessage());
+    } finally {
+      xmlPub.close();
+    }
+  }
+
+  /**
+   * Parses the given files with a thread pool and writes the test cases in the order of the files.
+   * At most twice as many files as there are threads are parsed ahead of the writer.
+   */
+  private void writeTestcasesInParallel(XmlStreamWriter xmlPub, List<File> files, Result result)
+      throws XMLStreamException, InterruptedException {
+    int threadCount =
+        Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARSER_THREADS));
+    ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+    try {
+      LinkedList<Future<Testcase>> pending = new LinkedList<>();
+      LinkedList<File> pendingFiles = new LinkedList<>();
+      for (final File f : files) {
+        if (pending.size() >= 2 * threadCount) {
+          writeParsedTestcase(xmlPub, pendingFiles.poll(), pending.poll(), result);
+        }
+        pending.add(pool.submit(new Callable<Testcase>() {
+
+          @Override
+          public Testcase call() throws IOException, InterruptedException {
+            return TestcaseParser.parseXml(new FilePath(f));
+          }
+        }));
+        pendingFiles.add(f);
+      }
+      while (!pending.isEmpty()) {
+        writeParsedTestcase(xmlPub, pendingFiles.poll(), pending.poll(), result);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private void writeParsedTestcase(XmlStreamWriter xmlPub, File f, Future<Testcase> future,
+                                   Result result)
+      throws XMLStreamException, InterruptedException {
+    try {
+      writeTestcase(xmlPub, future.get());
+      result.testCaseCount++;
+    } catch (ExecutionException e) {
+      result.errors.add("File \"" + f + "\": " + e.getCause().getMessage());
+    }
+  }
+
+  /**
+   * Writes the result of the global assesslets as a virtual test case.
+   */
+  static void writeGlobalAssessletTestcase(XmlStreamWriter xmlPub, String tptFileName,
+                                           @CheckForNull Testcase globalAssessletTestCase)
+      throws XMLStreamException {
+    if (globalAssessletTestCase == null) {
+      return;
+    }
+    if (globalAssessletTestCase.getResult() == TptResult.PASSED) {
+      xmlPub.writeTestcase(tptFileName, globalAssessletTestCase);
+    } else {
+      xmlPub.writeTestcaseError(tptFileName, globalAssessletTestCase,
+          globalAssessletTestCase.getResult().name());
+    }
+  }
+
+  private void writeTestcase(XmlStreamWriter xmlPub, Testcase tc) throws XMLStreamException {
+    if (tc.getLogEntries(LogLevel.ERROR).isEmpty() && TptResult.PASSED.equals(tc.getResult())) {
+      xmlPub.writeTestcase(tptFileName, tc);
+    } else {
+      StringBuilder log = new StringBuilder();
+      log.append(tc.getResult().name());
+      for (LogEntry entry : tc.getLogEntries(logLevel)) {
+        log.append('\n');
+        log.append('[').append(entry.level.name()).append("] ").append(entry.message);
+      }
+      xmlPub.writeTestcaseError(tptFileName, tc, log.toString());
+    }
+  }
+
+  private static List<File> findTestcaseInformationFiles(File testDataDir) throws IOException {
+    List<File> files = new ArrayList<>();
+    for (FileManifest.Entry entry : FileManifest.of(testDataDir).find(TESTCASE_INFORMATION_XML)) {
+      files.add(new File(testDataDir, entry.getPath()));
+    }
+    return files;
+  }
+
+  /**
+   * The outcome of a JUnit conversion.
+   */
+  static class Result implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int testCaseCount = 0;
+
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @return the number of test cases written to the JUnit XML file
+     */
+    int getTestCaseCount() {
+      return testCaseCount;
+    }
+
+    /**
+     * @return the messages of files that could not be transformed
+     */
+    List<String> getErrors() {
+      return errors;
+    }
+
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.annotation.CheckForNull;
+import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Merges the JUnit XML fragments written by the worker jobs into the JUnit XML file of a
+ * configuration, so the test data does not have to be parsed again. The fragments are only merged
+ * if they contain exactly one test case per "testcase_information.xml" file in the test data
+ * directory. Otherwise, e.g. if results have been restored from the result cache or a worker job
+ * shared the workspace of the distributing job, nothing is written and -1 is returned, so the
+ * caller converts the whole test data instead.
+ */
+class JUnitMergeCallable extends MasterToSlaveFileCallable<Integer> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String tptFileName;
+
+  private final String fragmentDir;
+
+  private final String jUnitXmlFile;
+
+  /**
+   * @param tptFileName
+   *          the name of the TPT file the tests originate from
+   * @param fragmentDir
+   *          the directory containing the fragments. It must be on the same node as the test data.
+   * @param jUnitXmlFile
+   *          the path of the JUnit XML file to write. It must be on the same node as the test data.
+   */
+  JUnitMergeCallable(String tptFileName, String fragmentDir, String jUnitXmlFile) {
+    this.tptFileName = tptFileName;
+    this.fragmentDir = fragmentDir;
+    this.jUnitXmlFile = jUnitXmlFile;
+  }
+
+  @Override
+  public Integer invoke(File testDataDir, VirtualChannel channel)
+      throws IOException, InterruptedException {
+    File[] fragments = new File(fragmentDir).listFiles(new FileFilter() {
+
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(".xml");
+      }
+    });
+    File summaryFile = new File(testDataDir, "test_summary.xml");
+    if (fragments == null || fragments.length == 0 || !summaryFile.exists()) {
+      return -1;
+    }
+    Arrays.sort(fragments);
+    int resultFileCount = FileManifest.of(testDataDir)
+        .find(JUnitConversionCallable.TESTCASE_INFORMATION_XML).size();
+    XmlStreamWriter xmlPub = null;
+    try {
+      // count first, so the JUnit XML file is only written if the fragments are complete
+      int testCaseCount = 0;
+      for (File fragment : fragments) {
+        testCaseCount += copyTestcases(fragment, null);
+      }
+      if (testCaseCount != resultFileCount) {
+        return -1;
+      }
+      TestCasesParseResult testSummaryTestcases =
+          TestcaseSummaryParser.parseXml(new FilePath(summaryFile));
+      xmlPub = new XmlStreamWriter();
+      xmlPub.initalize(new FilePath(new File(jUnitXmlFile)));
+      xmlPub.writeTestsuite(tptFileName);
+      for (File fragment : fragments) {
+        copyTestcases(fragment, xmlPub);
+      }
+      JUnitConversionCallable.writeGlobalAssessletTestcase(xmlPub, tptFileName,
+          testSummaryTestcases.virtualGlobalAssessletTestCase);
+      return testCaseCount;
+    } catch (XMLStreamException e) {
+      throw new IOException("XML stream error: " + e.getMessage());
+    } catch (FactoryConfigurationError e) {
+      throw new IOException("XML configuration error: " + e.getMessage());
+    } finally {
+      if (xmlPub != null) {
+        xmlPub.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the test cases of a fragment and writes them to the given writer.
+   * 
+   * @return the number of test cases in the fragment
+   */
+  private static int copyTestcases(File fragment, @CheckForNull XmlStreamWriter xmlPub)
+      throws IOException, XMLStreamException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    int count = 0;
+    try (InputStream in = Files.newInputStream(fragment.toPath())) {
+      XMLStreamReader reader = factory.createXMLStreamReader(in);
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT
+              || !"testcase".equals(reader.getLocalName())) {
+            continue;
+          }
+          String className = reader.getAttributeValue(null, "classname");
+          String name = reader.getAttributeValue(null, "name");
+          String time = reader.getAttributeValue(null, "time");
+          String error = null;
+          int depth = 1;
+          while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+              depth++;
+              if ("error".equals(reader.getLocalName())) {
+                String message = reader.getAttributeValue(null, "message");
+                error = message == null ? "" : message;
+              }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+              depth--;
+            }
+          }
+          if (xmlPub != null) {
+            xmlPub.writeConvertedTestcase(className, name, time, error);
+          }
+          count++;
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return count;
+  }
+
+}
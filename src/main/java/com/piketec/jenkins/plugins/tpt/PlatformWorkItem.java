@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Work items that execute a test case on a single execution configuration item (platform) only. A
+ * work item is a string of the form "[&lt;item index&gt;] &lt;test case name&gt;", so it can be
+ * distributed like a plain test case name and is readable in the logs. The item index is the
+ * position of the item in the execution configuration, counting inactive items, too.
+ */
+public final class PlatformWorkItem {
+
+  private static final Pattern WORK_ITEM_PATTERN = Pattern.compile("\\[(\\d+)\\] (.*)",
+      Pattern.DOTALL);
+
+  private PlatformWorkItem() {
+  }
+
+  /**
+   * @param itemIndex
+   *          the index of the execution configuration item
+   * @param testCase
+   *          the name of the test case
+   * @return the work item
+   */
+  public static String toWorkItem(int itemIndex, String testCase) {
+    return "[" + itemIndex + "] " + testCase;
+  }
+
+  /**
+   * Creates the work items for all test cases of all execution configuration items.
+   * 
+   * @param testCasesByItem
+   *          the names of the test cases by index of the execution configuration item
+   * @return the work items
+   */
+  public static List<String> toWorkItems(Map<Integer, Set<String>> testCasesByItem) {
+    List<String> workItems = new ArrayList<>();
+    for (Map.Entry<Integer, Set<String>> entry : new TreeMap<>(testCasesByItem).entrySet()) {
+      for (String testCase : entry.getValue()) {
+        workItems.add(toWorkItem(entry.getKey(), testCase));
+      }
+    }
+    return workItems;
+  }
+
+  /**
+   * @param workItem
+   *          the work item
+   * @return the name of the test case of the work item
+   * @throws IllegalArgumentException
+   *           If the string is no work item
+   */
+  public static String getTestCase(String workItem) {
+    return match(workItem).group(2);
+  }
+
+  /**
+   * Groups the given work items by execution configuration item.
+   * 
+   * @param workItems
+   *          the work items
+   * @return the names of the test cases by index of the execution configuration item
+   * @throws IllegalArgumentException
+   *           If one of the strings is no work item
+   */
+  public static Map<Integer, Set<String>> getTestCasesByItem(Collection<String> workItems) {
+    Map<Integer, Set<String>> testCasesByItem = new HashMap<>();
+    for (String workItem : workItems) {
+      Matcher matcher = match(workItem);
+      Integer itemIndex = Integer.valueOf(matcher.group(1));
+      Set<String> testCases = testCasesByItem.get(itemIndex);
+      if (testCases == null) {
+        testCases = new LinkedHashSet<>();
+        testCasesByItem.put(itemIndex, testCases);
+      }
+      testCases.add(matcher.group(2));
+    }
+    return testCasesByItem;
+  }
+
+  private static Matcher match(String workItem) {
+    Matcher matcher = WORK_ITEM_PATTERN.matcher(workItem);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("\"" + workItem + "\" is no platform work item");
+    }
+    return matcher;
+  }
+
+}
@@ -20,21 +20,22 @@
  */
 package com.piketec.jenkins.plugins.tpt;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-
-import javax.xml.stream.FactoryConfigurationError;
-import javax.xml.stream.XMLStreamException;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.io.FilenameUtils;
 
-import com.piketec.jenkins.plugins.tpt.TptLog.LogEntry;
 import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
 
 import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
 
 /**
  * Class for helper methods to collect and tranform TPT test result.
@@ -66,49 +67,112 @@ public final class Publish {
                                         FilePath jUnitOutputDir, TptLogger logger,
                                         LogLevel logLevel)
       throws IOException, InterruptedException {
-    XmlStreamWriter xmlPub = null;
-
-    try {
-      String tptFileName = FilenameUtils.getBaseName(jenkinsConfig.getTptFile());
-      FilePath jUnitXMLFile =
-          new FilePath(jUnitOutputDir, jenkinsConfig.getId().replace(" ", "_") + ".xml");
-      xmlPub = new XmlStreamWriter();
-      xmlPub.initalize(jUnitXMLFile);
-      xmlPub.writeTestsuite(tptFileName);
-      logger.info("Collecting test cases");
-      TestCasesParseResult testdata = getTestcases(testDataDir, logger);
-      logger.info("Found " + testdata.testCases.size() + " test results.");
-      for (Testcase tc : testdata.testCases) {
-        if (tc.getLogEntries(LogLevel.ERROR).isEmpty() && TptResult.PASSED.equals(tc.getResult())) {
-          xmlPub.writeTestcase(tptFileName, tc);
-        } else {
-          StringBuilder log = new StringBuilder();
-          log.append(tc.getResult().name());
-          for (LogEntry entry : tc.getLogEntries(logLevel)) {
-            log.append('\n');
-            log.append('[').append(entry.level.name()).append("] ").append(entry.message);
-          }
-          xmlPub.writeTestcaseError(tptFileName, tc, log.toString());
-        }
-      }
-      if (testdata.virtualGlobalAssessletTestCase != null) {
-        if (testdata.virtualGlobalAssessletTestCase.getResult() == TptResult.PASSED) {
-          xmlPub.writeTestcase(tptFileName, testdata.virtualGlobalAssessletTestCase);
-        } else {
-          xmlPub.writeTestcaseError(tptFileName, testdata.virtualGlobalAssessletTestCase,
-              testdata.virtualGlobalAssessletTestCase.getResult().name());
-        }
-      }
-      return testdata.testCases.size();
-    } catch (XMLStreamException e) {
-      throw new IOException("XML stream error: " + e.getMessage());
-    } catch (FactoryConfigurationError e) {
-      throw new IOException("XML configuration error: " + e.getMessage());
-    } finally {
-      if (xmlPub != null) {
-        xmlPub.close();
-      }
+    FilePath jUnitXMLFile = new FilePath(jUnitOutputDir, getJUnitFileName(jenkinsConfig));
+    logger.info("Collecting test cases");
+    JUnitConversionCallable.Result result =
+        convert(jenkinsConfig, testDataDir, jUnitXMLFile, logLevel, false);
+    for (String error : result.getErrors()) {
+      logger.error(error);
+    }
+    logger.info("Found " + result.getTestCaseCount() + " test results.");
+    return result.getTestCaseCount();
+  }
+
+  /**
+   * Converts the test data of a single batch executed by a worker job into a JUnit XML fragment.
+   * The fragments of all worker jobs are merged by
+   * {@link #mergeJUnitFragments(JenkinsConfiguration, FilePath, FilePath, FilePath, TptLogger)}.
+   * 
+   * @param jenkinsConfig
+   *          The configuration to which the TPT test result should be tranformed to JUnit
+   * @param testDataDir
+   *          The directory containing only the test data of the batch
+   * @param fragmentFile
+   *          The file the fragment should be written to
+   * @param logger
+   *          to display the information
+   * @param logLevel
+   *          the threshold for the severity of the log messages
+   * @return the number of test cases in the fragment
+   * @throws IOException
+   *           if an error occured while parsing TPT test data or writing the fragment
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static int publishJUnitFragment(JenkinsConfiguration jenkinsConfig, FilePath testDataDir,
+                                         FilePath fragmentFile, TptLogger logger,
+                                         LogLevel logLevel)
+      throws IOException, InterruptedException {
+    JUnitConversionCallable.Result result =
+        convert(jenkinsConfig, testDataDir, fragmentFile, logLevel, true);
+    for (String error : result.getErrors()) {
+      logger.error(error);
+    }
+    return result.getTestCaseCount();
+  }
+
+  /**
+   * Merges the JUnit XML fragments of the worker jobs into the JUnit XML file of the configuration
+   * instead of parsing the whole test data again. Nothing is written if the fragments do not cover
+   * all test results in the test data directory.
+   * 
+   * @param jenkinsConfig
+   *          The configuration to which the TPT test result should be tranformed to JUnit
+   * @param testDataDir
+   *          The directory containing the test data of all worker jobs
+   * @param fragmentDir
+   *          The directory the worker jobs wrote their fragments to
+   * @param jUnitOutputDir
+   *          The directory where the merged results should be written to.
+   * @param logger
+   *          to display the information
+   * @return the number of test cases or -1 if the fragments are incomplete
+   * @throws IOException
+   *           if an error occured while reading the fragments or writing the JUnit xml file
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static int mergeJUnitFragments(JenkinsConfiguration jenkinsConfig, FilePath testDataDir,
+                                        FilePath fragmentDir, FilePath jUnitOutputDir,
+                                        TptLogger logger)
+      throws IOException, InterruptedException {
+    FilePath jUnitXMLFile = new FilePath(jUnitOutputDir, getJUnitFileName(jenkinsConfig));
+    if (!fragmentDir.isDirectory() || fragmentDir.getChannel() != testDataDir.getChannel()
+        || jUnitXMLFile.getChannel() != testDataDir.getChannel()) {
+      return -1;
+    }
+    int testCaseCount = testDataDir.act(new JUnitMergeCallable(
+        FilenameUtils.getBaseName(jenkinsConfig.getTptFile()), fragmentDir.getRemote(),
+        jUnitXMLFile.getRemote()));
+    if (testCaseCount >= 0) {
+      logger.info("Merged " + testCaseCount + " test results from the JUnit fragments of the"
+          + " worker jobs.");
     }
+    return testCaseCount;
+  }
+
+  private static String getJUnitFileName(JenkinsConfiguration jenkinsConfig) {
+    return jenkinsConfig.getId().replace(" ", "_") + ".xml";
+  }
+
+  private static JUnitConversionCallable.Result convert(JenkinsConfiguration jenkinsConfig,
+                                                        FilePath testDataDir,
+                                                        FilePath jUnitXMLFile, LogLevel logLevel,
+                                                        boolean fragment)
+      throws IOException, InterruptedException {
+    String tptFileName = FilenameUtils.getBaseName(jenkinsConfig.getTptFile());
+    // The conversion runs where the test data is. If the JUnit file is located on another node it
+    // is written next to the test data first and copied afterwards.
+    boolean sameNode = jUnitXMLFile.getChannel() == testDataDir.getChannel();
+    FilePath targetFile = sameNode ? jUnitXMLFile
+        : new FilePath(testDataDir.getParent(), jUnitXMLFile.getName());
+    JUnitConversionCallable.Result result = testDataDir.act(
+        new JUnitConversionCallable(tptFileName, targetFile.getRemote(), logLevel, fragment));
+    if (!sameNode) {
+      targetFile.copyTo(jUnitXMLFile);
+      targetFile.delete();
+    }
+    return result;
   }
 
   // -------------------------------------------------------------------------------------------------------------
@@ -156,9 +220,100 @@ public final class Publish {
     return testSummaryTestcases;
   }
 
+  /**
+   * Collects the execution durations of all test cases found in "testcase_information.xml" files in
+   * "testDataDir". If a test case was executed on multiple platforms the durations are summed up,
+   * because a worker job executes a test case on all active platforms. Files that cannot be parsed
+   * are skipped.
+   * 
+   * @param testDataDir
+   *          The directory where TPT test data of a previous run should be searched
+   * @param logger
+   *          to display the information
+   * @return A map from test case name to execution duration in milliseconds. Empty if no test data
+   *         is available.
+   * 
+   * @throws IOException
+   *           If an error occured while searching the test data directory
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static Map<String, Long> getExecutionDurations(FilePath testDataDir, TptLogger logger)
+      throws IOException, InterruptedException {
+    Map<String, Long> durations = new HashMap<>();
+    if (!testDataDir.isDirectory()) {
+      return durations;
+    }
+    Collection<FilePath> files = new HashSet<>();
+    find(testDataDir, "testcase_information.xml", files);
+    for (FilePath f : files) {
+      try {
+        Testcase tc = TestcaseParser.parseXml(f);
+        long duration = Long.parseLong(tc.getExecDuration());
+        Long oldDuration = durations.get(tc.getName());
+        durations.put(tc.getName(), oldDuration == null ? duration : oldDuration + duration);
+      } catch (IOException | NumberFormatException e) {
+        logger.warn("Could not read execution duration from \"" + f + "\": " + e.getMessage());
+      }
+    }
+    return durations;
+  }
+
+  /**
+   * Counts for every test case the number of active execution configuration items it is executed
+   * on, i.e. the number of "testcase_information.xml" files a complete execution produces.
+   * 
+   * @param testCasesByItem
+   *          The names of the test cases by index of the execution configuration item
+   * @return The number of expected result files by test case name
+   */
+  public static Map<String, Integer>
+      getExpectedResultCounts(Map<Integer, Set<String>> testCasesByItem) {
+    Map<String, Integer> expectedResultCounts = new HashMap<>();
+    for (Set<String> itemTestCases : testCasesByItem.values()) {
+      for (String testCase : itemTestCases) {
+        Integer count = expectedResultCounts.get(testCase);
+        expectedResultCounts.put(testCase, count == null ? 1 : count + 1);
+      }
+    }
+    return expectedResultCounts;
+  }
+
+  /**
+   * Determines which of the given test cases have been executed completely, i.e. a readable
+   * "testcase_information.xml" exists in "testDataDir" for every execution configuration item the
+   * test case is executed on. A test case whose item folder is missing counts as unfinished. The
+   * files are parsed on the node that holds the test data.
+   * 
+   * @param testDataDir
+   *          The directory where TPT test data should be searched
+   * @param expectedResultCounts
+   *          The names of the test cases to check and the number of result files each of them has
+   *          to have, see {@link #getExpectedResultCounts(Map)}
+   * @param withoutErrors
+   *          <code>true</code> to leave out the test cases with an execution error in one of their
+   *          results, e.g. because they should not be reused
+   * @return The names of the test cases with complete results
+   * 
+   * @throws IOException
+   *           If an error occured while searching the test data directory
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  public static Set<String> getFinishedTestCases(FilePath testDataDir,
+                                                 Map<String, Integer> expectedResultCounts,
+                                                 boolean withoutErrors)
+      throws IOException, InterruptedException {
+    if (!testDataDir.isDirectory()) {
+      return new HashSet<>();
+    }
+    return testDataDir
+        .act(new FinishedTestCasesCallable(new HashMap<>(expectedResultCounts), withoutErrors));
+  }
+
   /**
    * find all files in directory "root" with file name "pattern" and stores them in collection
-   * "files"
+   * "files". The directory is walked with a single call on the node that holds it.
    * 
    * @param rootdir
    *          The directory that should be searched
@@ -175,15 +330,63 @@ public final class Publish {
   public static void find(FilePath rootdir, String pattern, Collection<FilePath> files)
       throws IOException, InterruptedException {
     if (rootdir.isDirectory()) {
-      List<FilePath> children = rootdir.list();
-      if (children != null) {
-        for (FilePath child : children) {
-          find(child, pattern, files);
-        }
+      for (FileManifest.Entry entry : FileManifest.of(rootdir).find(pattern)) {
+        files.add(rootdir.child(entry.getPath()));
       }
     } else if (rootdir.exists() && (!rootdir.isDirectory())
         && rootdir.getName().equalsIgnoreCase(pattern)) {
       files.add(rootdir);
     }
   }
+
+  private static final class FinishedTestCasesCallable
+      extends MasterToSlaveFileCallable<Set<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<String, Integer> expectedResultCounts;
+
+    private final boolean withoutErrors;
+
+    FinishedTestCasesCallable(HashMap<String, Integer> expectedResultCounts,
+                              boolean withoutErrors) {
+      this.expectedResultCounts = expectedResultCounts;
+      this.withoutErrors = withoutErrors;
+    }
+
+    @Override
+    public Set<String> invoke(File testDataDir, VirtualChannel channel)
+        throws IOException, InterruptedException {
+      Map<String, Integer> resultFileCounts = new HashMap<>();
+      Set<String> erroneous = new HashSet<>();
+      for (FileManifest.Entry entry : FileManifest.of(testDataDir)
+          .find("testcase_information.xml")) {
+        Testcase tc;
+        try {
+          tc = TestcaseParser.parseXml(new FilePath(new File(testDataDir, entry.getPath())));
+        } catch (IOException e) {
+          // incomplete file, e.g. TPT crashed while writing it
+          continue;
+        }
+        if (expectedResultCounts.containsKey(tc.getName())) {
+          if (tc.getResult() == TptResult.EXECUTION_ERROR) {
+            erroneous.add(tc.getName());
+          }
+          Integer count = resultFileCounts.get(tc.getName());
+          resultFileCounts.put(tc.getName(), count == null ? 1 : count + 1);
+        }
+      }
+      Set<String> finished = new HashSet<>();
+      for (Map.Entry<String, Integer> resultFileCount : resultFileCounts.entrySet()) {
+        if (resultFileCount.getValue() >= expectedResultCounts.get(resultFileCount.getKey())) {
+          finished.add(resultFileCount.getKey());
+        }
+      }
+      if (withoutErrors) {
+        finished.removeAll(erroneous);
+      }
+      return finished;
+    }
+
+  }
 }
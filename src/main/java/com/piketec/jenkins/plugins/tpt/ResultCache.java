@@ -0,0 +1,330 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Content addressed cache of test results. The results of a test case are stored under a
+ * fingerprint of the test case name, the TPT file, the execution configuration, the TPT version and
+ * the input files declared in the {@link JenkinsConfiguration}. If none of them changed, the cached
+ * results are restored into the test data and report directories instead of executing the test
+ * case again. The TPT API offers no revision of a single scenario, so every change of the TPT file
+ * invalidates all of its cached results.
+ * <p>
+ * The cache directory has to be on the same node as the test data and report directories. Entries
+ * are never removed automatically, the directory can be cleared at any time.
+ * </p>
+ */
+class ResultCache {
+
+  private static final String TEST_DATA_DIR = "testdata";
+
+  private static final String REPORT_DIR = "report";
+
+  private final FilePath cacheDir;
+
+  private final String fingerprint;
+
+  private ResultCache(FilePath cacheDir, String fingerprint) {
+    this.cacheDir = cacheDir;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Creates the cache for one configuration.
+   * 
+   * @param cacheDir
+   *          the directory holding the cached results
+   * @param workspace
+   *          the workspace the input files are resolved in
+   * @param tptFile
+   *          the TPT file
+   * @param resolvedConfig
+   *          the configuration with resolved $-vars
+   * @param tptVersion
+   *          the version of the TPT instance executing the test cases
+   * @return the cache
+   * @throws IOException
+   *           If the TPT file or the input files could not be read
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  static ResultCache create(FilePath cacheDir, FilePath workspace, FilePath tptFile,
+                            JenkinsConfiguration resolvedConfig, TptVersion tptVersion)
+      throws IOException, InterruptedException {
+    List<String> lines = new ArrayList<>();
+    lines.add("tptFile=" + tptFile.digest());
+    lines.add("configuration=" + resolvedConfig.getConfiguration());
+    lines.add("testSet=" + resolvedConfig.getTestSet());
+    lines.add("tptVersion=" + tptVersion);
+    String inputFiles = resolvedConfig.getCacheInputFiles();
+    if (!StringUtils.isBlank(inputFiles)) {
+      FilePath[] inputs = workspace.list(inputFiles);
+      Arrays.sort(inputs, new Comparator<FilePath>() {
+
+        @Override
+        public int compare(FilePath f1, FilePath f2) {
+          return f1.getRemote().compareTo(f2.getRemote());
+        }
+      });
+      for (FilePath input : inputs) {
+        lines.add("input:" + input.getRemote() + "=" + input.digest());
+      }
+    }
+    return new ResultCache(cacheDir, sha256(StringUtils.join(lines, "\n")));
+  }
+
+  private static String sha256(String text) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Util.toHexString(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private String getKey(String testCase) {
+    return sha256(fingerprint + "\n" + testCase);
+  }
+
+  private Map<String, String> getKeys(Collection<String> testCases) {
+    Map<String, String> keys = new HashMap<>();
+    for (String testCase : testCases) {
+      keys.put(testCase, getKey(testCase));
+    }
+    return keys;
+  }
+
+  /**
+   * Copies the cached results of the given test cases into the test data and report directories.
+   * 
+   * @param testCases
+   *          the names of the test cases to restore
+   * @param testDataDir
+   *          the test data directory
+   * @param reportDir
+   *          the report directory
+   * @return the names of the test cases that have been restored
+   * @throws IOException
+   *           If the results could not be copied
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  Set<String> restore(Collection<String> testCases, FilePath testDataDir, FilePath reportDir)
+      throws IOException, InterruptedException {
+    if (!cacheDir.isDirectory()) {
+      return new HashSet<>();
+    }
+    return cacheDir.act(
+        new RestoreCallable(getKeys(testCases), testDataDir.getRemote(), reportDir.getRemote()));
+  }
+
+  /**
+   * Stores the results of the given test cases unless they are already cached. A test case folder
+   * is a directory holding a "testcase_information.xml" in the test data directory. The folder
+   * with the same relative path in the report directory is stored along with it.
+   * 
+   * @param testCases
+   *          the names of the test cases with complete results
+   * @param testDataDir
+   *          the test data directory
+   * @param reportDir
+   *          the report directory
+   * @return the number of test cases that have been stored
+   * @throws IOException
+   *           If the results could not be copied
+   * @throws InterruptedException
+   *           If the job was interrupted
+   */
+  int store(Collection<String> testCases, FilePath testDataDir, FilePath reportDir)
+      throws IOException, InterruptedException {
+    if (testCases.isEmpty()) {
+      return 0;
+    }
+    cacheDir.mkdirs();
+    return cacheDir.act(
+        new StoreCallable(getKeys(testCases), testDataDir.getRemote(), reportDir.getRemote()));
+  }
+
+  private static void copyDirectory(final Path from, final Path to) throws IOException {
+    if (!Files.isDirectory(from)) {
+      return;
+    }
+    Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+          throws IOException {
+        Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.copy(file, to.resolve(from.relativize(file).toString()),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static final class RestoreCallable extends MasterToSlaveFileCallable<Set<String>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, String> keys;
+
+    private final String testDataDir;
+
+    private final String reportDir;
+
+    RestoreCallable(Map<String, String> keys, String testDataDir, String reportDir) {
+      this.keys = keys;
+      this.testDataDir = testDataDir;
+      this.reportDir = reportDir;
+    }
+
+    @Override
+    public Set<String> invoke(File cacheDir, VirtualChannel channel)
+        throws IOException, InterruptedException {
+      Set<String> restored = new HashSet<>();
+      for (Map.Entry<String, String> key : keys.entrySet()) {
+        Path entry = cacheDir.toPath().resolve(key.getValue());
+        if (Files.isDirectory(entry)) {
+          copyDirectory(entry.resolve(TEST_DATA_DIR), new File(testDataDir).toPath());
+          copyDirectory(entry.resolve(REPORT_DIR), new File(reportDir).toPath());
+          restored.add(key.getKey());
+        }
+      }
+      return restored;
+    }
+
+  }
+
+  private static final class StoreCallable extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, String> keys;
+
+    private final String testDataDir;
+
+    private final String reportDir;
+
+    StoreCallable(Map<String, String> keys, String testDataDir, String reportDir) {
+      this.keys = keys;
+      this.testDataDir = testDataDir;
+      this.reportDir = reportDir;
+    }
+
+    @Override
+    public Integer invoke(File cacheDir, VirtualChannel channel)
+        throws IOException, InterruptedException {
+      // test case name -> relative paths of its test case folders
+      Map<String, List<String>> folders = new HashMap<>();
+      for (FileManifest.Entry entry : FileManifest.of(new File(testDataDir))
+          .find("testcase_information.xml")) {
+        String path = entry.getPath();
+        if (!path.contains("/")) {
+          // not in a test case folder
+          continue;
+        }
+        Testcase tc;
+        try {
+          tc = TestcaseParser.parseXml(new FilePath(new File(testDataDir, path)));
+        } catch (IOException e) {
+          // incomplete file of a test case that is not stored anyway
+          continue;
+        }
+        if (!keys.containsKey(tc.getName())) {
+          continue;
+        }
+        List<String> testCaseFolders = folders.get(tc.getName());
+        if (testCaseFolders == null) {
+          testCaseFolders = new ArrayList<>();
+          folders.put(tc.getName(), testCaseFolders);
+        }
+        testCaseFolders.add(path.substring(0, path.lastIndexOf('/')));
+      }
+      int stored = 0;
+      for (Map.Entry<String, List<String>> testCaseFolders : folders.entrySet()) {
+        Path entry = cacheDir.toPath().resolve(keys.get(testCaseFolders.getKey()));
+        if (Files.isDirectory(entry)) {
+          continue;
+        }
+        // copy to a temporary directory first, so an entry is either complete or missing
+        Path tmp = cacheDir.toPath().resolve(entry.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+          for (String folder : testCaseFolders.getValue()) {
+            copyDirectory(new File(testDataDir, folder).toPath(),
+                tmp.resolve(TEST_DATA_DIR).resolve(folder));
+            copyDirectory(new File(reportDir, folder).toPath(),
+                tmp.resolve(REPORT_DIR).resolve(folder));
+          }
+          Files.move(tmp, entry);
+          stored++;
+        } catch (IOException e) {
+          if (!Files.isDirectory(entry)) {
+            throw e;
+          }
+          // stored concurrently by another build
+        } finally {
+          if (Files.exists(tmp)) {
+            Util.deleteRecursive(tmp.toFile());
+          }
+        }
+      }
+      return stored;
+    }
+
+  }
+
+}
@@ -20,18 +20,14 @@
  */
 package com.piketec.jenkins.plugins.tpt;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
-import hudson.EnvVars;
-import hudson.model.AbstractBuild;
 import hudson.model.Action;
 import hudson.model.Cause;
 import hudson.model.CauseAction;
@@ -41,21 +37,22 @@ import hudson.model.ParametersAction;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.StringParameterValue;
-import hudson.model.TaskListener;
 import hudson.model.Cause.UpstreamCause;
 import jenkins.model.ParameterizedJobMixIn;
 
+/**
+ * A worker job build that is scheduled again if it fails, until it succeeds or all tries are used
+ * up. The builds are not awaited here, the {@link WorkerBuildCoordinator} reports their completion.
+ */
 class RetryableJob {
 
   private Job workerJob;
 
   private int tries;
 
-  private Thread runner;
-
   private TptLogger logger;
 
-  private InterruptedException interruptedException = null;
+  private Future<Run> scheduled = null;
 
   private Run lastRun = null;
 
@@ -78,100 +75,72 @@ class RetryableJob {
   }
 
   /**
-   * Schedules the builds triggered by the distributingJobRun by calling schedule()
-   * 
-   * @see schedule
+   * @return <code>true</code> if the job may be scheduled once more
+   */
+  boolean hasTriesLeft() {
+    return tries > 0;
+  }
+
+  /**
+   * Schedules the next try of the worker job build triggered by the distributingJobRun.
    * 
    * @param build
-   *          to get the environment and for scheduling the build. It will be the same build
-   *          scheduled but with different testcases.
-   * @param listener
-   *          to get the environment and for scheduling the build.
+   *          the distributing job build, used as upstream cause
+   * @param schedulingId
+   *          the id the scheduled build is marked with, see
+   *          {@link WorkerBuildCoordinator.WorkerBuildAction}
+   * @return <code>true</code> if the build has been scheduled
    */
-  void perform(final Run< ? , ? > build, final TaskListener listener) {
-    runner = new Thread(new Runnable() {
-
-      @Override
-      public void run() {
-        boolean success = false;
-        while (tries > 0 && !success) {
-          List<Future<Run>> futures = new ArrayList<>();
-          try {
-            if (build instanceof AbstractBuild< ? , ? >) {
-              EnvVars env = build.getEnvironment(listener);
-              env.overrideAll(((AbstractBuild< ? , ? >)build).getBuildVariables());
-            }
-            // To be able to enqueue the same build multiple times, they have to be made
-            // artificially different. We do that by adding a UUID. Everything else did not work.
-            ArrayList<Action> parameterActions = new ArrayList<>();
-            ArrayList<ParameterValue> parameterValues = new ArrayList<>();
-            parameterValues.add(new StringParameterValue(UUID.randomUUID().toString(),
-                UUID.randomUUID().toString()));
-            parameterActions.add(new ParametersAction(parameterValues));
-
-            final Future<Run> scheduled = schedule(build, workerJob,
-                ((ParameterizedJobMixIn.ParameterizedJob)workerJob).getQuietPeriod(),
-                parameterActions);
-            if (scheduled != null) {
-              futures.add(scheduled);
-            }
-
-            for (Future<Run> future : futures) {
-              Run run = future.get();
-              lastRun = run;
-              // retry if cancled or failed
-              Result result = run.getResult();
-              if (result != null) {
-                success = result.isBetterOrEqualTo(Result.UNSTABLE);
-              } else {
-                assert false : "Build should not be running since we used future.get()";
-                success = true;
-              }
-              if (future.isCancelled()) {
-                logger.error("Execution of test worker job was canceled.");
-                tries = 0;
-              }
-            }
-          } catch (InterruptedException e) {
-            interruptedException = e;
-            tries = 0;
-            for (Future<Run> future : futures) {
-              future.cancel(true);
-            }
-          } catch (IOException e) {
-            logger.error(e.getMessage());
-            // retry
-          } catch (ExecutionException e) {
-            logger.error(e.getMessage());
-            // retry
-          }
-          tries--;
-          if (!success && tries > 0) {
-            logger.info(
-                "Job execution failed. Scheduling job for retry. It is possible that two test cases"
-                    + " have the same name, if so please make the test cases names unique.");
-          }
-        }
-      }
-    });
-    runner.start();
+  boolean schedule(Run< ? , ? > build, String schedulingId) {
+    tries--;
+    // To be able to enqueue the same build multiple times, they have to be made
+    // artificially different. We do that by adding a UUID. Everything else did not work.
+    ArrayList<Action> actions = new ArrayList<>();
+    ArrayList<ParameterValue> parameterValues = new ArrayList<>();
+    parameterValues.add(
+        new StringParameterValue(UUID.randomUUID().toString(), UUID.randomUUID().toString()));
+    actions.add(new ParametersAction(parameterValues));
+    actions.add(new WorkerBuildCoordinator.WorkerBuildAction(schedulingId));
+    scheduled = schedule(build, workerJob,
+        ((ParameterizedJobMixIn.ParameterizedJob)workerJob).getQuietPeriod(), actions);
+    return scheduled != null;
   }
 
   /**
-   * joins the threads
+   * Handles the end of a scheduled build.
+   * 
+   * @param run
+   *          the completed build or <code>null</code> if the build has been canceled before it
+   *          started
+   * @return <code>true</code> if the job is done, <code>false</code> if it should be retried
    */
-  void join() throws InterruptedException {
-    runner.join();
-    if (interruptedException != null) {
-      throw interruptedException;
+  boolean onCompleted(@CheckForNull Run run) {
+    scheduled = null;
+    if (run == null) {
+      logger.error("Execution of test worker job was canceled.");
+      tries = 0;
+      return true;
     }
+    lastRun = run;
+    // retry if cancled or failed
+    Result result = run.getResult();
+    if (result == null || result.isBetterOrEqualTo(Result.UNSTABLE) || tries <= 0) {
+      return true;
+    }
+    logger.info("Job execution failed. Scheduling job for retry. It is possible that two test cases"
+        + " have the same name, if so please make the test cases names unique.");
+    return false;
   }
 
   /**
-   * interrupt the thread
+   * Cancels the scheduled build, no matter if it is still queued or already running.
    */
   void cancel() {
-    runner.interrupt();
+    Future<Run> toCancel = scheduled;
+    tries = 0;
+    if (toCancel != null) {
+      toCancel.cancel(true);
+    }
   }
 
   /**
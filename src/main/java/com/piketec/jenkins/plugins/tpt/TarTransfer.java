@@ -0,0 +1,224 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import hudson.FilePath;
+import hudson.FilePath.TarCompression;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.RemoteOutputStream;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import hudson.util.NamingThreadFactory;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Copies whole directories between two nodes as one compressed tar stream. The source directory is
+ * packed and compressed on its node and unpacked on the node of the target directory, so the copy
+ * needs a single stream instead of one remote call per file.
+ */
+public final class TarTransfer {
+
+  private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+  private TarTransfer() {
+  }
+
+  /**
+   * Copies the content of directory "from" into directory "to". Existing files in "to" are
+   * overwritten.
+   * 
+   * @param from
+   *          the directory to copy
+   * @param to
+   *          the directory to copy into
+   * @param compressionLevel
+   *          the gzip compression level from 0 (no compression) to 9 (best compression)
+   * @param logger
+   *          for dumping messages
+   * @return the number of copied files
+   * @throws IOException
+   *           If an IO error occurs on one of the nodes or on the stream
+   * @throws InterruptedException
+   *           If thread was interrupted
+   */
+  public static int copy(FilePath from, FilePath to, int compressionLevel, TptLogger logger)
+      throws IOException, InterruptedException {
+    return copy(from, to, compressionLevel, Collections.<String> emptySet(), logger);
+  }
+
+  /**
+   * Copies the content of directory "from" into directory "to" except the given files. Existing
+   * files in "to" are overwritten.
+   * 
+   * @param from
+   *          the directory to copy
+   * @param to
+   *          the directory to copy into
+   * @param compressionLevel
+   *          the gzip compression level from 0 (no compression) to 9 (best compression)
+   * @param excludedPaths
+   *          the paths of the files relative to "from", separated by '/', that should not be
+   *          copied
+   * @param logger
+   *          for dumping messages
+   * @return the number of copied files
+   * @throws IOException
+   *           If an IO error occurs on one of the nodes or on the stream
+   * @throws InterruptedException
+   *           If thread was interrupted
+   */
+  public static int copy(final FilePath from, FilePath to, final int compressionLevel,
+                         Collection<String> excludedPaths, TptLogger logger)
+      throws IOException, InterruptedException {
+    if (from.equals(to)) {
+      return 0;
+    }
+    if (!from.isDirectory()) {
+      logger.error(from.getRemote() + " is not a directory!");
+      return 0;
+    }
+    // the pipe is written by remoting threads that end when the packing is done, so the pipe must
+    // not check if the writing thread is still alive like the java.io pipes do
+    final FastPipedOutputStream pipeOut = new FastPipedOutputStream();
+    FastPipedInputStream pipeIn = new FastPipedInputStream(pipeOut, PIPE_BUFFER_SIZE);
+    final Set<String> excluded = new HashSet<>(excludedPaths);
+    ExecutorService packer = Executors.newSingleThreadExecutor(
+        new NamingThreadFactory(new DaemonThreadFactory(), "TPT result transfer"));
+    try {
+      Future<Integer> packed = packer.submit(new Callable<Integer>() {
+
+        @Override
+        public Integer call() throws IOException, InterruptedException {
+          try {
+            return from.act(
+                new TarCallable(new RemoteOutputStream(pipeOut), compressionLevel, excluded));
+          } finally {
+            // let the unpacking side see the end of the stream even if packing failed
+            pipeOut.close();
+          }
+        }
+      });
+      try {
+        to.mkdirs();
+        to.untarFrom(pipeIn, TarCompression.GZIP);
+      } finally {
+        // stops the packing side if unpacking failed
+        pipeIn.close();
+      }
+      try {
+        return packed.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw cause instanceof IOException ? (IOException)cause
+            : new IOException("Could not pack " + from.getRemote() + ": " + cause.getMessage(),
+                cause);
+      }
+    } finally {
+      packer.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes a directory as gzip compressed tar stream. Executed on the node holding the directory.
+   */
+  private static final class TarCallable extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OutputStream out;
+
+    private final int compressionLevel;
+
+    private final Set<String> excludedPaths;
+
+    TarCallable(OutputStream out, int compressionLevel, Set<String> excludedPaths) {
+      this.out = out;
+      this.compressionLevel = compressionLevel;
+      this.excludedPaths = excludedPaths;
+    }
+
+    @Override
+    public Integer invoke(File dir, VirtualChannel channel)
+        throws IOException, InterruptedException {
+      try (OutputStream gzip = new LeveledGZIPOutputStream(
+          new BufferedOutputStream(out, PIPE_BUFFER_SIZE), compressionLevel)) {
+        DirScanner scanner =
+            excludedPaths.isEmpty() ? new DirScanner.Full() : new ExcludingScanner(excludedPaths);
+        return new FilePath(dir).tar(gzip, scanner);
+      }
+    }
+
+  }
+
+  /**
+   * Visits all files of a directory except the excluded ones.
+   */
+  private static final class ExcludingScanner extends DirScanner {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Set<String> excludedPaths;
+
+    ExcludingScanner(Set<String> excludedPaths) {
+      this.excludedPaths = excludedPaths;
+    }
+
+    @Override
+    public void scan(File dir, FileVisitor visitor) throws IOException {
+      for (FileManifest.Entry entry : FileManifest.of(dir).getEntries()) {
+        if (!excludedPaths.contains(entry.getPath())) {
+          visitor.visit(new File(dir, entry.getPath()), entry.getPath());
+        }
+      }
+    }
+
+  }
+
+  private static final class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+    LeveledGZIPOutputStream(OutputStream out, int compressionLevel) throws IOException {
+      super(out, PIPE_BUFFER_SIZE);
+      def.setLevel(Math.max(Deflater.NO_COMPRESSION, Math.min(compressionLevel,
+          Deflater.BEST_COMPRESSION)));
+    }
+
+  }
+
+}
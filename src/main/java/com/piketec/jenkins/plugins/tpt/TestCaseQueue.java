@@ -0,0 +1,355 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Hands out the test cases of a distributing job in batches. All worker jobs that share the same
+ * queue take batches from it until it is empty, so fast workers simply execute more batches than
+ * slow ones.
+ * <p>
+ * If speculative execution is enabled, a worker that finds the queue empty may get a copy of a
+ * batch that runs much longer than expected. The first attempt of a batch that
+ * {@link #claim(Attempt, boolean) claims} it delivers the results, the other attempts are
+ * cancelled.
+ * </p>
+ */
+public class TestCaseQueue {
+
+  /**
+   * A batch is not copied before it has been running for at least this time in milliseconds.
+   */
+  static final long MIN_SPECULATION_DELAY = 60 * 1000;
+
+  private final LinkedList<String> testCases;
+
+  private final int batchSize;
+
+  private final List<Batch> batchesInProgress = new ArrayList<>();
+
+  @CheckForNull
+  private Runnable doneListener = null;
+
+  private Map<String, Long> expectedDurations = Collections.emptyMap();
+
+  private double speculationFactor = 0;
+
+  /**
+   * @param testCases
+   *          the test cases in the order they should be handed out
+   * @param batchSize
+   *          the maximal number of test cases of a batch. A value below 1 means all test cases are
+   *          handed out as a single batch.
+   */
+  public TestCaseQueue(Collection<String> testCases, int batchSize) {
+    this.testCases = new LinkedList<>(testCases);
+    this.batchSize = batchSize < 1 ? Math.max(1, testCases.size()) : batchSize;
+  }
+
+  /**
+   * Enables speculative execution of batches that run much longer than expected.
+   * 
+   * @param expectedDurations
+   *          the expected execution durations in milliseconds by test case
+   * @param speculationFactor
+   *          a batch is copied if it runs longer than this factor times the sum of the expected
+   *          durations of its test cases. A value of 0 or below disables speculative execution.
+   */
+  public synchronized void setSpeculation(Map<String, Long> expectedDurations,
+                                          double speculationFactor) {
+    this.expectedDurations = expectedDurations;
+    this.speculationFactor = speculationFactor;
+  }
+
+  /**
+   * Removes the next batch of test cases from the queue.
+   * 
+   * @return the next batch or <code>null</code> if the queue is empty
+   */
+  @CheckForNull
+  public synchronized Attempt nextBatch() {
+    if (testCases.isEmpty()) {
+      return null;
+    }
+    List<String> batchTestCases = new ArrayList<>();
+    long expectedDuration = 0;
+    while (batchTestCases.size() < batchSize && !testCases.isEmpty()) {
+      String testCase = testCases.poll();
+      batchTestCases.add(testCase);
+      Long duration = expectedDurations.get(testCase);
+      expectedDuration += duration == null ? 0 : duration;
+    }
+    Batch batch = new Batch(batchTestCases, expectedDuration, currentTimeMillis());
+    batchesInProgress.add(batch);
+    return batch.newAttempt(false);
+  }
+
+  /**
+   * Like {@link #nextBatch()}, but if the queue is empty and speculative execution is enabled, it
+   * waits until a batch in progress runs much longer than expected and returns a copy of it.
+   * 
+   * @return the next batch or a copy of a batch in progress. <code>null</code> if the queue is
+   *         empty and there is no batch in progress that could be copied.
+   * @throws InterruptedException
+   *           If the thread was interrupted while waiting
+   */
+  @CheckForNull
+  public synchronized Attempt nextBatchOrCopy() throws InterruptedException {
+    while (testCases.isEmpty() && speculationFactor > 0) {
+      long now = currentTimeMillis();
+      long nextDue = Long.MAX_VALUE;
+      for (Batch batch : batchesInProgress) {
+        if (batch.winner != null || batch.copied || batch.expectedDuration <= 0) {
+          continue;
+        }
+        long due = batch.startTime
+            + Math.max(MIN_SPECULATION_DELAY, (long)(speculationFactor * batch.expectedDuration));
+        if (due <= now) {
+          batch.copied = true;
+          return batch.newAttempt(true);
+        }
+        nextDue = Math.min(nextDue, due);
+      }
+      if (nextDue == Long.MAX_VALUE) {
+        return null;
+      }
+      // woken up earlier if batches are done or given back
+      wait(nextDue - now);
+    }
+    return nextBatch();
+  }
+
+  /**
+   * Decides if the results of an attempt are kept. The first attempt that finished its batch
+   * completely claims the batch and the other attempts of the batch are cancelled. An attempt that
+   * failed only claims the batch if no other attempt of the batch is still running.
+   * 
+   * @param attempt
+   *          the attempt taken via {@link #nextBatch()} or {@link #nextBatchOrCopy()}
+   * @param complete
+   *          if the attempt executed all test cases of the batch successfully
+   * @return <code>true</code> if the results of the attempt should be kept
+   */
+  public synchronized boolean claim(Attempt attempt, boolean complete) {
+    Batch batch = attempt.batch;
+    if (batch.winner != null) {
+      batch.attempts.remove(attempt);
+      return false;
+    }
+    if (!complete && batch.attempts.size() > 1) {
+      // another attempt may still succeed
+      batch.attempts.remove(attempt);
+      return false;
+    }
+    batch.winner = attempt;
+    for (Attempt other : batch.attempts) {
+      if (other != attempt) {
+        other.cancelled = true;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Marks a batch as executed. Does nothing if the attempt did not {@link #claim(Attempt, boolean)
+   * claim} its batch.
+   * 
+   * @param attempt
+   *          the attempt taken via {@link #nextBatch()} or {@link #nextBatchOrCopy()}
+   */
+  public void batchDone(Attempt attempt) {
+    Runnable listener;
+    synchronized (this) {
+      if (attempt.batch.winner != attempt || !batchesInProgress.remove(attempt.batch)) {
+        return;
+      }
+      notifyAll();
+      listener = isDone() ? doneListener : null;
+    }
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Puts test cases of a batch that could not be executed back to the front of the queue, so they
+   * will be handed out next. The batch counts as done afterwards. Does nothing if another attempt
+   * claimed the batch or may still execute it.
+   * 
+   * @param attempt
+   *          the attempt taken via {@link #nextBatch()} or {@link #nextBatchOrCopy()}
+   * @param unfinished
+   *          the test cases of the batch without complete results
+   */
+  public void giveBack(Attempt attempt, List<String> unfinished) {
+    Runnable listener;
+    synchronized (this) {
+      Batch batch = attempt.batch;
+      if (batch.winner == null) {
+        batch.attempts.remove(attempt);
+        if (!batch.attempts.isEmpty()) {
+          return;
+        }
+      } else if (batch.winner != attempt) {
+        return;
+      }
+      if (!batchesInProgress.remove(batch)) {
+        return;
+      }
+      testCases.addAll(0, unfinished);
+      notifyAll();
+      listener = isDone() ? doneListener : null;
+    }
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * @return the number of batches that are left in the queue
+   */
+  public synchronized int getBatchCount() {
+    return (testCases.size() + batchSize - 1) / batchSize;
+  }
+
+  /**
+   * @return <code>true</code> if all test cases have been handed out
+   */
+  public synchronized boolean isEmpty() {
+    return testCases.isEmpty();
+  }
+
+  /**
+   * @return <code>true</code> if all test cases have been handed out and all batches have been
+   *         executed or given back
+   */
+  public synchronized boolean isDone() {
+    return testCases.isEmpty() && batchesInProgress.isEmpty();
+  }
+
+  /**
+   * @param doneListener
+   *          called by the thread that finished the last batch as soon as the queue
+   *          {@link #isDone() is done}
+   */
+  public synchronized void setDoneListener(@CheckForNull Runnable doneListener) {
+    this.doneListener = doneListener;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return testCases.toString();
+  }
+
+  /**
+   * @return the current time in milliseconds, the start time of batches is measured with
+   */
+  @Restricted(NoExternalUse.class)
+  long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * A batch of test cases handed out by the queue.
+   */
+  private static final class Batch {
+
+    private final List<String> testCases;
+
+    private final long expectedDuration;
+
+    private final long startTime;
+
+    private final List<Attempt> attempts = new ArrayList<>();
+
+    // the attempt whose results are kept
+    @CheckForNull
+    private Attempt winner = null;
+
+    private boolean copied = false;
+
+    Batch(List<String> testCases, long expectedDuration, long startTime) {
+      this.testCases = Collections.unmodifiableList(testCases);
+      this.expectedDuration = expectedDuration;
+      this.startTime = startTime;
+    }
+
+    Attempt newAttempt(boolean speculative) {
+      Attempt attempt = new Attempt(this, speculative);
+      attempts.add(attempt);
+      return attempt;
+    }
+
+  }
+
+  /**
+   * One execution of a batch by a worker job.
+   */
+  public static final class Attempt {
+
+    private final Batch batch;
+
+    private final boolean speculative;
+
+    private volatile boolean cancelled = false;
+
+    private Attempt(Batch batch, boolean speculative) {
+      this.batch = batch;
+      this.speculative = speculative;
+    }
+
+    /**
+     * @return the test cases to execute
+     */
+    public List<String> getTestCases() {
+      return batch.testCases;
+    }
+
+    /**
+     * @return <code>true</code> if this is a copy of a batch that another worker job is still
+     *         executing
+     */
+    public boolean isSpeculative() {
+      return speculative;
+    }
+
+    /**
+     * @return <code>true</code> if another attempt of the same batch claimed it, so this attempt
+     *         should stop
+     */
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+  }
+
+}
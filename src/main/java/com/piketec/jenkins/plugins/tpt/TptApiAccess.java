@@ -1,17 +1,29 @@
 package com.piketec.jenkins.plugins.tpt;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.CheckForNull;
 
+import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
+import com.piketec.jenkins.plugins.tpt.api.callables.CleanUpCallable;
 import com.piketec.jenkins.plugins.tpt.api.callables.ExecuteTestsWorkerJobCallable;
+import com.piketec.jenkins.plugins.tpt.api.callables.ExecutionProgressListener;
 import com.piketec.jenkins.plugins.tpt.api.callables.GetTestCasesCallable;
 import com.piketec.jenkins.plugins.tpt.api.callables.GetTestCasesCallableResult;
+import com.piketec.jenkins.plugins.tpt.api.callables.RmiStatisticsCallable;
 import com.piketec.jenkins.plugins.tpt.api.callables.RunOverviewReportCallable;
+import com.piketec.jenkins.plugins.tpt.api.callables.TptApiCallable;
 
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.remoting.Callable;
 import hudson.remoting.VirtualChannel;
 
 /**
@@ -34,6 +46,17 @@ public class TptApiAccess {
 
   private long startUpWaitTime;
 
+  @CheckForNull
+  private FilePath rmiStatisticsFile = null;
+
+  // the listener is exported once and reused for all executions, because every export stays in
+  // the export table of the channel as long as the agent holds a proxy of it
+  @CheckForNull
+  private ExecutionProgressListener progressListener = null;
+
+  @CheckForNull
+  private ExecutionProgressListener exportedProgressListener = null;
+
   /**
    * Provide all information that is needed to establish an TPT API connection. This information is
    * needed for any Callable that is called in later methods, so to reduce parameters in these
@@ -64,6 +87,37 @@ public class TptApiAccess {
     this.startUpWaitTime = tptStartupWaitTime;
   }
 
+  /**
+   * Records the number and the latency of the TPT API calls of all following requests.
+   * 
+   * @param rmiStatisticsFile
+   *          the file on the agent the statistics are appended to. <code>null</code> to stop
+   *          recording.
+   */
+  public void setRmiStatisticsFile(@CheckForNull FilePath rmiStatisticsFile) {
+    this.rmiStatisticsFile = rmiStatisticsFile;
+  }
+
+  /**
+   * Creates a callable that closes the given TPT project in the TPT instance this object connects
+   * to.
+   * 
+   * @param tptFilePath
+   *          the TPT file to close
+   * @return the callable to execute at the end of the build
+   */
+  public CleanUpCallable createCleanUpCallable(FilePath tptFilePath) {
+    return new CleanUpCallable(launcher.getListener(), "localhost", tptPort, tptBindingName,
+        exePaths, startUpWaitTime, tptFilePath);
+  }
+
+  private <S> Callable<S, InterruptedException> instrument(TptApiCallable<S> callable) {
+    if (rmiStatisticsFile == null) {
+      return callable;
+    }
+    return new RmiStatisticsCallable<>(callable, rmiStatisticsFile);
+  }
+
   /**
    * Get all test cases for the given test set. If the test set is <code>null</code> or empty, the
    * test sets of the execution configuration are evaluated.
@@ -74,17 +128,21 @@ public class TptApiAccess {
    *          execution configuration
    * @param testSet
    *          test set from which to get the test cases
+   * @param testSetsOrGroups
+   *          the test sets and scenario groups affected by the changes of the build. Only their
+   *          test cases are returned. <code>null</code> to return all test cases.
    * @return a list of test case names for the given settings and the total test case count
    * @throws InterruptedException
    *           If thread was interrupted
    */
   @CheckForNull
   public GetTestCasesCallableResult getTestCases(FilePath tptFilePath, String executionConfigName,
-                                                 String testSet)
+                                                 String testSet,
+                                                 @CheckForNull Collection<String> testSetsOrGroups)
       throws InterruptedException {
-    GetTestCasesCallable callable =
-        new GetTestCasesCallable(launcher.getListener(), tptPort, tptBindingName, exePaths,
-            arguments, startUpWaitTime, tptFilePath, executionConfigName, testSet);
+    GetTestCasesCallable callable = new GetTestCasesCallable(launcher.getListener(), tptPort,
+        tptBindingName, exePaths, arguments, startUpWaitTime, tptFilePath, executionConfigName,
+        testSet, testSetsOrGroups);
     GetTestCasesCallableResult testCases = null;
     try {
       VirtualChannel channel = launcher.getChannel();
@@ -92,7 +150,7 @@ public class TptApiAccess {
         logger.error("Unable to get test cases: Agent does not support virtual channels.");
         return testCases;
       }
-      testCases = channel.call(callable);
+      testCases = channel.call(instrument(callable));
     } catch (IOException e) {
       logger.error("Unable to get test cases: " + e.getMessage());
     }
@@ -130,7 +188,7 @@ public class TptApiAccess {
         logger.error("Unable to run overview report: Agent does not support virtual channels.");
         return worked;
       }
-      worked = channel.call(callable);
+      worked = channel.call(instrument(callable));
     } catch (IOException e) {
       logger.error("Unable to run overview report: " + e.getMessage());
     }
@@ -138,32 +196,38 @@ public class TptApiAccess {
   }
 
   /**
-   * Executes all test cases named in <code>testSetList</code> as a sub set of the given test set.
+   * Executes all test cases of the batch of the given attempt as a sub set of the test set of the
+   * given configuration.
    * 
    * @param tptFilePath
    *          - tpt file that should be executed
-   * @param executionConfigName
-   *          - execution configuration that should be executed
-   * @param testSetName
-   *          - test set that should be executed
+   * @param config
+   *          - the configuration with all $-variables resolved. Its execution configuration, test
+   *          set and number of cores are used. If it distributes platforms the batch contains
+   *          {@link PlatformWorkItem platform work items} instead of test case names.
    * @param workerJobReportPath
    *          - path to where the report shall be put
    * @param workerJobDataPath
    *          - path to where the test data shall be put
-   * @param testSetList
-   *          The list of test cases to execute
+   * @param testCaseUuids
+   *          the UUIDs of the test cases by name, used to look up the test cases without searching
+   *          the scenario tree
+   * @param attempt
+   *          the attempt of the batch that is executed. The execution is cancelled as soon as the
+   *          attempt {@link TestCaseQueue.Attempt#isCancelled() is cancelled}.
+   * @param progressListener
+   *          the listener the finished test cases are reported to while the execution is running,
+   *          <code>null</code> to not report them
    * @return true if the execution was successful, false otherwise.
    * @throws InterruptedException
    *           If thread was interrupted
    */
-  public Boolean executeTestsOnWorker(FilePath tptFilePath, String executionConfigName,
-                                     String testSetName, FilePath workerJobReportPath,
-                                     FilePath workerJobDataPath, List<String> testSetList)
+  public Boolean executeTestsOnWorker(FilePath tptFilePath, JenkinsConfiguration config,
+                                     FilePath workerJobReportPath, FilePath workerJobDataPath,
+                                     Map<String, String> testCaseUuids,
+                                     TestCaseQueue.Attempt attempt,
+                                     @CheckForNull ExecutionProgressListener progressListener)
       throws InterruptedException {
-    ExecuteTestsWorkerJobCallable callable =
-        new ExecuteTestsWorkerJobCallable(launcher.getListener(), tptPort, tptBindingName, exePaths,
-            arguments, startUpWaitTime, tptFilePath, workerJobReportPath, workerJobDataPath,
-            executionConfigName, testSetList, testSetName);
     Boolean worked = false;
     try {
       VirtualChannel channel = launcher.getChannel();
@@ -171,10 +235,55 @@ public class TptApiAccess {
         logger.error("Unable to execute tests on agent: Agent does not support virtual channels.");
         return worked;
       }
-      worked = channel.call(callable);
+      // the agent calls the exported listener back on the controller
+      ExecutionProgressListener exportedListener = export(channel, progressListener);
+      ExecuteTestsWorkerJobCallable callable = new ExecuteTestsWorkerJobCallable(
+          launcher.getListener(), tptPort, tptBindingName, exePaths, arguments, startUpWaitTime,
+          tptFilePath, workerJobReportPath, workerJobDataPath, config.getConfiguration(),
+          attempt.getTestCases(), config.getTestSet(), config.getCores(),
+          config.isDistributePlatforms(), testCaseUuids, exportedListener);
+      // poll the execution, so it can be cancelled if another worker job finished the batch first
+      Future<Boolean> execution = channel.callAsync(instrument(callable));
+      try {
+        while (true) {
+          try {
+            worked = execution.get(1, TimeUnit.SECONDS);
+            break;
+          } catch (TimeoutException e) {
+            if (attempt.isCancelled()) {
+              logger.info("Cancelling test execution.");
+              // interrupts the callable on the agent which cancels the TPT execution
+              execution.cancel(true);
+              return false;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        execution.cancel(true);
+        throw e;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException) {
+          throw (InterruptedException)cause;
+        }
+        throw new IOException(cause);
+      }
     } catch (IOException e) {
       logger.error("\"Unable to execute tests on agent: " + e.getMessage());
     }
     return worked;
   }
+
+  @CheckForNull
+  private ExecutionProgressListener export(VirtualChannel channel,
+                                           @CheckForNull ExecutionProgressListener listener) {
+    if (listener == null) {
+      return null;
+    }
+    if (listener != progressListener) {
+      progressListener = listener;
+      exportedProgressListener = channel.export(ExecutionProgressListener.class, listener);
+    }
+    return exportedProgressListener;
+  }
 }
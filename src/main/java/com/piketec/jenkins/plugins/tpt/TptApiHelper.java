@@ -52,7 +52,7 @@ public class TptApiHelper {
       throws RemoteException {
     if (tptVersion.isAtLeast(16, 0)) {
       Collection<Scenario> result = new ArrayList<>();
-      for (ScenarioOrGroup sog : testSet.getSelectedTestCasesOrGroups().asIterable()) {
+      for (ScenarioOrGroup sog : testSet.getSelectedTestCasesOrGroups().getItems()) {
         if (sog instanceof Scenario) {
           result.add((Scenario)sog);
         }
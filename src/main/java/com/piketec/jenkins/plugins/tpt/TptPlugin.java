@@ -82,6 +82,18 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
   @CheckForNull
   private String workerJobTries = null;
 
+  @CheckForNull
+  private String workerBatchSize = null;
+
+  @CheckForNull
+  private String speculationFactor = null;
+
+  @CheckForNull
+  private String workerJobPriority = null;
+
+  @CheckForNull
+  private String resultCacheDir = null;
+
   @CheckForNull
   private String tptBindingName = null;
 
@@ -91,6 +103,13 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
   @CheckForNull
   private String tptStartUpWaitTime = null;
 
+  private boolean keepTptProjectOpen = DescriptorImpl.getDefaultKeepTptProjectOpen();
+
+  private boolean recordRmiStatistics = DescriptorImpl.getDefaultRecordRmiStatistics();
+
+  private boolean shareQueueAcrossConfigurations =
+      DescriptorImpl.getDefaultShareQueueAcrossConfigurations();
+
   // null = old version where the behaviour could not be turned off -> enable in read resolve
   private Boolean enableJunit = null;
 
@@ -322,6 +341,139 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
         DescriptorImpl.DEFAULT_WORKER_JOB_TRIES.equals(slaveJobTries) ? null : slaveJobTries;
   }
 
+  /**
+   * @return The number of test cases a worker job takes at once from the queue shared by all worker
+   *         jobs. A value below 1 means every worker job gets a fixed sub test set.
+   */
+  public String getWorkerBatchSize() {
+    return workerBatchSize == null ? DescriptorImpl.DEFAULT_WORKER_BATCH_SIZE : workerBatchSize;
+  }
+
+  /**
+   * @param workerBatchSize
+   *          The number of test cases a worker job takes at once from the queue shared by all
+   *          worker jobs. A value below 1 means every worker job gets a fixed sub test set.
+   */
+  @DataBoundSetter
+  public void setWorkerBatchSize(String workerBatchSize) {
+    this.workerBatchSize =
+        DescriptorImpl.DEFAULT_WORKER_BATCH_SIZE.equals(workerBatchSize) ? null : workerBatchSize;
+  }
+
+  /**
+   * @return A batch of the shared queue is executed a second time by an idle worker job if it runs
+   *         longer than this factor times its expected duration. A value of 0 disables
+   *         speculative execution.
+   */
+  public String getSpeculationFactor() {
+    return speculationFactor == null ? DescriptorImpl.DEFAULT_SPECULATION_FACTOR
+        : speculationFactor;
+  }
+
+  /**
+   * @param speculationFactor
+   *          A batch of the shared queue is executed a second time by an idle worker job if it
+   *          runs longer than this factor times its expected duration. A value of 0 disables
+   *          speculative execution.
+   */
+  @DataBoundSetter
+  public void setSpeculationFactor(String speculationFactor) {
+    this.speculationFactor = DescriptorImpl.DEFAULT_SPECULATION_FACTOR.equals(speculationFactor)
+        ? null : speculationFactor;
+  }
+
+  /**
+   * @return The weight of this build when it shares the worker job with other distributing job
+   *         builds. A build with twice the priority gets twice as many worker job builds.
+   */
+  public String getWorkerJobPriority() {
+    return workerJobPriority == null ? DescriptorImpl.DEFAULT_WORKER_JOB_PRIORITY
+        : workerJobPriority;
+  }
+
+  /**
+   * @param workerJobPriority
+   *          The weight of this build when it shares the worker job with other distributing job
+   *          builds. A build with twice the priority gets twice as many worker job builds.
+   */
+  @DataBoundSetter
+  public void setWorkerJobPriority(String workerJobPriority) {
+    this.workerJobPriority = DescriptorImpl.DEFAULT_WORKER_JOB_PRIORITY.equals(workerJobPriority)
+        ? null : workerJobPriority;
+  }
+
+  /**
+   * @return the directory on the node of the distributing job where test results are cached, empty
+   *         if the cache is disabled
+   */
+  public String getResultCacheDir() {
+    return Util.fixNull(resultCacheDir);
+  }
+
+  /**
+   * @param resultCacheDir
+   *          the directory on the node of the distributing job where test results are cached.
+   *          Relative paths are resolved against the workspace. Empty to disable the cache.
+   */
+  @DataBoundSetter
+  public void setResultCacheDir(String resultCacheDir) {
+    this.resultCacheDir = Util.fixEmptyAndTrim(resultCacheDir);
+  }
+
+  /**
+   * @return if the TPT project should stay open after the build so the next build on the same agent
+   *         can reuse it as long as the TPT file is not modified
+   */
+  public boolean isKeepTptProjectOpen() {
+    return keepTptProjectOpen;
+  }
+
+  /**
+   * @param keepTptProjectOpen
+   *          if the TPT project should stay open after the build so the next build on the same
+   *          agent can reuse it as long as the TPT file is not modified
+   */
+  @DataBoundSetter
+  public void setKeepTptProjectOpen(boolean keepTptProjectOpen) {
+    this.keepTptProjectOpen = keepTptProjectOpen;
+  }
+
+  /**
+   * @return if the number and the latency of the TPT API calls of the distributing job and the
+   *         worker jobs should be recorded and archived
+   */
+  public boolean isRecordRmiStatistics() {
+    return recordRmiStatistics;
+  }
+
+  /**
+   * @param recordRmiStatistics
+   *          if the number and the latency of the TPT API calls of the distributing job and the
+   *          worker jobs should be recorded and archived
+   */
+  @DataBoundSetter
+  public void setRecordRmiStatistics(boolean recordRmiStatistics) {
+    this.recordRmiStatistics = recordRmiStatistics;
+  }
+
+  /**
+   * @return if the worker jobs take the batches of all configurations from one queue instead of
+   *         executing the configurations one after the other
+   */
+  public boolean isShareQueueAcrossConfigurations() {
+    return shareQueueAcrossConfigurations;
+  }
+
+  /**
+   * @param shareQueueAcrossConfigurations
+   *          if the worker jobs take the batches of all configurations from one queue instead of
+   *          executing the configurations one after the other
+   */
+  @DataBoundSetter
+  public void setShareQueueAcrossConfigurations(boolean shareQueueAcrossConfigurations) {
+    this.shareQueueAcrossConfigurations = shareQueueAcrossConfigurations;
+  }
+
   /**
    * @return the RMI binding name for TPT
    */
@@ -614,14 +766,69 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
             + environment.expand(workerJobCount) + "\" is not an integer. Using default value.");
       }
     }
+    // expand workerBatchSize
+    int parsedWorkerBatchSize = 0;
+    String workerBatchSize = getWorkerBatchSize();
+    if (!workerBatchSize.isEmpty()) {
+      try {
+        parsedWorkerBatchSize = Integer.parseInt(environment.expand(workerBatchSize));
+      } catch (NumberFormatException e) {
+        logger.error("The given batch size for worker jobs \"" + environment.expand(workerBatchSize)
+            + "\" is not an integer. Using default value.");
+      }
+    }
+    // expand speculationFactor
+    double parsedSpeculationFactor = 0;
+    String speculationFactor = getSpeculationFactor();
+    if (!speculationFactor.isEmpty()) {
+      try {
+        parsedSpeculationFactor = Double.parseDouble(environment.expand(speculationFactor));
+      } catch (NumberFormatException e) {
+        logger.error("The given speculation factor \"" + environment.expand(speculationFactor)
+            + "\" is not a number. Using default value.");
+      }
+    }
+    // expand workerJobPriority
+    int parsedWorkerJobPriority = 1;
+    String workerJobPriority = getWorkerJobPriority();
+    if (!workerJobPriority.isEmpty()) {
+      try {
+        parsedWorkerJobPriority = Integer.parseInt(environment.expand(workerJobPriority));
+      } catch (NumberFormatException e) {
+        logger.error("The given worker job priority \"" + environment.expand(workerJobPriority)
+            + "\" is not an integer. Using default value.");
+      }
+      if (parsedWorkerJobPriority < 1) {
+        logger.error("The given worker job priority \"" + environment.expand(workerJobPriority)
+            + "\" is smaller than 1. Using default value.");
+        parsedWorkerJobPriority = 1;
+      }
+    }
     // expand other variables
     String expandedWorkerJobName = environment.expand(getWorkerJob());
+    DistributingSettings settings = new DistributingSettings();
+    settings.setExePaths(expandedExePaths);
+    settings.setArguments(expandedArguments);
+    settings.setTptPort(expandedTptPort);
+    settings.setTptBindingName(expandedTptBindingName);
+    settings.setTptStartupWaitTime(expandedTptStartupWaitTime);
+    settings.setWorkerJobName(expandedWorkerJobName);
+    settings.setWorkerJobCount(parsedWorkerJobCount);
+    settings.setWorkerJobTries(parsedWorkerJobTries);
+    settings.setWorkerBatchSize(parsedWorkerBatchSize);
+    settings.setSpeculationFactor(parsedSpeculationFactor);
+    settings.setWorkerJobPriority(parsedWorkerJobPriority);
+    settings.setKeepTptProjectOpen(isKeepTptProjectOpen());
+    settings.setRecordRmiStatistics(isRecordRmiStatistics());
+    settings.setShareQueueAcrossConfigurations(isShareQueueAcrossConfigurations());
+    settings.setResultCacheDir(environment.expand(getResultCacheDir()));
+    settings.setJUnitXmlPath(jUnitXmlPath);
+    settings.setJUnitLogLevel(getJUnitLogLevel());
+    settings.setEnableJunit(isEnableJunit());
     // start execution
     TptPluginDistributingJobExecutor executor =
-        new TptPluginDistributingJobExecutor(build, workspace, launcher, listener, expandedExePaths,
-            expandedArguments, configs, expandedTptPort, expandedTptBindingName,
-            expandedWorkerJobName, expandedTptStartupWaitTime, parsedWorkerJobCount,
-            parsedWorkerJobTries, jUnitXmlPath, getJUnitLogLevel(), isEnableJunit());
+        new TptPluginDistributingJobExecutor(build, workspace, launcher, listener, configs,
+            settings);
     try {
       return executor.execute();
     } finally {
@@ -651,6 +858,12 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
 
     public static final String DEFAULT_WORKER_JOB_TRIES = "1";
 
+    public static final String DEFAULT_WORKER_BATCH_SIZE = "0";
+
+    public static final String DEFAULT_SPECULATION_FACTOR = "0";
+
+    public static final String DEFAULT_WORKER_JOB_PRIORITY = "1";
+
     /**
      * @return "TptApi"
      */
@@ -686,6 +899,27 @@ public class TptPlugin extends Builder implements SimpleBuildStep {
       return false;
     }
 
+    /**
+     * @return <code>false</code>
+     */
+    public static boolean getDefaultKeepTptProjectOpen() {
+      return false;
+    }
+
+    /**
+     * @return <code>false</code>
+     */
+    public static boolean getDefaultRecordRmiStatistics() {
+      return false;
+    }
+
+    /**
+     * @return <code>false</code>
+     */
+    public static boolean getDefaultShareQueueAcrossConfigurations() {
+      return false;
+    }
+
     /**
      * @return <code>INFO</code>
      */
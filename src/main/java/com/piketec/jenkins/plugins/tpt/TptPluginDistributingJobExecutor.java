@@ -24,23 +24,43 @@ import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.CheckForNull;
 
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
 import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
 import com.piketec.jenkins.plugins.tpt.api.callables.CleanUpCallable;
 import com.piketec.jenkins.plugins.tpt.api.callables.GetTestCasesCallableResult;
+import com.piketec.jenkins.plugins.tpt.api.callables.RmiStatisticsCallable;
 
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.Job;
-import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.model.Jenkins;
 
 class TptPluginDistributingJobExecutor {
@@ -73,65 +93,71 @@ class TptPluginDistributingJobExecutor {
 
   private int workerJobTries;
 
+  private int workerBatchSize;
+
+  private double speculationFactor;
+
+  private boolean keepTptProjectOpen;
+
+  private boolean recordRmiStatistics;
+
+  private boolean shareQueueAcrossConfigurations;
+
+  private String resultCacheDir;
+
   private String jUnitXmlPath;
 
   private LogLevel jUnitLogLevel;
 
   private boolean enableJunit;
 
+  private DistributingSettings settings;
+
+  private ExecutionProgress progress;
+
   /**
    * @param build
    *          to get the workspace, for the cleanuptask and for triggering a build for a worker job
+   * @param workspace
+   *          the workspace of the build
    * @param launcher
    *          to execute a process
    * @param listener
-   * @param exePaths
-   *          the paths to the tpt executables
+   *          for the logs
    * @param executionConfigs
    *          all the jenkins configurations given in the descriptor, used to get the
    *          Files,Execution Configuration, test Set, testDataDir, reportDir,etc
-   * @param tptPort
-   *          the port for binding to the TptApi
-   * @param tptBindingName
-   *          the binding name used to connect to the TptApi (for the registry)
-   * @param workerJobName
-   *          the name of the worker job, used for putting the workload to the right worker job
-   * @param tptStartupWaitTime
-   *          the time it should wait before start tpt
-   * @param workerJobCount
-   *          the number of workerJobs that will be executed
-   * @param workerJobTries
-   *          used for the retryablejob
-   * @param jUnitXmlPath
-   *          the path where the jUnit XML is going to be created
-   * @param jUnitLogLevel
-   * @param enableJunit
-   *          to know if is necessary to generate the jUnit XML
+   * @param settings
+   *          the expanded options of the distributing job. They are handed on to the worker jobs.
    */
   TptPluginDistributingJobExecutor(Run< ? , ? > build, FilePath workspace, Launcher launcher,
-                                   TaskListener listener, FilePath[] exePaths, String arguments,
-                                   List<JenkinsConfiguration> executionConfigs, int tptPort,
-                                   String tptBindingName, String workerJobName,
-                                   long tptStartupWaitTime, int workertJobCount, int workerJobTries,
-                                   String jUnitXmlPath, LogLevel jUnitLogLevel,
-                                   boolean enableJunit) {
+                                   TaskListener listener,
+                                   List<JenkinsConfiguration> executionConfigs,
+                                   DistributingSettings settings) {
     this.logger = new TptLogger(listener.getLogger());
     this.launcher = launcher;
     this.build = build;
     this.workspace = workspace;
     this.listener = listener;
-    this.exePaths = exePaths;
-    this.arguments = arguments;
     this.executionConfigs = executionConfigs;
-    this.tptPort = tptPort;
-    this.tptBindingName = tptBindingName;
-    this.workerJobName = workerJobName;
-    this.tptStartupWaitTime = tptStartupWaitTime;
-    this.workerJobCount = workertJobCount;
-    this.workerJobTries = workerJobTries;
-    this.jUnitLogLevel = jUnitLogLevel;
-    this.jUnitXmlPath = jUnitXmlPath;
-    this.enableJunit = enableJunit;
+    this.settings = settings;
+    this.exePaths = settings.getExePaths();
+    this.arguments = settings.getArguments();
+    this.tptPort = settings.getTptPort();
+    this.tptBindingName = settings.getTptBindingName();
+    this.workerJobName = settings.getWorkerJobName();
+    this.tptStartupWaitTime = settings.getTptStartupWaitTime();
+    this.workerJobCount = settings.getWorkerJobCount();
+    this.workerJobTries = settings.getWorkerJobTries();
+    this.workerBatchSize = settings.getWorkerBatchSize();
+    this.speculationFactor = settings.getSpeculationFactor();
+    this.keepTptProjectOpen = settings.isKeepTptProjectOpen();
+    this.recordRmiStatistics = settings.isRecordRmiStatistics();
+    this.shareQueueAcrossConfigurations = settings.isShareQueueAcrossConfigurations();
+    this.resultCacheDir = settings.getResultCacheDir();
+    this.jUnitLogLevel = settings.getJUnitLogLevel();
+    this.jUnitXmlPath = settings.getJUnitXmlPath();
+    this.enableJunit = settings.isEnableJunit();
   }
 
   /**
@@ -147,8 +173,6 @@ class TptPluginDistributingJobExecutor {
    * @throws InterruptedException
    */
   boolean execute() throws InterruptedException {
-    TptApiAccess tptApiAccess = new TptApiAccess(launcher, logger, exePaths,
-        Utils.parseCommandLine(arguments), tptPort, tptBindingName, tptStartupWaitTime);
     boolean success = true;
     // We delete the JUnit results before iterating over the jenkinsConfigs
     if (workspace == null) {
@@ -156,9 +180,34 @@ class TptPluginDistributingJobExecutor {
       return false;
     }
     removeJUnitData(workspace);
+    // use an own TPT instance if other builds use TPT on the same node. The lease stays busy until
+    // the clean up, so worker job builds on this node do not share it.
+    TptPortAllocator.Lease lease =
+        TptPortAllocator.acquire(workspace, build, tptPort, tptBindingName);
+    tptPort = lease.getPort();
+    tptBindingName = lease.getBindingName();
+    logger.info("Using TPT port " + tptPort + " and binding name \"" + tptBindingName + "\"");
+    TptApiAccess tptApiAccess = new TptApiAccess(launcher, logger, exePaths,
+        Utils.parseCommandLine(arguments), tptPort, tptBindingName, tptStartupWaitTime);
+    if (recordRmiStatistics) {
+      FilePath statisticsFile = new FilePath(workspace, RmiStatisticsCallable.FILE_NAME);
+      try {
+        // statistics of an aborted build that could not be archived
+        statisticsFile.delete();
+      } catch (IOException e) {
+        logger.error("Could not delete " + statisticsFile.getRemote() + ": " + e.getMessage());
+      }
+      tptApiAccess.setRmiStatisticsFile(statisticsFile);
+    }
+    // the worker jobs report the finished test cases while they are executed
+    progress = ExecutionProgress.start(build, logger);
     try {
-      for (JenkinsConfiguration ec : executionConfigs) {
-        success &= executeOneConfig(ec, tptApiAccess);
+      if (shareQueueAcrossConfigurations) {
+        success = executeAllConfigs(tptApiAccess);
+      } else {
+        for (JenkinsConfiguration ec : executionConfigs) {
+          success &= executeOneConfig(ec, tptApiAccess);
+        }
       }
     } finally {
       logger.info("Close open TPT project of distributing job and worker jobs.");
@@ -167,6 +216,11 @@ class TptPluginDistributingJobExecutor {
             + "There is no guarantee next run will be be done with correct file version.");
         success = false;
       }
+      if (recordRmiStatistics) {
+        Utils.archiveRmiStatistics(build, workspace, launcher, listener, logger);
+      }
+      ExecutionProgress.stop(build);
+      logger.info(progress.getSummary());
     }
     return success;
   }
@@ -195,6 +249,232 @@ class TptPluginDistributingJobExecutor {
     if (!unresolvedConfig.isEnableTest()) {
       return true;
     }
+    ConfigurationExecution execution = prepareConfig(unresolvedConfig, tptApiAccess);
+    if (execution == null) {
+      return false;
+    }
+    // Divide testcases into Workloads for the worker jobs to execute
+    // create test case queues for worker jobs
+    ArrayList<TestCaseQueue> testCaseQueues = new ArrayList<>();
+    if (workerBatchSize >= 1) {
+      // all worker jobs take batches from the same queue until it is empty
+      TestCaseQueue sharedQueue = createSharedQueue(execution, workerBatchSize);
+      int batchCount = sharedQueue.getBatchCount();
+      int jobCount = workerJobCount >= 1 ? Math.min(workerJobCount, batchCount) : batchCount;
+      logger.info("Distributing " + batchCount + " batches of at most " + workerBatchSize
+          + " test cases to " + jobCount + " worker jobs.");
+      for (int i = 0; i < jobCount; i++) {
+        testCaseQueues.add(sharedQueue);
+      }
+    } else {
+      Collection<String> workItems = execution.workItems;
+      ArrayList<List<String>> subTestSets;
+      if (workerJobCount >= 1 && !execution.executionDurations.isEmpty()) {
+        logger.info("Distributing test cases by execution durations of previous run.");
+        subTestSets = getSubTestSetsByDuration(workItems, workerJobCount,
+            execution.executionDurations, logger);
+      } else {
+        int workerJobSize;
+        int remainer;
+        if (workerJobCount >= 1) {
+          workerJobSize = workItems.size() / workerJobCount;
+          remainer = workItems.size() % workerJobCount;
+        } else {
+          workerJobSize = 1;
+          remainer = 0;
+        }
+        subTestSets = getSubTestSets(workItems, workerJobSize, remainer);
+      }
+      for (List<String> subTestSet : subTestSets) {
+        logger.info("Create job for \"" + subTestSet + "\"");
+        testCaseQueues.add(new TestCaseQueue(subTestSet, 0));
+      }
+    }
+    // start one job for every test set
+    Job workerJob = findWorkerJob();
+    if (workerJob == null) {
+      return false;
+    }
+    WorkerBuildCoordinator coordinator = new WorkerBuildCoordinator(build, logger);
+    for (TestCaseQueue testCaseQueue : testCaseQueues) {
+      // creates the workloads for the worker jobs, with the smaller chunks of testsets
+      WorkLoad workloadToAdd = new WorkLoad(unresolvedConfig, testCaseQueue, workspace, build,
+          execution.testDataPath, execution.reportPath);
+      workloadToAdd.setTestCaseUuids(execution.testCases.testCaseUuids);
+      workloadToAdd.setExpectedResultCounts(execution.expectedResultCounts);
+      workloadToAdd.setSettings(settings);
+      // it adds the workloads to an static HashMap.
+      WorkLoad.putWorkLoad(workerJobName, workloadToAdd);
+      // Creates a retryable job , there are the builds scheduled. So the logic is : We put a
+      // workload in a static HashMap and then we trigger a build for a worker job. In that way we
+      // are distributing the builds on the worker jobs.
+      coordinator.start(new RetryableJob(workerJobTries, logger, workerJob));
+    }
+    logger.info("Waiting for completion of child jobs.");
+    try {
+      if (!coordinator.awaitCompletion()) {
+        success = false;
+      }
+    } catch (InterruptedException e) {
+      logger.info("Stopping worker jobs.");
+      logger.interrupt(e.getMessage());
+      throw e;
+    }
+    return finishConfig(execution, tptApiAccess) & success;
+  }
+
+  /**
+   * Lists the test cases of all configurations up front and lets every worker job take batches
+   * from the queues of all configurations, one configuration after the other. The overview report
+   * and the JUnit results of a configuration are created as soon as all of its batches are
+   * executed, while the worker jobs already execute the batches of the following configurations.
+   * Configurations that use the same TPT execution configuration are finished together, after the
+   * batches of all of them are executed.
+   */
+  private boolean executeAllConfigs(final TptApiAccess tptApiAccess) throws InterruptedException {
+    boolean success = true;
+    int batchSize = Math.max(1, workerBatchSize);
+    List<ConfigurationExecution> executions = new ArrayList<>();
+    int batchCount = 0;
+    for (JenkinsConfiguration unresolvedConfig : executionConfigs) {
+      if (!unresolvedConfig.isEnableTest()) {
+        continue;
+      }
+      ConfigurationExecution execution = prepareConfig(unresolvedConfig, tptApiAccess);
+      if (execution == null) {
+        success = false;
+        continue;
+      }
+      execution.testCaseQueue = createSharedQueue(execution, batchSize);
+      batchCount += execution.testCaseQueue.getBatchCount();
+      executions.add(execution);
+    }
+    if (executions.isEmpty()) {
+      return success;
+    }
+    Job workerJob = findWorkerJob();
+    if (workerJob == null) {
+      return false;
+    }
+    int jobCount = workerJobCount >= 1 ? Math.min(workerJobCount, batchCount) : batchCount;
+    logger.info("Distributing " + batchCount + " batches of at most " + batchSize
+        + " test cases of " + executions.size() + " configurations to " + jobCount
+        + " worker jobs.");
+    // overview reports are created one after the other by the TPT instance of this job
+    final ExecutorService reportExecutor = Executors.newSingleThreadExecutor(
+        new NamingThreadFactory(new DaemonThreadFactory(), "TPT overview report"));
+    try {
+      for (final ConfigurationExecution execution : executions) {
+        execution.testCaseQueue.setDoneListener(new Runnable() {
+
+          @Override
+          public void run() {
+            finishConfigLater(execution, executions, tptApiAccess, reportExecutor);
+          }
+        });
+        if (execution.testCaseQueue.isDone()) {
+          finishConfigLater(execution, executions, tptApiAccess, reportExecutor);
+        }
+      }
+      WorkerBuildCoordinator coordinator = new WorkerBuildCoordinator(build, logger);
+      for (int i = 0; i < jobCount; i++) {
+        // every worker job gets a chain of workloads, one per configuration
+        WorkLoad next = null;
+        for (int j = executions.size() - 1; j >= 0; j--) {
+          ConfigurationExecution execution = executions.get(j);
+          WorkLoad workload = new WorkLoad(execution.unresolvedConfig, execution.testCaseQueue,
+              workspace, build, execution.testDataPath, execution.reportPath);
+          workload.setTestCaseUuids(execution.testCases.testCaseUuids);
+          workload.setExpectedResultCounts(execution.expectedResultCounts);
+          workload.setSettings(settings);
+          workload.setNext(next);
+          next = workload;
+        }
+        WorkLoad.putWorkLoad(workerJobName, next);
+        coordinator.start(new RetryableJob(workerJobTries, logger, workerJob));
+      }
+      logger.info("Waiting for completion of child jobs.");
+      try {
+        if (!coordinator.awaitCompletion()) {
+          success = false;
+        }
+      } catch (InterruptedException e) {
+        logger.info("Stopping worker jobs.");
+        logger.interrupt(e.getMessage());
+        throw e;
+      }
+      // configurations with test cases that could not be executed are finished now
+      for (ConfigurationExecution execution : executions) {
+        finishConfigLater(execution, executions, tptApiAccess, reportExecutor);
+      }
+      for (ConfigurationExecution execution : executions) {
+        try {
+          success &= execution.finished.get();
+        } catch (ExecutionException e) {
+          logger.error("Could not finish configuration \"" + execution.resolvedConfig.getId()
+              + "\": " + e.getCause());
+          success = false;
+        }
+      }
+    } finally {
+      reportExecutor.shutdownNow();
+    }
+    return success;
+  }
+
+  /**
+   * Marks the worker jobs as done with the given configuration and submits
+   * {@link #finishConfig(ConfigurationExecution, TptApiAccess)} for it. The overview report
+   * temporarily changes the TPT execution configuration, so it is only submitted when the worker
+   * jobs are done with all configurations that use the same TPT execution configuration, and then
+   * for all of them.
+   */
+  private synchronized void finishConfigLater(ConfigurationExecution execution,
+                                              List<ConfigurationExecution> executions,
+                                              final TptApiAccess tptApiAccess,
+                                              ExecutorService reportExecutor) {
+    if (execution.workersDone) {
+      return;
+    }
+    execution.workersDone = true;
+    logger.info("All worker jobs are done with configuration \"" + execution.resolvedConfig.getId()
+        + "\".");
+    List<ConfigurationExecution> sameTptConfig = new ArrayList<>();
+    for (ConfigurationExecution other : executions) {
+      if (!other.usesSameTptConfig(execution)) {
+        continue;
+      }
+      if (!other.workersDone) {
+        logger.info("Overview report of configuration \"" + execution.resolvedConfig.getId()
+            + "\" waits for configuration \"" + other.resolvedConfig.getId()
+            + "\", which uses the same TPT execution configuration.");
+        return;
+      }
+      sameTptConfig.add(other);
+    }
+    for (final ConfigurationExecution done : sameTptConfig) {
+      if (done.finished != null) {
+        continue;
+      }
+      done.finished = reportExecutor.submit(new Callable<Boolean>() {
+
+        @Override
+        public Boolean call() throws InterruptedException {
+          return finishConfig(done, tptApiAccess);
+        }
+      });
+    }
+  }
+
+  /**
+   * Resolves the configuration, prepares its directories and collects the test cases to execute.
+   * 
+   * @return the prepared execution or <code>null</code> if the configuration cannot be executed
+   */
+  @CheckForNull
+  private ConfigurationExecution prepareConfig(JenkinsConfiguration unresolvedConfig,
+                                               TptApiAccess tptApiAccess)
+      throws InterruptedException {
     // Resolve $-vars in paths, test set and execution config names
     JenkinsConfiguration resolvedConfig = unresolvedConfig;
     if (build instanceof AbstractBuild) {
@@ -204,18 +484,25 @@ class TptPluginDistributingJobExecutor {
     if (!(build instanceof AbstractBuild)) {
       // We cannot check all IDs beforehand for pipeline jobs so do it here
       if (!Utils.checkId(resolvedConfig, build, logger)) {
-        return false;
+        return null;
       }
     }
     // Get necessery paths the user added in the job configuration:
     GetTestCasesCallableResult testCases = null;
     if (workspace == null) {
       logger.error("No workspace available");
-      return false;
+      return null;
     }
     FilePath testDataPath = new FilePath(workspace, Utils.getGeneratedTestDataDir(resolvedConfig));
     FilePath reportPath = new FilePath(workspace, Utils.getGeneratedReportDir(resolvedConfig));
     FilePath tptFilePath = new FilePath(workspace, resolvedConfig.getTptFile());
+    // Remember the execution durations of the previous run before the test data is deleted
+    Map<String, Long> executionDurations = Collections.emptyMap();
+    try {
+      executionDurations = Publish.getExecutionDurations(testDataPath, logger);
+    } catch (IOException e) {
+      logger.warn("Could not read execution durations of previous run: " + e.getMessage());
+    }
     try {
       logger.info("Create and/or clean test data directory \"" + testDataPath.getRemote() + "\"");
       testDataPath.mkdirs();
@@ -223,41 +510,122 @@ class TptPluginDistributingJobExecutor {
       logger.info("Create and/or clean report directory \"" + reportPath.getRemote() + "\"");
       reportPath.mkdirs();
       reportPath.deleteContents();
+      // JUnit fragments of a previous build that has been aborted
+      new FilePath(workspace, Utils.getJUnitFragmentDir(resolvedConfig)).deleteRecursive();
     } catch (IOException e) {
       logger.error("Could not create or clear directories: " + e.getMessage());
-      return false;
+      return null;
     }
     // Register cleanup task that is called in the end to close remote TPT Project
-    CleanUpCallable cleanUpCallable = new CleanUpCallable(listener, "localhost", tptPort,
-        tptBindingName, exePaths, tptStartupWaitTime, tptFilePath);
-    new CleanUpTask(build, cleanUpCallable, launcher);
-    // Get the list of testcases via the TPT API
+    if (!keepTptProjectOpen) {
+      CleanUpCallable cleanUpCallable = tptApiAccess.createCleanUpCallable(tptFilePath);
+      new CleanUpTask(build, cleanUpCallable, launcher);
+    }
+    // Get the list of testcases via the TPT API, restricted to those affected by the changes
+    Set<String> affectedTestSetsOrGroups = ChangeImpact.getAffectedTestSetsOrGroups(build,
+        resolvedConfig.getChangeImpactMapping(), logger);
     testCases = tptApiAccess.getTestCases(tptFilePath, resolvedConfig.getConfiguration(),
-        resolvedConfig.getTestSet());
+        resolvedConfig.getTestSet(), affectedTestSetsOrGroups);
     if (testCases == null) {
       logger.error("Unable to get test cases via TPT API.");
-      return false;
+      return null;
     }
-    // Divide testcases into Workloads for the worker jobs to execute
-    ArrayList<RetryableJob> retryableJobs = new ArrayList<>();
-    // create test sets for worker jobs
-    int workerJobSize;
-    int remainer;
-    if (workerJobCount >= 1) {
-      workerJobSize = testCases.testCases.size() / workerJobCount;
-      remainer = testCases.testCases.size() % workerJobCount;
-    } else {
-      workerJobSize = 1;
-      remainer = 0;
+    if (!testCases.notSelectedTestCases.isEmpty()) {
+      logger.info("Test cases not selected, because they are not affected by the changes: "
+          + new TreeSet<>(testCases.notSelectedTestCases));
     }
-    ArrayList<List<String>> subTestSets =
-        getSubTestSets(testCases.testCases, workerJobSize, remainer);
-    // start one job for every test set
+    // Restore the results of unchanged test cases instead of executing them again
+    ResultCache resultCache = null;
+    Set<String> cachedTestCases = Collections.emptySet();
+    if (!StringUtils.isBlank(resultCacheDir)) {
+      try {
+        resultCache = ResultCache.create(new FilePath(workspace, resultCacheDir), workspace,
+            tptFilePath, resolvedConfig, testCases.tptVersion);
+        cachedTestCases = resultCache.restore(testCases.testCases, testDataPath, reportPath);
+        logger.info("Restored the results of " + cachedTestCases.size() + " of "
+            + testCases.testCases.size() + " test cases from the result cache.");
+      } catch (IOException e) {
+        logger.warn("Could not restore cached test results: " + e.getMessage());
+        resultCache = null;
+        cachedTestCases = Collections.emptySet();
+      }
+    }
+    Collection<String> workItems = new ArrayList<>(testCases.testCases);
+    if (resolvedConfig.isDistributePlatforms()) {
+      workItems = PlatformWorkItem.toWorkItems(testCases.testCasesByItem);
+      executionDurations = getWorkItemDurations(testCases.testCasesByItem, executionDurations);
+      logger.info("Distributing " + workItems.size() + " combinations of test cases and "
+          + testCases.testCasesByItem.size() + " execution configuration items.");
+    }
+    if (!cachedTestCases.isEmpty()) {
+      Iterator<String> iterator = workItems.iterator();
+      while (iterator.hasNext()) {
+        String workItem = iterator.next();
+        String testCase = resolvedConfig.isDistributePlatforms()
+            ? PlatformWorkItem.getTestCase(workItem) : workItem;
+        if (cachedTestCases.contains(testCase)) {
+          iterator.remove();
+        }
+      }
+    }
+    ConfigurationExecution execution = new ConfigurationExecution(unresolvedConfig,
+        resolvedConfig, testCases, workItems, executionDurations, testDataPath, reportPath,
+        tptFilePath);
+    execution.resultCache = resultCache;
+    execution.cachedTestCases = cachedTestCases;
+    progress.addTestCases(workItems.size());
+    return execution;
+  }
+
+  /**
+   * Stores the results of the test cases that have been executed in the result cache. Only test
+   * cases with a result for every execution configuration item and without an execution error are
+   * stored, so incomplete or failed executions are repeated by the next build.
+   */
+  private void storeResults(ConfigurationExecution execution) throws InterruptedException {
+    if (execution.resultCache == null) {
+      return;
+    }
+    Map<String, Integer> executedTestCases = new HashMap<>(execution.expectedResultCounts);
+    executedTestCases.keySet().removeAll(execution.cachedTestCases);
+    try {
+      Set<String> finished =
+          Publish.getFinishedTestCases(execution.testDataPath, executedTestCases, true);
+      int stored =
+          execution.resultCache.store(finished, execution.testDataPath, execution.reportPath);
+      logger.info("Stored the results of " + stored + " test cases in the result cache.");
+    } catch (IOException e) {
+      logger.warn("Could not store test results in the result cache: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Creates a queue shared by all worker jobs. The longest work items come first if the execution
+   * durations of the previous run are known. Only then batches that take much longer than expected
+   * can be detected and copied.
+   */
+  private TestCaseQueue createSharedQueue(ConfigurationExecution execution, int batchSize) {
+    if (execution.executionDurations.isEmpty()) {
+      return new TestCaseQueue(execution.workItems, batchSize);
+    }
+    logger.info("Ordering test cases by execution durations of previous run.");
+    Map<String, Long> expectedDurations =
+        getExpectedDurations(execution.workItems, execution.executionDurations);
+    TestCaseQueue queue =
+        new TestCaseQueue(sortByDuration(execution.workItems, expectedDurations), batchSize);
+    if (speculationFactor > 0) {
+      queue.setSpeculation(expectedDurations, speculationFactor);
+    }
+    return queue;
+  }
+
+  @CheckForNull
+  private Job findWorkerJob() {
     Job workerJob = null;
     Jenkins jenkinsInstance = Jenkins.getInstanceOrNull();
     if (jenkinsInstance == null) {
       logger.error("No jenkins instance found");
-      return false;
+      return null;
     }
     for (Job j : jenkinsInstance.getAllItems(Job.class)) {
       if (j.getName().equals(workerJobName)) {
@@ -266,42 +634,24 @@ class TptPluginDistributingJobExecutor {
     }
     if (workerJob == null) {
       logger.error("Worker job \"" + workerJobName + "\" not found");
-      return false;
-
     }
-    for (List<String> subTestSet : subTestSets) {
-      logger.info("Create job for \"" + subTestSet + "\"");
+    return workerJob;
+  }
 
-      // creates the workloads for the worker jobs, with the smaller chunks of testsets
-      WorkLoad workloadToAdd =
-          new WorkLoad(unresolvedConfig, subTestSet, workspace, build, testDataPath, reportPath);
-      // it adds the workloads to an static HashMap.
-      WorkLoad.putWorkLoad(workerJobName, workloadToAdd);
-      // Creates a retryable job , there are the builds scheduled. So the logic is : We put a
-      // workload in a static HashMap and then we trigger a build for a worker job. In that way we
-      // are distributing the builds on the worker jobs.
-      RetryableJob retryableJob = new RetryableJob(workerJobTries, logger, workerJob);
-      retryableJob.perform(build, listener);
-      retryableJobs.add(retryableJob);
-    }
-    logger.info("Waiting for completion of child jobs.");
-    for (RetryableJob retryableJob : retryableJobs) {
-      try {
-        retryableJob.join();
-        Result result = retryableJob.getResult();
-        if (result != null && result.isWorseThan(Result.UNSTABLE)) {
-          success = false;
-          logger.error("Child job failed.");
-        }
-      } catch (InterruptedException e) {
-        logger.info("Stopping worker jobs.");
-        logger.interrupt(e.getMessage());
-        for (RetryableJob retryableJobToCancle : retryableJobs) {
-          retryableJobToCancle.cancel();
-        }
-        throw e;
-      }
-    }
+  /**
+   * Builds the overview report of the configuration from the results of the worker jobs, publishes
+   * the JUnit results if configured and checks if all test results are present.
+   * 
+   * @return <code>true</code> if all test results are present
+   */
+  private boolean finishConfig(ConfigurationExecution execution, TptApiAccess tptApiAccess)
+      throws InterruptedException {
+    JenkinsConfiguration resolvedConfig = execution.resolvedConfig;
+    GetTestCasesCallableResult testCases = execution.testCases;
+    FilePath testDataPath = execution.testDataPath;
+    FilePath reportPath = execution.reportPath;
+    FilePath tptFilePath = execution.tptFilePath;
+    storeResults(execution);
     // Build Overview report:
     logger.info("Building overview report.");
     boolean buildingReportWorked = tptApiAccess.runOverviewReport(tptFilePath,
@@ -313,8 +663,10 @@ class TptPluginDistributingJobExecutor {
       int foundTestData = 0;
       if (enableJunit) {
         logger.info("*** Publishing as JUnit results now ***");
+        // the worker jobs already converted their batches into fragments
         foundTestData = Utils.publishAsJUnitResults(workspace, resolvedConfig, testDataPath,
-            jUnitXmlPath, jUnitLogLevel, logger);
+            jUnitXmlPath, jUnitLogLevel,
+            new FilePath(workspace, Utils.getJUnitFragmentDir(resolvedConfig)), logger);
         logger.info("*** Publishing finished ***");
       } else {
         foundTestData = Publish.getTestcases(testDataPath, logger).testCases.size();
@@ -354,7 +706,7 @@ class TptPluginDistributingJobExecutor {
       logger.error("Could not publish result: " + e.getMessage());
       return false;
     }
-    return Utils.checkIdAndAddInvisibleActionTPTExecution(resolvedConfig, build, logger) & success;
+    return Utils.checkIdAndAddInvisibleActionTPTExecution(resolvedConfig, build, logger);
   }
 
   private ArrayList<List<String>> getSubTestSets(Collection<String> testCases, int workerJobSize,
@@ -383,4 +735,231 @@ class TptPluginDistributingJobExecutor {
     return testSets;
   }
 
+  /**
+   * Distributes the test cases over the worker jobs so that all worker jobs need about the same
+   * time. The test cases are sorted by their execution duration of the previous run and then added
+   * longest first to the worker job with the smallest total duration so far.
+   * 
+   * @param testCases
+   *          the names of the test cases to distribute
+   * @param workerJobCount
+   *          the maximal number of worker jobs
+   * @param executionDurations
+   *          the execution durations in milliseconds of the previous run by test case name
+   * @param logger
+   *          to log the expected execution time of every worker job
+   * @return the sub test sets, one for each worker job. Empty sub test sets are omitted.
+   */
+  @Restricted(NoExternalUse.class)
+  static ArrayList<List<String>> getSubTestSetsByDuration(Collection<String> testCases,
+                                                          int workerJobCount,
+                                                          Map<String, Long> executionDurations,
+                                                          TptLogger logger) {
+    Map<String, Long> expectedDurations = getExpectedDurations(testCases, executionDurations);
+    List<String> sortedTestCases = sortByDuration(testCases, expectedDurations);
+    List<SubTestSet> subTestSets = new ArrayList<>();
+    PriorityQueue<SubTestSet> workerJobs = new PriorityQueue<>(new Comparator<SubTestSet>() {
+
+      @Override
+      public int compare(SubTestSet set1, SubTestSet set2) {
+        int result = Long.compare(set1.duration, set2.duration);
+        return result != 0 ? result : Integer.compare(set1.index, set2.index);
+      }
+    });
+    for (int i = 0; i < Math.min(workerJobCount, sortedTestCases.size()); i++) {
+      SubTestSet subTestSet = new SubTestSet(i);
+      subTestSets.add(subTestSet);
+      workerJobs.add(subTestSet);
+    }
+    for (String testCase : sortedTestCases) {
+      SubTestSet leastLoaded = workerJobs.poll();
+      leastLoaded.add(testCase, expectedDurations.get(testCase));
+      workerJobs.add(leastLoaded);
+    }
+    ArrayList<List<String>> testSets = new ArrayList<>();
+    for (SubTestSet subTestSet : subTestSets) {
+      logger.info("Expected execution time of worker job " + subTestSet.index + ": "
+          + subTestSet.duration / 1000 + "s for " + subTestSet.testCases.size() + " test cases");
+      testSets.add(subTestSet.testCases);
+    }
+    return testSets;
+  }
+
+  /**
+   * The execution duration of a test case covers all execution configuration items it has been
+   * executed on, so every work item of the test case is assumed to take an equal share of it.
+   * 
+   * @param testCasesByItem
+   *          the names of the test cases by index of the execution configuration item
+   * @param executionDurations
+   *          the execution durations in milliseconds of the previous run by test case name
+   * @return the expected durations in milliseconds by {@link PlatformWorkItem work item}
+   */
+  private static Map<String, Long> getWorkItemDurations(Map<Integer, Set<String>> testCasesByItem,
+                                                        Map<String, Long> executionDurations) {
+    Map<String, Integer> itemCounts = new HashMap<>();
+    for (Set<String> itemTestCases : testCasesByItem.values()) {
+      for (String testCase : itemTestCases) {
+        Integer count = itemCounts.get(testCase);
+        itemCounts.put(testCase, count == null ? 1 : count + 1);
+      }
+    }
+    Map<String, Long> workItemDurations = new HashMap<>();
+    for (Entry<Integer, Set<String>> entry : testCasesByItem.entrySet()) {
+      for (String testCase : entry.getValue()) {
+        Long duration = executionDurations.get(testCase);
+        if (duration != null) {
+          workItemDurations.put(PlatformWorkItem.toWorkItem(entry.getKey(), testCase),
+              duration / itemCounts.get(testCase));
+        }
+      }
+    }
+    return workItemDurations;
+  }
+
+  /**
+   * Test cases without a known execution duration are assumed to take the average duration of the
+   * known test cases.
+   * 
+   * @param testCases
+   *          the names of the test cases
+   * @param executionDurations
+   *          the execution durations in milliseconds of the previous run by test case name
+   * @return the expected execution duration in milliseconds for every given test case
+   */
+  private static Map<String, Long> getExpectedDurations(Collection<String> testCases,
+                                                        Map<String, Long> executionDurations) {
+    long knownDurationSum = 0;
+    int knownDurationCount = 0;
+    for (String testCase : testCases) {
+      Long duration = executionDurations.get(testCase);
+      if (duration != null) {
+        knownDurationSum += duration;
+        knownDurationCount++;
+      }
+    }
+    long defaultDuration =
+        knownDurationCount == 0 ? 1 : Math.max(1, knownDurationSum / knownDurationCount);
+    Map<String, Long> expectedDurations = new HashMap<>();
+    for (String testCase : testCases) {
+      Long duration = executionDurations.get(testCase);
+      expectedDurations.put(testCase, duration == null ? defaultDuration : duration);
+    }
+    return expectedDurations;
+  }
+
+  /**
+   * @param testCases
+   *          the names of the test cases
+   * @param expectedDurations
+   *          the expected execution duration for every test case
+   * @return the test cases ordered longest first. Test cases with equal duration are ordered by
+   *         name.
+   */
+  private static List<String> sortByDuration(Collection<String> testCases,
+                                             Map<String, Long> expectedDurations) {
+    List<String> sortedTestCases = new ArrayList<>(testCases);
+    // sort by name first to get a stable order for test cases with equal duration
+    Collections.sort(sortedTestCases);
+    Collections.sort(sortedTestCases, new Comparator<String>() {
+
+      @Override
+      public int compare(String tc1, String tc2) {
+        return Long.compare(expectedDurations.get(tc2), expectedDurations.get(tc1));
+      }
+    });
+    return sortedTestCases;
+  }
+
+  /**
+   * The state of one configuration while it is executed by the worker jobs.
+   */
+  private static class ConfigurationExecution {
+
+    private final JenkinsConfiguration unresolvedConfig;
+
+    private final JenkinsConfiguration resolvedConfig;
+
+    private final GetTestCasesCallableResult testCases;
+
+    // the test cases or platform work items to distribute
+    private final Collection<String> workItems;
+
+    // expected execution durations by work item
+    private final Map<String, Long> executionDurations;
+
+    private final FilePath testDataPath;
+
+    private final FilePath reportPath;
+
+    private final FilePath tptFilePath;
+
+    // number of result files a complete execution produces by test case name
+    private final Map<String, Integer> expectedResultCounts;
+
+    // only used if one queue is shared across all configurations
+    private TestCaseQueue testCaseQueue;
+
+    // the worker jobs are done with all batches of this configuration
+    private boolean workersDone = false;
+
+    private Future<Boolean> finished;
+
+    @CheckForNull
+    private ResultCache resultCache;
+
+    // test cases whose results have been restored from the result cache
+    private Set<String> cachedTestCases;
+
+    ConfigurationExecution(JenkinsConfiguration unresolvedConfig,
+                           JenkinsConfiguration resolvedConfig,
+                           GetTestCasesCallableResult testCases, Collection<String> workItems,
+                           Map<String, Long> executionDurations, FilePath testDataPath,
+                           FilePath reportPath, FilePath tptFilePath) {
+      this.unresolvedConfig = unresolvedConfig;
+      this.resolvedConfig = resolvedConfig;
+      this.testCases = testCases;
+      this.workItems = workItems;
+      this.executionDurations = executionDurations;
+      this.testDataPath = testDataPath;
+      this.reportPath = reportPath;
+      this.tptFilePath = tptFilePath;
+      this.expectedResultCounts = Publish.getExpectedResultCounts(testCases.testCasesByItem);
+    }
+
+    /**
+     * @return <code>true</code> if both configurations execute the same execution configuration of
+     *         the same TPT file
+     */
+    boolean usesSameTptConfig(ConfigurationExecution other) {
+      return Objects.equals(resolvedConfig.getTptFile(), other.resolvedConfig.getTptFile())
+          && Objects.equals(resolvedConfig.getConfiguration(),
+              other.resolvedConfig.getConfiguration());
+    }
+
+  }
+
+  /**
+   * A sub test set for one worker job and the sum of the expected execution durations of its test
+   * cases.
+   */
+  private static class SubTestSet {
+
+    private final int index;
+
+    private final List<String> testCases = new ArrayList<>();
+
+    private long duration = 0;
+
+    SubTestSet(int index) {
+      this.index = index;
+    }
+
+    void add(String testCase, long testCaseDuration) {
+      testCases.add(testCase);
+      duration += testCaseDuration;
+    }
+
+  }
+
 }
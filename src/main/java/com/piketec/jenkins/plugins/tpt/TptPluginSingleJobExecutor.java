@@ -152,6 +152,10 @@ class TptPluginSingleJobExecutor {
         if (!Utils.checkId(ec, build, logger)) {
           throw new AbortException("Invalid ID \"" + ec.getId() + "\"");
         }
+        if (!ec.getCores().isEmpty()) {
+          logger.warn("The number of cores can only be set in distributing mode."
+              + " Using the setting of the execution configuration.");
+        }
 
         try {
           testDataPath.mkdirs();
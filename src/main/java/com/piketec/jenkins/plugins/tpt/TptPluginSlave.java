@@ -21,7 +21,6 @@
 package com.piketec.jenkins.plugins.tpt;
 
 import java.io.IOException;
-import java.util.List;
 
 import javax.annotation.CheckForNull;
 
@@ -31,6 +30,7 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
+import com.piketec.jenkins.plugins.tpt.api.callables.RmiStatisticsCallable;
 
 import hudson.AbortException;
 import hudson.EnvVars;
@@ -62,6 +62,8 @@ public class TptPluginSlave extends Builder implements SimpleBuildStep {
 
   private String tptStartUpWaitTime;
 
+  private String transferCompressionLevel;
+
   // ----------- Data Binding --------------
 
   /**
@@ -151,6 +153,26 @@ public class TptPluginSlave extends Builder implements SimpleBuildStep {
             : tptStartUpWaitTime;
   }
 
+  /**
+   * @return The gzip compression level used to copy the results to the distributing job
+   */
+  public String getTransferCompressionLevel() {
+    return transferCompressionLevel == null ? DescriptorImpl.getDefaultTransferCompressionLevel()
+        : transferCompressionLevel;
+  }
+
+  /**
+   * @param transferCompressionLevel
+   *          The gzip compression level from 0 to 9 used to copy the results to the distributing
+   *          job
+   */
+  @DataBoundSetter
+  public void setTransferCompressionLevel(String transferCompressionLevel) {
+    this.transferCompressionLevel =
+        DescriptorImpl.getDefaultTransferCompressionLevel().equals(transferCompressionLevel) ? null
+            : transferCompressionLevel;
+  }
+
   // --------------------------------------------------------------
 
   /**
@@ -210,6 +232,20 @@ public class TptPluginSlave extends Builder implements SimpleBuildStep {
     } else {
       expandedTptStartupWaitTime = Utils.DEFAULT_STARTUP_WAIT_TIME * 1000;
     }
+    int expandedTransferCompressionLevel = Utils.DEFAULT_TRANSFER_COMPRESSION_LEVEL;
+    if (transferCompressionLevel != null && !transferCompressionLevel.isEmpty()) {
+      try {
+        expandedTransferCompressionLevel =
+            Integer.parseInt(expand(environment, transferCompressionLevel));
+      } catch (NumberFormatException e) {
+        expandedTransferCompressionLevel = -1;
+      }
+      if (expandedTransferCompressionLevel < 0 || expandedTransferCompressionLevel > 9) {
+        logger.error("The given compression level " + expand(environment, transferCompressionLevel)
+            + " is not an integer between 0 and 9. Using default value.");
+        expandedTransferCompressionLevel = Utils.DEFAULT_TRANSFER_COMPRESSION_LEVEL;
+      }
+    }
 
     String jobName = run.getParent().getName();
     WorkLoad workloadToDo = WorkLoad.pollWorkload(jobName);
@@ -218,39 +254,76 @@ public class TptPluginSlave extends Builder implements SimpleBuildStep {
       throw new AbortException();
     }
 
-    JenkinsConfiguration unresolvedConfig = workloadToDo.getJenkinsConfig();
-    List<String> testCasesFromWorkload = workloadToDo.getTestCases();
-    Run distributingJobRun = workloadToDo.getDistributingJobRun();
-    FilePath distributingJobWorkspace = workloadToDo.getDistributingJobWorkspace();
-    FilePath distributingJobDataDir = workloadToDo.getDistributingJobDataDir();
-    FilePath distributingJobReportDir = workloadToDo.getDistributingJobReportDir();
-
-    // Replace $-Vars:
-    JenkinsConfiguration resolvedConfig = unresolvedConfig.replaceAndNormalize(environment);
-
-    logger.info("File Name :               " + resolvedConfig.getTptFile());
-    logger.info("Execution Configuration : " + resolvedConfig.getConfiguration());
-    logger.info("Test Data directory :     " + resolvedConfig.getTestdataDir());
-    logger.info("Report directory :        " + resolvedConfig.getReportDir());
-    logger.info("Test Cases :              " + testCasesFromWorkload);
-    if (StringUtils.isNotEmpty(unresolvedConfig.getTestSet())) {
-      logger.info("Test Set :                " + resolvedConfig.getTestSet());
+    // use an own TPT instance if other worker builds use TPT on the same node
+    TptPortAllocator.Lease lease = TptPortAllocator.acquire(workspace,
+        workloadToDo.getDistributingJobRun(), expandedTptPort, expandedTptBindingName);
+    // a worker in the workspace of the distributing job adds to its statistics instead
+    boolean archiveRmiStatistics = workloadToDo.isRecordRmiStatistics()
+        && !workspace.equals(workloadToDo.getDistributingJobWorkspace());
+    if (archiveRmiStatistics) {
+      // statistics of an aborted build that could not be archived
+      new FilePath(workspace, RmiStatisticsCallable.FILE_NAME).delete();
     }
-    for (FilePath f : expandedExePaths) {
-      logger.info("Path to tpt.exe :         " + f.getRemote());
+    try {
+      // If the distributing job shares one queue across all configurations, the workload is
+      // followed by the workloads of the next configurations.
+      for (WorkLoad workload = workloadToDo; workload != null; workload = workload.getNext()) {
+        if (workload.getTestCases().isEmpty()) {
+          continue;
+        }
+        JenkinsConfiguration unresolvedConfig = workload.getJenkinsConfig();
+        TestCaseQueue testCasesFromWorkload = workload.getTestCases();
+
+        // Replace $-Vars:
+        JenkinsConfiguration resolvedConfig = unresolvedConfig.replaceAndNormalize(environment);
+
+        logger.info("File Name :               " + resolvedConfig.getTptFile());
+        logger.info("Execution Configuration : " + resolvedConfig.getConfiguration());
+        logger.info("Test Data directory :     " + resolvedConfig.getTestdataDir());
+        logger.info("Report directory :        " + resolvedConfig.getReportDir());
+        logger.info("Test Cases :              " + testCasesFromWorkload);
+        if (StringUtils.isNotEmpty(unresolvedConfig.getTestSet())) {
+          logger.info("Test Set :                " + resolvedConfig.getTestSet());
+        }
+        for (FilePath f : expandedExePaths) {
+          logger.info("Path to tpt.exe :         " + f.getRemote());
+        }
+        logger.info("TPT Port :                " + lease.getPort());
+        logger.info("TPT Binding Name :        " + lease.getBindingName());
+
+        TptApiAccess tptApiAccess = new TptApiAccess(launcher, logger, expandedExePaths,
+            Utils.parseCommandLine(expandedArguments), lease.getPort(), lease.getBindingName(),
+            expandedTptStartupWaitTime);
+        TptPluginWorkerJobExecutor executor = new TptPluginWorkerJobExecutor(launcher, workspace,
+            listener, tptApiAccess, resolvedConfig, workload);
+        executor.setTransferCompressionLevel(expandedTransferCompressionLevel);
+        executor.setMayCopyBatches(!hasWorkLeft(workload.getNext()));
+        if (!executor.execute()) {
+          // reenqueue for new try if job is configured to try multiple times. The failed batch has
+          // already been given back to the test case queue.
+          WorkLoad.putWorkLoad(jobName, workload);
+          throw new AbortException();
+        }
+      }
+    } finally {
+      TptPortAllocator.free(lease);
+      if (archiveRmiStatistics) {
+        Utils.archiveRmiStatistics(run, workspace, launcher, listener, logger);
+      }
     }
+  }
 
-    TptPluginWorkerJobExecutor executor = new TptPluginWorkerJobExecutor(launcher, workspace,
-        listener, expandedExePaths, expandedArguments, expandedTptPort, expandedTptBindingName,
-        resolvedConfig, testCasesFromWorkload, expandedTptStartupWaitTime, distributingJobRun,
-        distributingJobWorkspace, distributingJobDataDir, distributingJobReportDir);
-
-    boolean result = executor.execute();
-    if (!result) {
-      // reenqueue for new try if job is configured to try multiple times
-      WorkLoad.putWorkLoad(jobName, workloadToDo);
-      throw new AbortException();
+  /**
+   * @return <code>true</code> if the queue of the given workload or of one of its following
+   *         workloads is not empty
+   */
+  private static boolean hasWorkLeft(@CheckForNull WorkLoad workload) {
+    for (WorkLoad w = workload; w != null; w = w.getNext()) {
+      if (!w.getTestCases().isEmpty()) {
+        return true;
+      }
     }
+    return false;
   }
 
   @Override
@@ -316,6 +389,13 @@ public class TptPluginSlave extends Builder implements SimpleBuildStep {
       return String.valueOf(Utils.DEFAULT_STARTUP_WAIT_TIME);
     }
 
+    /**
+     * @return "1" (fastest compression)
+     */
+    public static String getDefaultTransferCompressionLevel() {
+      return String.valueOf(Utils.DEFAULT_TRANSFER_COMPRESSION_LEVEL);
+    }
+
   }
 
 }
@@ -21,10 +21,20 @@
 package com.piketec.jenkins.plugins.tpt;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
 import com.piketec.jenkins.plugins.tpt.api.callables.CleanUpCallable;
+import com.piketec.jenkins.plugins.tpt.api.callables.ExecutionProgressListener;
+import com.piketec.jenkins.plugins.tpt.api.callables.RmiStatisticsCallable;
 
 import hudson.FilePath;
 import hudson.Launcher;
@@ -32,7 +42,7 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 
 /**
- * Executes one test case via TPT API.
+ * Executes the test cases of a {@link TestCaseQueue} batch by batch via TPT API.
  * 
  * @author jkuhnert, Synopsys Inc.
  */
@@ -44,19 +54,13 @@ class TptPluginWorkerJobExecutor {
 
   private FilePath workspace;
 
-  private TaskListener listener;
-
-  private FilePath[] exePaths;
-
-  private String arguments;
-
-  private int tptPort;
+  private TptApiAccess tptApiAccess;
 
-  private String tptBindingName;
+  private TestCaseQueue testCases;
 
-  private List<String> testSetList;
+  private Map<String, String> testCaseUuids;
 
-  private long tptStartupWaitTime;
+  private Map<String, Integer> expectedResultCounts;
 
   private Run< ? , ? > distributingJobRun;
 
@@ -68,6 +72,20 @@ class TptPluginWorkerJobExecutor {
 
   private JenkinsConfiguration jenkinsConfig;
 
+  private boolean keepTptProjectOpen;
+
+  @CheckForNull
+  private ExecutionProgressListener progressListener;
+
+  private boolean recordRmiStatistics;
+
+  @CheckForNull
+  private LogLevel jUnitLogLevel;
+
+  private boolean mayCopyBatches = false;
+
+  private int transferCompressionLevel = Utils.DEFAULT_TRANSFER_COMPRESSION_LEVEL;
+
   /**
    * @param launcher
    *          passed for executing a process
@@ -75,68 +93,65 @@ class TptPluginWorkerJobExecutor {
    *          workspace this worker job is executed in
    * @param listener
    *          for the logs
-   * @param exePaths
-   *          the paths to the Tpt Executables
-   * @param arguments
-   *          startup arguments if a fresh TPT is started
-   * @param tptPort
-   *          the port for binding to the TptApi
-   * @param tptBindingName
-   *          the binding name used to connect to the TptApi (for the registry)
-   * @param tptFile
-   *          the tpt file that will be executed
-   * @param execCfg
-   *          the tpt execution configuration as String
-   * @param testDataDir
-   *          the path to the test data dir
-   * @param testSet
-   *          a chunk of test
-   * @param tptStartupWaitTime
-   *          the time it should wait before start tpt
-   * @param distributingJobRun
-   *          actual build, used for getting an unique id
-   * @param testSetName
-   *          the name of the test set if given
-   * @param distributingJobWorkspace
-   *          the workspace from the distributing job, to know where to copy the results
+   * @param tptApiAccess
+   *          the access to the TPT instance of this worker job
+   * @param jenkinsConfig
+   *          the configuration to execute with all $-variables resolved
+   * @param workload
+   *          the workload of the distributing job. Its queue holds the batches of test cases to
+   *          execute, the results are copied to its data and report directories.
    */
   TptPluginWorkerJobExecutor(Launcher launcher, FilePath workspace, TaskListener listener,
-                             FilePath[] exePaths, String arguments, int tptPort,
-                             String tptBindingName, JenkinsConfiguration jenkinsConfig,
-                             List<String> testSet, long tptStartupWaitTime,
-                             Run< ? , ? > distributingJobRun, FilePath distributingJobWorkspace,
-                             FilePath distributingJobDataPath, FilePath distributingJobReportPath) {
+                             TptApiAccess tptApiAccess, JenkinsConfiguration jenkinsConfig,
+                             WorkLoad workload) {
     this.logger = new TptLogger(listener.getLogger());
     this.launcher = launcher;
     this.workspace = workspace;
-    this.listener = listener;
-    this.exePaths = exePaths;
-    this.arguments = arguments;
-    this.tptPort = tptPort;
-    this.tptBindingName = tptBindingName;
+    this.tptApiAccess = tptApiAccess;
     this.jenkinsConfig = jenkinsConfig;
-    this.testSetList = testSet;
-    this.tptStartupWaitTime = tptStartupWaitTime;
-    this.distributingJobRun = distributingJobRun;
-    this.distributingJobWorkspace = distributingJobWorkspace;
-    this.distributingJobDataPath = distributingJobDataPath;
-    this.distributingJobReportPath = distributingJobReportPath;
+    this.testCases = workload.getTestCases();
+    this.testCaseUuids = workload.getTestCaseUuids();
+    this.expectedResultCounts = workload.getExpectedResultCounts();
+    this.distributingJobRun = workload.getDistributingJobRun();
+    this.distributingJobWorkspace = workload.getDistributingJobWorkspace();
+    this.distributingJobDataPath = workload.getDistributingJobDataDir();
+    this.distributingJobReportPath = workload.getDistributingJobReportDir();
+    this.keepTptProjectOpen = workload.isKeepTptProjectOpen();
+    this.recordRmiStatistics = workload.isRecordRmiStatistics();
+    this.jUnitLogLevel = workload.getJUnitLogLevel();
+  }
+
+  /**
+   * @param transferCompressionLevel
+   *          the gzip compression level used to copy the results to the distributing job
+   */
+  void setTransferCompressionLevel(int transferCompressionLevel) {
+    this.transferCompressionLevel = transferCompressionLevel;
+  }
+
+  /**
+   * @param mayCopyBatches
+   *          if the worker may execute copies of batches that run much longer than expected on
+   *          other workers when the queue is empty
+   */
+  void setMayCopyBatches(boolean mayCopyBatches) {
+    this.mayCopyBatches = mayCopyBatches;
   }
 
   /**
-   * Executes a small chunks of tests. It binds to the Tpt Api , check if the given Execution
-   * Configuration exists. Prepares the test- and data-directories. Creates a temporary testSet from
-   * the chunk of test (if no testSet is given). Then through the tpt api executes the testCases and
-   * then it copies the results to the distributing job's workspace.
+   * Executes small chunks of tests. It binds to the Tpt Api , check if the given Execution
+   * Configuration exists. Prepares the test- and data-directories. Then it takes one batch of test
+   * cases after the other from the queue, creates a temporary testSet from the batch (if no testSet
+   * is given) and executes the testCases through the tpt api on the same TPT instance until the
+   * queue is empty. The results of every batch are copied to the distributing job's workspace. If
+   * a batch could not be executed completely, only its test cases without complete results are
+   * given back to the queue.
    * 
    * @return true if the tpt execution has been successfully.
    * @throws InterruptedException
    *           If thread was interrupted
    */
   public boolean execute() throws InterruptedException {
-    TptApiAccess tptApiAccess = new TptApiAccess(launcher, logger, exePaths,
-        Utils.parseCommandLine(arguments), tptPort, tptBindingName, tptStartupWaitTime);
-
     if (workspace == null) {
       logger.error("No workspace available");
       return false;
@@ -144,12 +159,121 @@ class TptPluginWorkerJobExecutor {
     FilePath workerReportPath = new FilePath(workspace, Utils.getGeneratedReportDir(jenkinsConfig));
     FilePath workerDataPath = new FilePath(workspace, Utils.getGeneratedTestDataDir(jenkinsConfig));
     FilePath tptFilePath = new FilePath(workspace, jenkinsConfig.getTptFile());
+    if (recordRmiStatistics) {
+      tptApiAccess.setRmiStatisticsFile(new FilePath(workspace, RmiStatisticsCallable.FILE_NAME));
+    }
 
     // Register cleanup task that is called in the end to close remote TPT Project
-    CleanUpCallable cleanUpCallable = new CleanUpCallable(listener, "localhost", tptPort,
-        tptBindingName, exePaths, tptStartupWaitTime, tptFilePath);
-    new CleanUpTask(distributingJobRun, cleanUpCallable, launcher);
+    if (!keepTptProjectOpen) {
+      CleanUpCallable cleanUpCallable = tptApiAccess.createCleanUpCallable(tptFilePath);
+      new CleanUpTask(distributingJobRun, cleanUpCallable, launcher);
+    }
+
+    // one listener for all batches, so it is exported to the agent only once
+    progressListener = getProgressListener();
+
+    // Execute the batches on worker until there is nothing left to do. Copies of batches that run
+    // much longer than expected are only executed if the worker has its own result directories.
+    boolean speculate = mayCopyBatches && !distributingJobWorkspace.equals(workspace);
+    TestCaseQueue.Attempt attempt;
+    while ((attempt = speculate ? testCases.nextBatchOrCopy() : testCases.nextBatch()) != null) {
+      boolean handedBack = false;
+      try {
+        if (!executeBatch(tptApiAccess, tptFilePath, workerReportPath, workerDataPath, attempt)) {
+          // give the unfinished test cases back so they can be executed by another try or another
+          // worker job. The results of the finished ones have already been copied.
+          testCases.giveBack(attempt,
+              getUnfinishedTestCases(attempt.getTestCases(), workerDataPath));
+          handedBack = true;
+          return false;
+        }
+        testCases.batchDone(attempt);
+        handedBack = true;
+      } finally {
+        if (!handedBack) {
+          // interrupted or unexpected exception: the other workers must not wait for this batch
+          testCases.giveBack(attempt, attempt.getTestCases());
+        }
+      }
+    }
+    return true;
+  }
 
+  /**
+   * @return the test cases of the batch without complete results in the test data directory
+   */
+  private List<String> getUnfinishedTestCases(List<String> batch, FilePath workerDataPath)
+      throws InterruptedException {
+    if (jenkinsConfig.isDistributePlatforms()) {
+      // result files are named after the platform, not after the execution configuration item of
+      // the work item, so the whole batch has to be executed again
+      return batch;
+    }
+    Map<String, Integer> batchResultCounts = new HashMap<>();
+    for (String testCase : batch) {
+      Integer expected = expectedResultCounts.get(testCase);
+      // without the execution configuration the test case cannot be checked
+      if (expected != null) {
+        batchResultCounts.put(testCase, expected);
+      }
+    }
+    Set<String> finished;
+    try {
+      finished = Publish.getFinishedTestCases(workerDataPath, batchResultCounts, false);
+    } catch (IOException e) {
+      logger.error("Could not check for finished test cases: " + e.getMessage());
+      return batch;
+    }
+    List<String> unfinished = new ArrayList<>();
+    for (String testCase : batch) {
+      if (!finished.contains(testCase)) {
+        unfinished.add(testCase);
+      }
+    }
+    if (!finished.isEmpty()) {
+      logger.info("Keeping the results of " + (batch.size() - unfinished.size())
+          + " finished test cases. Test cases to retry: " + unfinished);
+    }
+    return unfinished;
+  }
+
+  /**
+   * @return the UUIDs of the test cases of the batch by name
+   */
+  private Map<String, String> getTestCaseUuids(List<String> batch) {
+    Map<String, String> uuids = new HashMap<>();
+    for (String workItem : batch) {
+      String testCase = jenkinsConfig.isDistributePlatforms()
+          ? PlatformWorkItem.getTestCase(workItem) : workItem;
+      String uuid = testCaseUuids.get(testCase);
+      if (uuid != null) {
+        uuids.put(testCase, uuid);
+      }
+    }
+    return uuids;
+  }
+
+  /**
+   * @return the listener the finished test cases are reported to or <code>null</code> if the
+   *         distributing job does not aggregate the progress
+   */
+  @CheckForNull
+  private ExecutionProgressListener getProgressListener() {
+    ExecutionProgress progress = ExecutionProgress.get(distributingJobRun);
+    return progress == null ? null : progress.getListener(workspace);
+  }
+
+  /**
+   * Executes one batch of test cases and copies the results to the distributing job's workspace.
+   * The results are discarded if another worker job executed the same batch first.
+   * 
+   * @return true if the tpt execution has been successfully or the results have been discarded.
+   */
+  private boolean executeBatch(TptApiAccess tptApiAccess, FilePath tptFilePath,
+                               FilePath workerReportPath, FilePath workerDataPath,
+                               TestCaseQueue.Attempt attempt)
+      throws InterruptedException {
+    List<String> batch = attempt.getTestCases();
     // Clean and setup the report and testdata directoires
     try {
       if (!distributingJobWorkspace.equals(workspace)) {
@@ -172,19 +296,63 @@ class TptPluginWorkerJobExecutor {
     }
 
     // Execute Tests on worker:
+    if (attempt.isSpeculative()) {
+      logger.info("Executing a copy of the test cases " + batch
+          + " because they run much longer than expected on another worker job");
+    } else {
+      logger.info("Executing test cases " + batch);
+    }
     boolean executionResult =
-        tptApiAccess.executeTestsOnWorker(tptFilePath, jenkinsConfig.getConfiguration(),
-            jenkinsConfig.getTestSet(), workerReportPath, workerDataPath, testSetList);
+        tptApiAccess.executeTestsOnWorker(tptFilePath, jenkinsConfig, workerReportPath,
+            workerDataPath, getTestCaseUuids(batch), attempt, progressListener);
+    if (!testCases.claim(attempt, executionResult)) {
+      logger.info("The test cases " + batch
+          + " are executed by another worker job. Discarding the results.");
+      return true;
+    }
 
-    // Copy tpt-testresults back to distributing job, so the distributing job can build the report
+    // Copy tpt-testresults back to distributing job, so the distributing job can build the report.
+    // Each directory is transferred as one compressed tar stream.
     try {
-      Utils.copyRecursive(workerDataPath, distributingJobDataPath, logger);
-      Utils.copyRecursive(workerReportPath, distributingJobReportPath, logger);
+      TarTransfer.copy(workerDataPath, distributingJobDataPath, transferCompressionLevel, logger);
+      TarTransfer.copy(workerReportPath, distributingJobReportPath, transferCompressionLevel,
+          logger);
       logger.info("Copied all data to distributing job from file " + tptFilePath.getName() + " to "
           + distributingJobWorkspace.getRemote());
     } catch (IOException e) {
       logger.error("could not copy results to distributing job: " + e.getMessage());
+      return executionResult;
+    }
+    // The test data directory only holds the results of this batch if it is not shared with the
+    // distributing job. Otherwise the distributing job converts all results in the end.
+    if (jUnitLogLevel != null && !distributingJobWorkspace.equals(workspace)) {
+      publishJUnitFragment(workerDataPath);
     }
     return executionResult;
   }
+
+  /**
+   * Converts the results of the batch into a JUnit XML fragment in the workspace of the
+   * distributing job, so the distributing job only has to merge the fragments in the end.
+   */
+  private void publishJUnitFragment(FilePath workerDataPath) throws InterruptedException {
+    FilePath fragmentDir =
+        new FilePath(distributingJobWorkspace, Utils.getJUnitFragmentDir(jenkinsConfig));
+    FilePath fragmentFile = new FilePath(fragmentDir, UUID.randomUUID() + ".xml");
+    try {
+      fragmentDir.mkdirs();
+      int testCaseCount = Publish.publishJUnitFragment(jenkinsConfig, workerDataPath,
+          fragmentFile, logger, jUnitLogLevel);
+      logger.info("Wrote " + testCaseCount + " test results to JUnit fragment "
+          + fragmentFile.getName());
+    } catch (IOException e) {
+      // the distributing job converts all results if a fragment is missing
+      logger.warn("Could not write JUnit fragment: " + e.getMessage());
+      try {
+        fragmentFile.delete();
+      } catch (IOException e2) {
+        logger.warn("Could not delete incomplete JUnit fragment: " + e2.getMessage());
+      }
+    }
+  }
 }
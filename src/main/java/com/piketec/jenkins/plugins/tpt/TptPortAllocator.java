@@ -0,0 +1,210 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Run;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Hands out RMI ports and binding names for TPT instances, so several builds can use their own TPT
+ * instance on the same node at the same time. The first build on a node gets the configured port
+ * and binding name, every further concurrent build gets the next higher port and a numbered binding
+ * name. Further ports are only handed out if no other process listens on them on the node.
+ * <p>
+ * A lease belongs to the build of a distributing job. It stays reserved until
+ * {@link CleanUpTask#cleanUp(Run, TptLogger)} closed the TPT projects of that build, because the
+ * clean up needs the same TPT instance. Worker job builds of the same distributing job build reuse
+ * an idle lease on their node, so retries and consecutive worker job builds use the same TPT
+ * instance. The lease of the distributing job build itself is never idle, so no worker job build
+ * opens its project in the TPT instance of the distributing job build.
+ * </p>
+ */
+public class TptPortAllocator {
+
+  private static List<Lease> leases = new ArrayList<>();
+
+  private TptPortAllocator() {
+  }
+
+  /**
+   * Reserves a TPT instance on the node of the given workspace.
+   * 
+   * @param workspace
+   *          the workspace, used to determine the node
+   * @param distributingJobRun
+   *          the build of the distributing job the lease belongs to
+   * @param basePort
+   *          the configured port of the RMI registry
+   * @param baseBindingName
+   *          the configured RMI binding name for TPT
+   * @return the lease with the port and binding name to use
+   * @throws InterruptedException
+   *           If thread was interrupted while checking the ports on the node
+   */
+  public static synchronized Lease acquire(FilePath workspace, Run< ? , ? > distributingJobRun,
+                                           int basePort, String baseBindingName)
+      throws InterruptedException {
+    Computer computer = workspace.toComputer();
+    String nodeName = computer == null ? workspace.getRemote() : computer.getName();
+    for (Lease lease : leases) {
+      if (!lease.busy && lease.nodeName.equals(nodeName)
+          && lease.distributingJobRun == distributingJobRun && lease.basePort == basePort
+          && lease.baseBindingName.equals(baseBindingName)) {
+        lease.busy = true;
+        return lease;
+      }
+    }
+    int offset = 0;
+    // the configured port is used as is, a TPT instance already listening there is reused
+    while (isTaken(nodeName, basePort + offset)
+        || (offset > 0 && !isFreeOnNode(workspace, basePort + offset))) {
+      offset++;
+    }
+    Lease lease = new Lease(nodeName, distributingJobRun, basePort, baseBindingName, offset);
+    leases.add(lease);
+    return lease;
+  }
+
+  private static boolean isTaken(String nodeName, int port) {
+    for (Lease lease : leases) {
+      if (lease.nodeName.equals(nodeName) && lease.port == port) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isFreeOnNode(FilePath workspace, int port) throws InterruptedException {
+    try {
+      return workspace.act(new PortProbe(port));
+    } catch (IOException e) {
+      // the node cannot be reached, starting TPT will fail anyway
+      return true;
+    }
+  }
+
+  /**
+   * Marks the lease as idle. It can be reused by another worker job build of the same distributing
+   * job build afterwards.
+   * 
+   * @param lease
+   *          the lease acquired via {@link #acquire(FilePath, Run, int, String)}
+   */
+  public static synchronized void free(Lease lease) {
+    lease.busy = false;
+  }
+
+  /**
+   * Releases all leases of the given distributing job build.
+   * 
+   * @param distributingJobRun
+   *          the build of the distributing job
+   */
+  public static synchronized void release(Run< ? , ? > distributingJobRun) {
+    Iterator<Lease> iterator = leases.iterator();
+    while (iterator.hasNext()) {
+      if (Objects.equals(iterator.next().distributingJobRun, distributingJobRun)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * A reserved TPT instance on a node.
+   */
+  public static final class Lease {
+
+    private final String nodeName;
+
+    private final Run< ? , ? > distributingJobRun;
+
+    private final int basePort;
+
+    private final String baseBindingName;
+
+    private final int port;
+
+    private final String bindingName;
+
+    private boolean busy = true;
+
+    private Lease(String nodeName, Run< ? , ? > distributingJobRun, int basePort,
+                  String baseBindingName, int offset) {
+      this.nodeName = nodeName;
+      this.distributingJobRun = distributingJobRun;
+      this.basePort = basePort;
+      this.baseBindingName = baseBindingName;
+      this.port = basePort + offset;
+      this.bindingName = offset == 0 ? baseBindingName : baseBindingName + offset;
+    }
+
+    /**
+     * @return the port of the RMI registry to use
+     */
+    public int getPort() {
+      return port;
+    }
+
+    /**
+     * @return the RMI binding name for TPT to use
+     */
+    public String getBindingName() {
+      return bindingName;
+    }
+
+  }
+
+  /**
+   * Checks on the node if a port can be bound, i.e. no other process listens on it.
+   */
+  private static final class PortProbe extends MasterToSlaveCallable<Boolean, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int port;
+
+    PortProbe(int port) {
+      this.port = port;
+    }
+
+    @Override
+    public Boolean call() {
+      try (ServerSocket socket = new ServerSocket()) {
+        socket.bind(new InetSocketAddress(port));
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+  }
+
+}
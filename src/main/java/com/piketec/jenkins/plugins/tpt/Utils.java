@@ -26,23 +26,29 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.tools.ant.types.Commandline;
 
 import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
+import com.piketec.jenkins.plugins.tpt.api.callables.RmiStatisticsCallable;
 
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.Run;
+import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
+import jenkins.util.BuildListenerAdapter;
 
 /**
  * Collection of some utility methods and constants
@@ -73,6 +79,8 @@ public class Utils {
 
   static final int DEFAULT_STARTUP_WAIT_TIME = 60;
 
+  static final int DEFAULT_TRANSFER_COMPRESSION_LEVEL = 1;
+
   private static final SimpleDateFormat DDMMYYHHMMSS = new SimpleDateFormat("dd.MM.yy HH:mm:ss");
 
   private static final Pattern illegalWindowsFileNameCharacters =
@@ -135,6 +143,19 @@ public class Utils {
     }
   }
 
+  /**
+   * Creates a String with a path for the JUnit XML fragments the worker jobs write for the
+   * distributing job. This will be relative to the build workspace of the distributing job.
+   * 
+   * @param ec
+   *          through the jenkins configuration we get the id of the configuration, which is used to
+   *          create a unique path.
+   * @return a String with the folders for the JUnit fragments.
+   */
+  public static String getJUnitFragmentDir(JenkinsConfiguration ec) {
+    return "Piketec" + File.separator + ec.getId() + File.separator + "junit-fragments";
+  }
+
   /**
    * @return the rootdir from the "piketec-tpt" plugin, used for knowing where to get html files,
    *         json or some data stored there.
@@ -178,6 +199,41 @@ public class Utils {
                                    FilePath testDataDir, String jUnitXml, LogLevel jUnitLogLevel,
                                    TptLogger logger)
       throws IOException, InterruptedException {
+    return publishAsJUnitResults(workspace, jenkinsConfiguration, testDataDir, jUnitXml,
+        jUnitLogLevel, null, logger);
+  }
+
+  /**
+   * Like {@link #publishAsJUnitResults(FilePath, JenkinsConfiguration, FilePath, String, LogLevel,
+   * TptLogger)}, but merges the JUnit XML fragments written by the worker jobs if they cover all
+   * test results. The test data is only parsed again if they do not. The fragments are deleted
+   * afterwards.
+   * 
+   * @param workspace
+   *          The Jenkins workspace
+   * @param jenkinsConfiguration
+   *          The configuration to which the TPT test resuklt should be tranformed to JUnit
+   * @param testDataDir
+   *          The directory where TPT test data should be searched
+   * @param jUnitXml
+   *          The directory where the transformed results should be written to.
+   * @param jUnitLogLevel
+   *          the threshold for the severity of the log messages
+   * @param fragmentDir
+   *          the directory with the JUnit XML fragments of the worker jobs or <code>null</code>
+   * @param logger
+   *          To display messages
+   * @return the number of test cases in the Junit XML
+   * @throws IOException
+   *           If an IO exception occured while parsing the TPT test results or while writing the
+   *           JUnit xml files
+   * @throws InterruptedException
+   *           If the job is cancelled
+   */
+  static int publishAsJUnitResults(FilePath workspace, JenkinsConfiguration jenkinsConfiguration,
+                                   FilePath testDataDir, String jUnitXml, LogLevel jUnitLogLevel,
+                                   @CheckForNull FilePath fragmentDir, TptLogger logger)
+      throws IOException, InterruptedException {
     FilePath reportPath = ((jUnitXml == null) || jUnitXml.trim().isEmpty()) ? workspace
         : new FilePath(workspace, jUnitXml);
     if (!reportPath.isDirectory()) {
@@ -186,6 +242,18 @@ public class Utils {
         throw new IOException("Could not create report directory \"" + reportPath + "\"");
       }
     }
+    if (fragmentDir != null) {
+      try {
+        int testCaseCount = Publish.mergeJUnitFragments(jenkinsConfiguration, testDataDir,
+            fragmentDir, reportPath, logger);
+        if (testCaseCount >= 0) {
+          return testCaseCount;
+        }
+        logger.info("The JUnit fragments of the worker jobs do not cover all test results.");
+      } finally {
+        fragmentDir.deleteRecursive();
+      }
+    }
     return Publish.publishJUnitResults(jenkinsConfiguration, testDataDir, reportPath, logger,
         jUnitLogLevel);
   }
@@ -244,6 +312,42 @@ public class Utils {
     return sb.toString();
   }
 
+  /**
+   * Archives the TPT API call statistics recorded in the workspace as an artifact of the build.
+   * The file is deleted afterwards, so the statistics of the next build do not contain the calls
+   * of this one.
+   * 
+   * @param build
+   *          the build to archive the statistics for
+   * @param workspace
+   *          the workspace the statistics have been recorded in
+   * @param launcher
+   *          the launcher of the build
+   * @param listener
+   *          the listener of the build
+   * @param logger
+   *          for dumping messages
+   * @throws InterruptedException
+   *           If thread was interrupted
+   */
+  public static void archiveRmiStatistics(Run< ? , ? > build, FilePath workspace,
+                                          Launcher launcher, TaskListener listener,
+                                          TptLogger logger)
+      throws InterruptedException {
+    FilePath statisticsFile = new FilePath(workspace, RmiStatisticsCallable.FILE_NAME);
+    try {
+      if (!statisticsFile.exists()) {
+        return;
+      }
+      build.pickArtifactManager().archive(workspace, launcher, BuildListenerAdapter.wrap(listener),
+          Collections.singletonMap(RmiStatisticsCallable.FILE_NAME,
+              RmiStatisticsCallable.FILE_NAME));
+      statisticsFile.delete();
+    } catch (IOException e) {
+      logger.error("Could not archive TPT API call statistics: " + e.getMessage());
+    }
+  }
+
   /**
    * TPT changes its workind directory during execution, fails to set it back correctly after
    * multicore execution and prevents the deletion of test data directory. This method only deletes
@@ -317,6 +421,9 @@ public class Utils {
    * FilePath.copyRecursiveTo is not able to do that. See
    * https://issues.jenkins-ci.org/browse/JENKINS-2126
    * 
+   * The source directory is listed with a single call via {@link FileManifest}, only the file
+   * contents are transferred one by one.
+   * 
    * @param from
    *          Target path
    * @param to
@@ -342,13 +449,8 @@ public class Utils {
       logger.error(from.getRemote() + " is not a directory!");
       return;
     }
-    for (FilePath f : from.list()) {
-      if (f.isDirectory()) {
-        copyRecursive(f, new FilePath(to, f.getName()), logger);
-      } else {
-        FilePath toFile = new FilePath(to, f.getName());
-        f.copyTo(toFile);
-      }
+    for (FileManifest.Entry entry : FileManifest.of(from).getEntries()) {
+      from.child(entry.getPath()).copyTo(to.child(entry.getPath()));
     }
   }
 
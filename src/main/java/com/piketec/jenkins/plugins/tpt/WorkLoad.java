@@ -20,13 +20,17 @@
  */
 package com.piketec.jenkins.plugins.tpt;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.TptLog.LogLevel;
 import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
 
 import hudson.FilePath;
@@ -35,6 +39,15 @@ import hudson.model.Run;
 /**
  * Through this class is how the data from a distributing job to a worker job is passed. A way to
  * tell the worker job what testcases should be executed.
+ * <p>
+ * If several distributing job builds share the same worker job, their workloads are handed out by
+ * weighted fair queuing instead of first come, first served. Every workload gets a virtual finish
+ * time when it is enqueued, which grows by the reciprocal of its priority for every workload of the
+ * same distributing job build already waiting. The workload with the smallest virtual finish time
+ * is handed out next. So the workloads of concurrent builds interleave, a build with twice the
+ * priority gets twice as many worker job builds, and a short build started after a long one does
+ * not wait until all workloads of the long build are done.
+ * </p>
  * 
  * @author FInfantino, Synopsys Inc.
  */
@@ -42,7 +55,14 @@ public class WorkLoad {
 
   private static HashMap<String, LinkedList<WorkLoad>> workloads = new HashMap<>();
 
-  private List<String> testCases;
+  // worker job name -> virtual finish time of the workload handed out last
+  private static HashMap<String, Double> virtualTimes = new HashMap<>();
+
+  private TestCaseQueue testCases;
+
+  private Map<String, String> testCaseUuids = Collections.emptyMap();
+
+  private Map<String, Integer> expectedResultCounts = Collections.emptyMap();
 
   private Run< ? , ? > distributingJobRun;
 
@@ -54,11 +74,19 @@ public class WorkLoad {
 
   private JenkinsConfiguration jenkinsConfig;
 
+  private DistributingSettings settings = new DistributingSettings();
+
+  @CheckForNull
+  private WorkLoad next = null;
+
+  private double virtualFinishTime = 0;
+
   /**
    * @param unresolvedConfig
    *          JenkinsConfiguration that contains paths and tpt file names with unresolved $-vars
-   * @param subTestSet
-   *          the test cases that should be executed by the worker
+   * @param testCases
+   *          the queue the worker takes the test cases to execute from. It may be shared with other
+   *          workloads of the same distributing job run.
    * @param distributingJobWorkspace
    *          the workspace from the distributing job, used for knowing where to copy the results
    * @param distributingJobRun
@@ -68,17 +96,52 @@ public class WorkLoad {
    * @param distributingJobReportDir
    *          The report directory the distributing job
    */
-  public WorkLoad(JenkinsConfiguration unresolvedConfig, List<String> subTestSet,
+  public WorkLoad(JenkinsConfiguration unresolvedConfig, TestCaseQueue testCases,
                   FilePath distributingJobWorkspace, Run< ? , ? > distributingJobRun,
                   FilePath distributingJobDataDir, FilePath distributingJobReportDir) {
     this.jenkinsConfig = unresolvedConfig;
-    this.testCases = subTestSet;
+    this.testCases = testCases;
     this.distributingJobRun = distributingJobRun;
     this.distributingJobWorkspace = distributingJobWorkspace;
     this.distributingJobDataDir = distributingJobDataDir;
     this.distributingJobReportDir = distributingJobReportDir;
   }
 
+  /**
+   * @param testCaseUuids
+   *          the UUIDs of the test cases by name, so the worker can look up the test cases without
+   *          searching the scenario tree
+   */
+  public void setTestCaseUuids(Map<String, String> testCaseUuids) {
+    this.testCaseUuids = testCaseUuids;
+  }
+
+  /**
+   * @param expectedResultCounts
+   *          the number of result files a complete execution produces by test case name, see
+   *          {@link Publish#getExpectedResultCounts(Map)}
+   */
+  public void setExpectedResultCounts(Map<String, Integer> expectedResultCounts) {
+    this.expectedResultCounts = expectedResultCounts;
+  }
+
+  /**
+   * @param settings
+   *          the options of the distributing job build the worker has to follow
+   */
+  public void setSettings(DistributingSettings settings) {
+    this.settings = settings;
+  }
+
+  /**
+   * @param next
+   *          the workload of the next configuration the worker should continue with when the queue
+   *          of this workload is empty, <code>null</code> if there is none
+   */
+  public void setNext(@CheckForNull WorkLoad next) {
+    this.next = next;
+  }
+
   /**
    * @return the jenkins configuration that contains paths and tpt file names with unresolved $-vars
    */
@@ -87,12 +150,26 @@ public class WorkLoad {
   }
 
   /**
-   * @return the test cases that should be executed
+   * @return the queue of test cases that should be executed
    */
-  public List<String> getTestCases() {
+  public TestCaseQueue getTestCases() {
     return testCases;
   }
 
+  /**
+   * @return the UUIDs of the test cases by name. May be incomplete.
+   */
+  public Map<String, String> getTestCaseUuids() {
+    return testCaseUuids;
+  }
+
+  /**
+   * @return the number of result files a complete execution produces by test case name
+   */
+  public Map<String, Integer> getExpectedResultCounts() {
+    return expectedResultCounts;
+  }
+
   /**
    * @return the workspace from the distributing job
    */
@@ -121,6 +198,46 @@ public class WorkLoad {
     return this.distributingJobReportDir;
   }
 
+  /**
+   * @return if the worker should leave the TPT project open for the next build
+   */
+  public boolean isKeepTptProjectOpen() {
+    return settings.isKeepTptProjectOpen();
+  }
+
+  /**
+   * @return if the worker should record the number and the latency of its TPT API calls
+   */
+  public boolean isRecordRmiStatistics() {
+    return settings.isRecordRmiStatistics();
+  }
+
+  /**
+   * @return the threshold for the severity of the log messages in the JUnit XML fragments the
+   *         worker writes for every batch, <code>null</code> if the worker should not write them
+   */
+  @CheckForNull
+  public LogLevel getJUnitLogLevel() {
+    return settings.getJUnitFragmentLogLevel();
+  }
+
+  /**
+   * @return the weight of the distributing job build when worker job builds are shared with other
+   *         distributing job builds
+   */
+  public int getPriority() {
+    return settings.getWorkerJobPriority();
+  }
+
+  /**
+   * @return the workload of the next configuration the worker should continue with when the queue
+   *         of this workload is empty, <code>null</code> if there is none
+   */
+  @CheckForNull
+  public WorkLoad getNext() {
+    return this.next;
+  }
+
   /**
    * Adds a workload to the static HashMap. This method is used when the distributing job put the
    * workload here and then triggers the worker job.
@@ -137,13 +254,24 @@ public class WorkLoad {
       workloads.put(jobName, queue);
     }
     if (!queue.contains(workloadToAdd)) {
+      // continue after the last waiting workload of the same build, but do not give credit for the
+      // time the build had nothing enqueued
+      Double virtualTime = virtualTimes.get(jobName);
+      double start = virtualTime == null ? 0 : virtualTime;
+      for (WorkLoad w : queue) {
+        if (Objects.equals(w.distributingJobRun, workloadToAdd.distributingJobRun)) {
+          start = Math.max(start, w.virtualFinishTime);
+        }
+      }
+      workloadToAdd.virtualFinishTime = start + 1.0 / workloadToAdd.getPriority();
       queue.offer(workloadToAdd);
     }
   }
 
   /**
-   * Pops the workload from the static HashMap. This method is used from the worker when a build has
-   * been triggered and it needs to do some workload.
+   * Pops the workload with the smallest virtual finish time from the static HashMap. Workloads with
+   * the same virtual finish time are handed out in the order they have been added. This method is
+   * used from the worker when a build has been triggered and it needs to do some workload.
    * 
    * @param jobName
    *          The name of the jenkins job serving as a worker job.
@@ -154,7 +282,15 @@ public class WorkLoad {
     if (queue == null || queue.isEmpty()) {
       return null;
     }
-    return queue.poll();
+    WorkLoad first = null;
+    for (WorkLoad w : queue) {
+      if (first == null || w.virtualFinishTime < first.virtualFinishTime) {
+        first = w;
+      }
+    }
+    queue.remove(first);
+    virtualTimes.put(jobName, first.virtualFinishTime);
+    return first;
   }
 
   /**
@@ -180,6 +316,7 @@ public class WorkLoad {
     }
     if (queue.isEmpty()) {
       workloads.remove(jobName);
+      virtualTimes.remove(jobName);
     }
   }
 
@@ -0,0 +1,226 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.annotation.CheckForNull;
+
+import hudson.Extension;
+import hudson.model.InvisibleAction;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+
+/**
+ * Waits for the worker job builds of a distributing job build. Jenkins reports completed and
+ * canceled worker builds via {@link RunListener} and {@link QueueListener}, so no thread has to
+ * block for every single worker build. The thread of the distributing job build handles the
+ * reported builds one after the other, schedules retries of failed builds and logs the progress.
+ */
+public class WorkerBuildCoordinator {
+
+  // scheduling id of a worker build -> coordinator waiting for that build
+  private static final Map<String, WorkerBuildCoordinator> coordinators =
+      new ConcurrentHashMap<>();
+
+  private final Run< ? , ? > build;
+
+  private final TptLogger logger;
+
+  private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+
+  private final List<RetryableJob> jobs = new ArrayList<>();
+
+  // scheduling id -> job of the scheduled build. Only accessed by the distributing job build.
+  private final Map<String, RetryableJob> pending = new HashMap<>();
+
+  /**
+   * @param build
+   *          the distributing job build
+   * @param logger
+   *          for printing the progress
+   */
+  WorkerBuildCoordinator(Run< ? , ? > build, TptLogger logger) {
+    this.build = build;
+    this.logger = logger;
+  }
+
+  /**
+   * Schedules the first build of the given job.
+   * 
+   * @param job
+   *          the job to schedule
+   */
+  void start(RetryableJob job) {
+    jobs.add(job);
+    scheduleNextTry(job);
+  }
+
+  private void scheduleNextTry(RetryableJob job) {
+    while (job.hasTriesLeft()) {
+      String schedulingId = UUID.randomUUID().toString();
+      // register first, the build might be done before schedule() returns
+      coordinators.put(schedulingId, this);
+      if (job.schedule(build, schedulingId)) {
+        pending.put(schedulingId, job);
+        return;
+      }
+      coordinators.remove(schedulingId);
+      logger.error("Could not schedule worker job build.");
+    }
+  }
+
+  /**
+   * Waits until all started jobs are done, including their retries. If the thread is interrupted,
+   * all scheduled builds are canceled.
+   * 
+   * @return <code>true</code> if no job finished with a result worse than unstable
+   * @throws InterruptedException
+   *           If the thread was interrupted
+   */
+  boolean awaitCompletion() throws InterruptedException {
+    try {
+      while (!pending.isEmpty()) {
+        Completion completion = completions.take();
+        RetryableJob job = pending.remove(completion.schedulingId);
+        coordinators.remove(completion.schedulingId);
+        if (job == null) {
+          continue;
+        }
+        if (job.onCompleted(completion.run)) {
+          int done = jobs.size() - pending.size();
+          logger.info("Worker build " + (completion.run == null ? "canceled"
+              : completion.run.getFullDisplayName() + " finished with " + job.getResult())
+              + ". " + done + " of " + jobs.size() + " worker jobs done.");
+        } else {
+          scheduleNextTry(job);
+        }
+      }
+    } catch (InterruptedException e) {
+      for (RetryableJob job : pending.values()) {
+        job.cancel();
+      }
+      throw e;
+    } finally {
+      for (String schedulingId : pending.keySet()) {
+        coordinators.remove(schedulingId);
+      }
+    }
+    boolean success = true;
+    for (RetryableJob job : jobs) {
+      Result result = job.getResult();
+      if (result != null && result.isWorseThan(Result.UNSTABLE)) {
+        success = false;
+        logger.error("Child job failed.");
+      }
+    }
+    return success;
+  }
+
+  private static void complete(@CheckForNull WorkerBuildAction action, @CheckForNull Run run) {
+    if (action == null) {
+      return;
+    }
+    WorkerBuildCoordinator coordinator = coordinators.get(action.getSchedulingId());
+    if (coordinator != null) {
+      coordinator.completions.add(new Completion(action.getSchedulingId(), run));
+    }
+  }
+
+  private static final class Completion {
+
+    private final String schedulingId;
+
+    // null if the build has been canceled while waiting in the queue
+    private final Run run;
+
+    Completion(String schedulingId, Run run) {
+      this.schedulingId = schedulingId;
+      this.run = run;
+    }
+
+  }
+
+  /**
+   * Marks a worker job build with the id it has been scheduled with, so its completion can be
+   * assigned to the waiting {@link WorkerBuildCoordinator}.
+   */
+  public static final class WorkerBuildAction extends InvisibleAction {
+
+    private final String schedulingId;
+
+    /**
+     * @param schedulingId
+     *          the id the build has been scheduled with
+     */
+    public WorkerBuildAction(String schedulingId) {
+      this.schedulingId = schedulingId;
+    }
+
+    /**
+     * @return the id the build has been scheduled with
+     */
+    public String getSchedulingId() {
+      return schedulingId;
+    }
+
+  }
+
+  /**
+   * Reports completed worker job builds.
+   */
+  @Extension
+  public static final class WorkerBuildRunListener extends RunListener<Run> {
+
+    @Override
+    public void onCompleted(Run run, TaskListener listener) {
+      complete(run.getAction(WorkerBuildAction.class), run);
+    }
+
+  }
+
+  /**
+   * Reports worker job builds that have been canceled before they started.
+   */
+  @Extension
+  public static final class WorkerBuildQueueListener extends QueueListener {
+
+    @Override
+    public void onLeft(Queue.LeftItem item) {
+      if (item.isCancelled()) {
+        complete(item.getAction(WorkerBuildAction.class), null);
+      }
+    }
+
+  }
+
+}
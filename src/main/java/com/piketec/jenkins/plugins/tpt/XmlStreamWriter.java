@@ -24,6 +24,7 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import javax.annotation.CheckForNull;
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -122,6 +123,36 @@ class XmlStreamWriter {
     writer.flush();
   }
 
+  /**
+   * Used by the merge of JUnit fragments, it writes a test case that has already been converted
+   * 
+   * @param className
+   *          the class name of the converted test case
+   * @param name
+   *          the name of the converted test case
+   * @param time
+   *          the execution duration in seconds
+   * @param error
+   *          the error message or <code>null</code> if the test case passed
+   * @throws XMLStreamException
+   *           If the XML cannot be created
+   */
+  public void writeConvertedTestcase(String className, String name, String time,
+                                     @CheckForNull String error)
+      throws XMLStreamException {
+    writer.writeStartElement("testcase");
+    writer.writeAttribute("classname", className);
+    writer.writeAttribute("name", name);
+    writer.writeAttribute("time", time);
+    if (error != null) {
+      writer.writeStartElement("error");
+      writer.writeAttribute("message", error);
+      writer.writeEndElement();
+    }
+    writer.writeEndElement();
+    writer.flush();
+  }
+
   /**
    * Get the full name of a test cases. The pattern is
    * $executionconfigname$.$platformname$.$testcasename$_$testcase-id$. If execution configuration
@@ -3,13 +3,20 @@ package com.piketec.jenkins.plugins.tpt.api.callables;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.commons.lang.StringUtils;
 
+import com.piketec.jenkins.plugins.tpt.PlatformWorkItem;
 import com.piketec.jenkins.plugins.tpt.TptApiHelper;
+import com.piketec.jenkins.plugins.tpt.Configuration.JenkinsConfiguration;
 import com.piketec.jenkins.plugins.tpt.TptLogger;
 import com.piketec.jenkins.plugins.tpt.TptVersion;
 import com.piketec.tpt.api.ApiException;
@@ -22,6 +29,7 @@ import com.piketec.tpt.api.ScenarioGroup;
 import com.piketec.tpt.api.ScenarioOrGroup;
 import com.piketec.tpt.api.TestSet;
 import com.piketec.tpt.api.TptApi;
+import com.piketec.tpt.api.util.WalkResultScenario;
 
 import hudson.FilePath;
 import hudson.model.TaskListener;
@@ -45,6 +53,15 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
 
   private String testSetName;
 
+  private String cores;
+
+  private boolean platformWorkItems;
+
+  private HashMap<String, String> testCaseUuids;
+
+  @CheckForNull
+  private ExecutionProgressListener progressListener;
+
   /**
    * Create a new callable to execute a subset of tests of a given test set as part of a complete
    * test execution.
@@ -73,13 +90,29 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
    *          List of test cases to executes
    * @param testSetName
    *          The test set to execute
+   * @param cores
+   *          The number of cores to use, "auto" for all cores of the agent or empty to use the
+   *          setting of the execution configuration
+   * @param platformWorkItems
+   *          <code>true</code> if <code>testSet</code> contains {@link PlatformWorkItem platform
+   *          work items} instead of test case names. Each test case is then only executed on the
+   *          execution configuration item given by its work item.
+   * @param testCaseUuids
+   *          the UUIDs of the test cases by name, used to look up the test cases without searching
+   *          the scenario tree. May be incomplete.
+   * @param progressListener
+   *          the listener exported by the controller the finished test cases are reported to
+   *          while the execution is running, <code>null</code> to not report them
    */
   public ExecuteTestsWorkerJobCallable(TaskListener listener, int tptPort, String tptBindingName,
                                        FilePath[] exePaths, List<String> arguments,
                                        long startUpWaitTime, FilePath tptFilePath,
                                        FilePath workerJobReportPath, FilePath workerJobDataPath,
                                        String executionConfigName, List<String> testSet,
-                                       String testSetName) {
+                                       String testSetName, String cores,
+                                       boolean platformWorkItems,
+                                       Map<String, String> testCaseUuids,
+                                       @CheckForNull ExecutionProgressListener progressListener) {
     super(listener, tptPort, tptBindingName, exePaths, arguments, startUpWaitTime);
     this.tptFilePath = tptFilePath;
     this.workerJobReportPath = workerJobReportPath;
@@ -87,6 +120,10 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
     this.execCfg = executionConfigName;
     this.testSetList = testSet;
     this.testSetName = testSetName;
+    this.cores = cores;
+    this.platformWorkItems = platformWorkItems;
+    this.testCaseUuids = new HashMap<>(testCaseUuids);
+    this.progressListener = progressListener;
   }
 
   @Override
@@ -121,82 +158,108 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
       String oldReportDir = config.getReportDirPath();
       String oldTestDataDir = config.getDataDirPath();
 
-      Collection<Scenario> foundScenearios = new HashSet<>();
-      find(project.getTopLevelTestlet().getTopLevelScenarioOrGroup().getItems(), testSetList,
-          foundScenearios);
-      if (foundScenearios.size() != testSetList.size()) {
-        logger
-            .error("Could only find " + foundScenearios.size() + " of " + testSetList.size() + ".");
+      Map<Integer, Set<String>> testCasesByItem = null;
+      Collection<String> testCaseNames = testSetList;
+      if (platformWorkItems) {
+        // every work item names the execution configuration item to execute the test case on
+        testCasesByItem = PlatformWorkItem.getTestCasesByItem(testSetList);
+        testCaseNames = new HashSet<>();
+        for (Set<String> itemTestCaseNames : testCasesByItem.values()) {
+          testCaseNames.addAll(itemTestCaseNames);
+        }
+      }
+      Map<String, Scenario> foundScenearios = findScenarios(api, project, testCaseNames, logger);
+      if (foundScenearios.size() != testCaseNames.size()) {
+        logger.error(
+            "Could only find " + foundScenearios.size() + " of " + testCaseNames.size() + ".");
         return false;
       }
       logger.info("Setting test data directory to " + workerJobDataPath.getRemote());
       config.setDataDirPath(workerJobDataPath.getRemote());
       logger.info("Setting report directory to " + workerJobReportPath.getRemote());
       config.setReportDirPath(workerJobReportPath.getRemote());
+      int oldCores = config.getCores();
+      int newCores = getCoresToUse(logger);
+      if (newCores > 0) {
+        logger.info("Setting number of cores to " + newCores);
+        config.setCores(newCores);
+      }
       // store information to undo changes
       List<TestSet> oldTestSets = new ArrayList<>();
       List<TestSet> newTestSets = new ArrayList<>();
       List<ExecutionConfigurationItem> deactivated = new ArrayList<>();
-      int i = 0;
+      int itemIndex = 0;
       if (StringUtils.isEmpty(testSetName)) { // Use test sets defined in file
+        // UUIDs of the test cases by test set, most items share the same test set
+        Map<TestSet, Set<String>> testSetUuids = new HashMap<>();
         for (ExecutionConfigurationItem item : config.getItems()) {
           TestSet existingTestSet = item.getTestSet();
           oldTestSets.add(existingTestSet);
           if (item.isActive()) {
-            Collection<Scenario> intersectionSet = intersectByHash(
-                TptApiHelper.getTestCasesFromTestSet(tptVersion, existingTestSet), foundScenearios);
+            Set<String> uuids = testSetUuids.get(existingTestSet);
+            if (uuids == null) {
+              uuids = new HashSet<>();
+              for (Scenario scen : TptApiHelper.getTestCasesFromTestSet(tptVersion,
+                  existingTestSet)) {
+                uuids.add(scen.getUUIDString());
+              }
+              testSetUuids.put(existingTestSet, uuids);
+            }
+            Map<String, Scenario> intersectionSet = intersectByUuid(uuids,
+                getScenariosOfItem(itemIndex, foundScenearios, testCasesByItem));
             if (intersectionSet.isEmpty()) {
               item.setActive(false);
               deactivated.add(item);
             } else {
-              String tmpTestSetName = "JENKINS Exec " + i;
-              i++;
-              logger.info("Create test set \"" + tmpTestSetName + "\" for execution of \""
-                  + remoteScenarioSetToString(intersectionSet) + "\"");
-              TestSet testSet = project.createTestSet(tmpTestSetName);
-              newTestSets.add(testSet);
-              for (Scenario scen : intersectionSet) {
-                TptApiHelper.addTestCase(tptVersion, testSet, scen);
-              }
-              setTestSetCondtionIfPossible(existingTestSet, testSet, tptVersion, logger);
-              item.setTestSet(testSet);
+              item.setTestSet(createTestSet(project, "JENKINS Exec " + newTestSets.size(),
+                  intersectionSet, existingTestSet, newTestSets, tptVersion, logger));
             }
           }
+          itemIndex++;
         }
       } else { // explicitly defined test set in Jenkins
-        String tmpTestSetName = "JENKINS Exec " + testSetName;
-        logger.info("Create test set \"" + tmpTestSetName + "\" for execution of \""
-            + remoteScenarioSetToString(foundScenearios) + "\" from File " + tptFilePath.getName());
-        TestSet testSet = project.createTestSet(tmpTestSetName);
-        newTestSets.add(testSet);
-        for (Scenario scen : foundScenearios) {
-          TptApiHelper.addTestCase(tptVersion, testSet, scen);
+        TestSet definedTestSet = null;
+        for (TestSet testSet : project.getTestSets().getItems()) {
+          if (testSet.getName().equals(testSetName)) {
+            definedTestSet = testSet;
+            break;
+          }
+        }
+        if (definedTestSet == null) {
+          logger.warn("Unable to find test set \"" + testSetName
+              + "\" on agent. Unable to update test set condition.");
         }
+        TestSet sharedTestSet = null;
         for (ExecutionConfigurationItem item : config.getItems()) {
           oldTestSets.add(item.getTestSet());
           if (item.isActive()) {
-            item.setTestSet(testSet);
-          }
-        }
-        boolean testSetFound = false;
-        for (TestSet definedTestset : project.getTestSets().getItems()) {
-          if (definedTestset.getName().equals(testSetName)) {
-            testSetFound = true;
-            setTestSetCondtionIfPossible(definedTestset, testSet, tptVersion, logger);
-            break;
+            if (testCasesByItem == null) {
+              // all active items execute the same test cases
+              if (sharedTestSet == null) {
+                sharedTestSet = createTestSet(project, "JENKINS Exec " + testSetName,
+                    foundScenearios, definedTestSet, newTestSets, tptVersion, logger);
+              }
+              item.setTestSet(sharedTestSet);
+            } else {
+              Map<String, Scenario> itemScenarios =
+                  getScenariosOfItem(itemIndex, foundScenearios, testCasesByItem);
+              if (itemScenarios.isEmpty()) {
+                item.setActive(false);
+                deactivated.add(item);
+              } else {
+                item.setTestSet(createTestSet(project,
+                    "JENKINS Exec " + testSetName + " " + itemIndex, itemScenarios,
+                    definedTestSet, newTestSets, tptVersion, logger));
+              }
+            }
           }
-        }
-        if (!testSetFound) {
-          logger.warn("Unable to find test set \"" + testSet
-              + "\" on agent. Unable to update test set condition.");
+          itemIndex++;
         }
       }
       // execute test
       ExecutionStatus execStatus = api.run(config);
       try {
-        while (execStatus.isRunning() || execStatus.isPending()) {
-          Thread.sleep(1000);
-        }
+        new ExecutionMonitor(execStatus, logger, progressListener, !platformWorkItems).join();
       } catch (InterruptedException e) {
         logger.interrupt(e.getMessage());
         execStatus.cancel();
@@ -215,6 +278,10 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
             + oldReportDir + "\"");
         config.setDataDirPath(oldTestDataDir);
         config.setReportDirPath(oldReportDir);
+        if (newCores > 0) {
+          logger.info("reset number of cores to " + oldCores);
+          config.setCores(oldCores);
+        }
         for (TestSet testSet : newTestSets) {
           logger.info("delete temporary test set \"" + testSet.getName() + "\"");
           project.getTestSets().delete(testSet);
@@ -237,73 +304,154 @@ public class ExecuteTestsWorkerJobCallable extends TptApiCallable<Boolean> {
   }
 
   /**
-   * Finds all the test cases of a given test set
+   * Resolves the configured number of cores on the agent.
    * 
-   * @param sogs
-   * @param names
-   * @param result
-   * @throws RemoteException
-   * @throws ApiException
+   * @return the number of cores to use or 0 if the setting of the execution configuration should
+   *         be used
    */
+  private int getCoresToUse(TptLogger logger) {
+    if (StringUtils.isBlank(cores)) {
+      return 0;
+    }
+    if (JenkinsConfiguration.AUTO_CORES.equalsIgnoreCase(cores.trim())) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    try {
+      int parsedCores = Integer.parseInt(cores.trim());
+      if (parsedCores >= 1) {
+        return parsedCores;
+      }
+    } catch (NumberFormatException e) {
+      // NOP, warning below
+    }
+    logger.warn("The given number of cores \"" + cores
+        + "\" is not a positive integer. Using the setting of the execution configuration.");
+    return 0;
+  }
 
-  private void find(Collection<ScenarioOrGroup> sogs, Collection<String> names,
-                    Collection<Scenario> result)
+  /**
+   * Creates a temporary test set containing the given test cases.
+   * 
+   * @param conditionSource
+   *          the test set to copy the test set condition from, may be <code>null</code>
+   * @param newTestSets
+   *          the list of temporary test sets the new test set is added to
+   */
+  private TestSet createTestSet(Project project, String name, Map<String, Scenario> scenarios,
+                                TestSet conditionSource, List<TestSet> newTestSets,
+                                TptVersion tptVersion, TptLogger logger)
       throws RemoteException, ApiException {
-    for (ScenarioOrGroup sog : sogs) {
-      if (sog instanceof Scenario) {
-        if (names.contains(sog.getName())) {
-          result.add((Scenario)sog);
+    logger.info("Create test set \"" + name + "\" for execution of \""
+        + StringUtils.join(scenarios.keySet(), ", ") + "\" from File " + tptFilePath.getName());
+    TestSet testSet = project.createTestSet(name);
+    newTestSets.add(testSet);
+    for (Scenario scen : scenarios.values()) {
+      TptApiHelper.addTestCase(tptVersion, testSet, scen);
+    }
+    if (conditionSource != null) {
+      setTestSetCondtionIfPossible(conditionSource, testSet, tptVersion, logger);
+    }
+    return testSet;
+  }
+
+  /**
+   * @return the test cases to execute on the execution configuration item with the given index.
+   *         All found test cases if the work items are not bound to execution configuration items.
+   */
+  private Map<String, Scenario> getScenariosOfItem(int itemIndex,
+                                                   Map<String, Scenario> scenarios,
+                                                   Map<Integer, Set<String>> testCasesByItem) {
+    if (testCasesByItem == null) {
+      return scenarios;
+    }
+    Set<String> names = testCasesByItem.get(itemIndex);
+    Map<String, Scenario> result = new LinkedHashMap<>();
+    if (names != null) {
+      for (String name : names) {
+        Scenario scen = scenarios.get(name);
+        if (scen != null) {
+          result.put(name, scen);
         }
-      } else {
-        find(((ScenarioGroup)sog).getItems(), names, result);
       }
     }
+    return result;
   }
 
   /**
-   * Matches the tests cases from a test set with all the test cases found.
+   * Finds the test cases with the given names. They are looked up by their UUIDs first. Only test
+   * cases without a known UUID or whose UUID does not belong to a test case with the same name are
+   * searched in a single walk over the scenario tree. Afterwards the UUIDs of all found test cases
+   * are known.
    * 
-   * @param scenColl1
-   * @param scenCol2
-   * @return the intersected test cases
-   * @throws RemoteException
-   * @throws ApiException
+   * @return the found test cases by name
    */
-  static Collection<Scenario> intersectByHash(Collection<Scenario> scenColl1,
-                                              Collection<Scenario> scenCol2)
-      throws RemoteException, ApiException {
-    Set<String> scenCol1Names = new HashSet<>();
-    ArrayList<Scenario> result = new ArrayList<>();
-    for (Scenario scen : scenColl1) {
-      scenCol1Names.add(scen.getName());
+  private Map<String, Scenario> findScenarios(TptApi api, Project project,
+                                              Collection<String> names, TptLogger logger)
+      throws RemoteException {
+    Map<String, Scenario> result = new LinkedHashMap<>();
+    Set<String> missing = new HashSet<>();
+    for (String name : names) {
+      String uuid = testCaseUuids.get(name);
+      ScenarioOrGroup sog = uuid == null ? null : project.getScenarioOrGroupByUUIDString(uuid);
+      if (sog instanceof Scenario && name.equals(sog.getName())) {
+        result.put(name, (Scenario)sog);
+      } else {
+        missing.add(name);
+      }
     }
-    for (Scenario scen : scenCol2) {
-      if (scenCol1Names.contains(scen.getName())) {
-        result.add(scen);
+    if (missing.isEmpty()) {
+      return result;
+    }
+    logger.info("Searching " + missing.size() + " test cases without known UUID by name.");
+    for (ScenarioOrGroup sog : project.getTopLevelTestlet().getTopLevelScenarioOrGroup()
+        .getItems()) {
+      if (sog instanceof Scenario) {
+        addIfMissing((Scenario)sog, missing, result);
+      } else {
+        for (WalkResultScenario walkResult : api.walkScenarios((ScenarioGroup)sog)) {
+          for (Scenario scen : walkResult.getElements()) {
+            addIfMissing(scen, missing, result);
+          }
+          if (missing.isEmpty()) {
+            return result;
+          }
+        }
+      }
+      if (missing.isEmpty()) {
+        return result;
       }
     }
     return result;
   }
 
+  private void addIfMissing(Scenario scen, Set<String> missing, Map<String, Scenario> result)
+      throws RemoteException {
+    String name = scen.getName();
+    if (missing.remove(name)) {
+      result.put(name, scen);
+      testCaseUuids.put(name, scen.getUUIDString());
+    }
+  }
+
   /**
-   * Convert the given test cases to a String
+   * Matches the tests cases from a test set with all the test cases found. The test cases are
+   * compared by their UUIDs, so no remote call is needed.
    * 
-   * @param intersectionSet
-   *          to be converted
-   * @return the given test cases as a String , separated with a comma
-   * @throws RemoteException
-   * @throws ApiException
+   * @param testSetUuids
+   *          the UUIDs of the test cases of the test set
+   * @param scenarios
+   *          the found test cases by name, their UUIDs must be known
+   * @return the found test cases that are part of the test set by name
    */
-  private String remoteScenarioSetToString(Collection<Scenario> intersectionSet)
-      throws RemoteException, ApiException {
-    StringBuilder sb = new StringBuilder();
-    for (Scenario scen : intersectionSet) {
-      if (sb.length() > 0) {
-        sb.append(", ");
+  private Map<String, Scenario> intersectByUuid(Set<String> testSetUuids,
+                                                Map<String, Scenario> scenarios) {
+    Map<String, Scenario> result = new LinkedHashMap<>();
+    for (Map.Entry<String, Scenario> entry : scenarios.entrySet()) {
+      if (testSetUuids.contains(testCaseUuids.get(entry.getKey()))) {
+        result.put(entry.getKey(), entry.getValue());
       }
-      sb.append(scen.getName());
     }
-    return sb.toString();
+    return result;
   }
 
   /**
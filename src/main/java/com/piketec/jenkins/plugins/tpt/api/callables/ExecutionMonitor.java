@@ -0,0 +1,244 @@
+package com.piketec.jenkins.plugins.tpt.api.callables;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.TptLogger;
+import com.piketec.jenkins.plugins.tpt.api.callables.ExecutionProgressListener.FinishedTestCase;
+import com.piketec.tpt.api.ExecutionStatus;
+import com.piketec.tpt.api.Scenario;
+import com.piketec.tpt.api.TestCaseExecutionStatus;
+import com.piketec.tpt.api.TestCaseExecutionStatus.TestCaseStatus;
+
+/**
+ * Waits for a TPT execution to finish. The status is polled often while test cases finish and less
+ * often while nothing changes, so short executions are noticed quickly and long test cases do not
+ * cause useless remote calls. Without a listener nothing but the end of the execution can be
+ * noticed, so the status is polled at the shortest interval.
+ * <p>
+ * If a listener is given, the finished test cases are logged and reported to it while the execution
+ * is still running. The number of pending test cases is polled to notice finished test cases, only
+ * then the states of the single test cases are fetched.
+ * </p>
+ */
+final class ExecutionMonitor {
+
+  static final long MIN_POLL_INTERVAL = 250;
+
+  static final long MAX_POLL_INTERVAL = 4000;
+
+  private final ExecutionStatus status;
+
+  private final TptLogger logger;
+
+  @CheckForNull
+  private ExecutionProgressListener listener;
+
+  private final boolean groupByName;
+
+  @CheckForNull
+  private List<TestCaseExecutionStatus> entries = null;
+
+  private String[] keys;
+
+  private boolean[] finished;
+
+  private final Map<String, TestCaseProgress> testCases = new HashMap<>();
+
+  // test case name -> time the test case has been seen running first
+  private final Map<String, Long> runningSince = new HashMap<>();
+
+  private long lastFinish = System.currentTimeMillis();
+
+  private int finishedCount = 0;
+
+  /**
+   * @param status
+   *          the status of the execution to wait for
+   * @param logger
+   *          to log the finished test cases
+   * @param listener
+   *          the listener to report finished test cases to, <code>null</code> to only wait
+   * @param groupByName
+   *          if a test case executed for several execution configuration items is reported once
+   *          when it is finished for all items instead of once per item
+   */
+  ExecutionMonitor(ExecutionStatus status, TptLogger logger,
+                   @CheckForNull ExecutionProgressListener listener, boolean groupByName) {
+    this.status = status;
+    this.logger = logger;
+    this.listener = listener;
+    this.groupByName = groupByName;
+  }
+
+  /**
+   * Waits until the execution is finished.
+   *
+   * @throws InterruptedException
+   *           If thread was interrupted
+   * @throws RemoteException
+   *           remote communication problem
+   */
+  void join() throws InterruptedException, RemoteException {
+    long interval = MIN_POLL_INTERVAL;
+    while (status.isRunning() || status.isPending()) {
+      Thread.sleep(interval);
+      if (listener != null && !poll()) {
+        interval = Math.min(MAX_POLL_INTERVAL, 2 * interval);
+      } else {
+        interval = MIN_POLL_INTERVAL;
+      }
+    }
+    if (listener != null && (entries != null || init())) {
+      // report the test cases finished since the last poll
+      scan(Integer.MAX_VALUE);
+    }
+  }
+
+  /**
+   * @return <code>true</code> if test cases have been finished since the last poll
+   */
+  private boolean poll() throws RemoteException {
+    if (entries == null && !init()) {
+      return false;
+    }
+    Scenario current = status.getCurrentTestCase();
+    if (current != null) {
+      String name = current.getName();
+      if (!runningSince.containsKey(name)) {
+        runningSince.put(name, System.currentTimeMillis());
+      }
+    }
+    int newlyFinished = entries.size() - status.getNumberOfPendingTestCases() - finishedCount;
+    if (newlyFinished <= 0) {
+      return false;
+    }
+    scan(newlyFinished);
+    return true;
+  }
+
+  /**
+   * Fetches the test cases of the execution once they are known.
+   */
+  private boolean init() throws RemoteException {
+    if (status.getNumberOfAllTestCases() == 0) {
+      return false;
+    }
+    List<TestCaseExecutionStatus> allTestCases = status.getAllTestCases();
+    keys = new String[allTestCases.size()];
+    finished = new boolean[allTestCases.size()];
+    for (int i = 0; i < allTestCases.size(); i++) {
+      Scenario scenario = allTestCases.get(i).getTestcase();
+      String name = scenario == null ? "" : scenario.getName();
+      keys[i] = groupByName ? name : i + ":" + name;
+      TestCaseProgress testCase = testCases.get(keys[i]);
+      if (testCase == null) {
+        testCase = new TestCaseProgress(name);
+        testCases.put(keys[i], testCase);
+      }
+      testCase.remaining++;
+    }
+    entries = allTestCases;
+    return true;
+  }
+
+  /**
+   * Looks for finished test cases until the given number has been found and reports them.
+   */
+  private void scan(int expected) throws RemoteException {
+    long now = System.currentTimeMillis();
+    List<FinishedTestCase> events = new ArrayList<>();
+    int found = 0;
+    for (int i = 0; i < entries.size() && found < expected; i++) {
+      if (finished[i]) {
+        continue;
+      }
+      TestCaseStatus entryStatus = entries.get(i).getStatus();
+      TestCaseProgress testCase = testCases.get(keys[i]);
+      if (entryStatus == TestCaseStatus.Running) {
+        if (!runningSince.containsKey(testCase.name)) {
+          runningSince.put(testCase.name, now);
+        }
+        continue;
+      }
+      if (entryStatus == null || entryStatus == TestCaseStatus.Pending) {
+        continue;
+      }
+      finished[i] = true;
+      found++;
+      if (testCase.status == null || getPriority(entryStatus) > getPriority(testCase.status)) {
+        testCase.status = entryStatus;
+      }
+      if (--testCase.remaining == 0) {
+        Long start = runningSince.get(testCase.name);
+        long duration = now - (start == null ? lastFinish : Math.max(start, lastFinish));
+        events.add(new FinishedTestCase(testCase.name, testCase.status.name(), duration));
+      }
+    }
+    finishedCount += found;
+    if (found > 0) {
+      lastFinish = now;
+    }
+    report(events);
+  }
+
+  private void report(List<FinishedTestCase> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    for (FinishedTestCase event : events) {
+      logger.info("Finished test case \"" + event.getName() + "\": " + event.getStatus() + " ("
+          + event.getDuration() / 1000 + " s)");
+    }
+    ExecutionProgressListener progressListener = listener;
+    if (progressListener == null) {
+      return;
+    }
+    try {
+      progressListener.testCasesFinished(events);
+    } catch (RuntimeException e) {
+      // the progress is only informative, the execution goes on
+      logger.warn("Could not report the progress to the controller: " + e.getMessage());
+      listener = null;
+    }
+  }
+
+  /**
+   * The priority TPT uses to derive the cumulative state of an execution.
+   */
+  private static int getPriority(TestCaseStatus status) {
+    switch (status) {
+      case ResultError:
+        return 4;
+      case ResultFailed:
+        return 3;
+      case ResultSuccess:
+        return 2;
+      case ResultUnknown:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  private static final class TestCaseProgress {
+
+    private final String name;
+
+    private int remaining = 0;
+
+    @CheckForNull
+    private TestCaseStatus status = null;
+
+    TestCaseProgress(String name) {
+      this.name = name;
+    }
+
+  }
+
+}
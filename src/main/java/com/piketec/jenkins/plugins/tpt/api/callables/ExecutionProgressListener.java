@@ -0,0 +1,71 @@
+package com.piketec.jenkins.plugins.tpt.api.callables;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Receives the test cases of a running TPT execution as soon as they are finished. An instance
+ * living on the controller is exported to the agent, so the events are streamed while the
+ * execution is still running.
+ */
+public interface ExecutionProgressListener {
+
+  /**
+   * Called on the controller whenever the agent noticed finished test cases.
+   *
+   * @param finished
+   *          the test cases finished since the last call
+   */
+  void testCasesFinished(List<FinishedTestCase> finished);
+
+  /**
+   * A finished test case of a running execution.
+   */
+  final class FinishedTestCase implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+
+    private final String status;
+
+    private final long duration;
+
+    /**
+     * @param name
+     *          the name of the test case
+     * @param status
+     *          the result of the test case, e.g. <code>ResultSuccess</code>
+     * @param duration
+     *          the execution duration in milliseconds, as exact as the polling interval allows
+     */
+    public FinishedTestCase(String name, String status, long duration) {
+      this.name = name;
+      this.status = status;
+      this.duration = duration;
+    }
+
+    /**
+     * @return the name of the test case
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the result of the test case, e.g. <code>ResultSuccess</code>
+     */
+    public String getStatus() {
+      return status;
+    }
+
+    /**
+     * @return the execution duration in milliseconds
+     */
+    public long getDuration() {
+      return duration;
+    }
+
+  }
+
+}
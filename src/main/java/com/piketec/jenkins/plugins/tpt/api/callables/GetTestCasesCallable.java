@@ -1,10 +1,16 @@
 package com.piketec.jenkins.plugins.tpt.api.callables;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.commons.lang.StringUtils;
 
 import com.piketec.jenkins.plugins.tpt.TptApiHelper;
@@ -15,8 +21,11 @@ import com.piketec.tpt.api.ExecutionConfiguration;
 import com.piketec.tpt.api.ExecutionConfigurationItem;
 import com.piketec.tpt.api.Project;
 import com.piketec.tpt.api.Scenario;
+import com.piketec.tpt.api.ScenarioGroup;
+import com.piketec.tpt.api.ScenarioOrGroup;
 import com.piketec.tpt.api.TestSet;
 import com.piketec.tpt.api.TptApi;
+import com.piketec.tpt.api.util.WalkResultScenario;
 
 import hudson.FilePath;
 import hudson.model.TaskListener;
@@ -35,13 +44,19 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
 
   private String testSet;
 
+  @CheckForNull
+  private ArrayList<String> selectedTestSetsOrGroups;
+
   public GetTestCasesCallable(TaskListener listener, int tptPort, String tptBindingName,
                               FilePath[] exePaths, List<String> arguments, long startUpWaitTime,
-                              FilePath tptFilePath, String executionConfigName, String testSet) {
+                              FilePath tptFilePath, String executionConfigName, String testSet,
+                              @CheckForNull Collection<String> selectedTestSetsOrGroups) {
     super(listener, tptPort, tptBindingName, exePaths, arguments, startUpWaitTime);
     this.tptFilePath = tptFilePath;
     this.executionConfigName = executionConfigName;
     this.testSet = testSet;
+    this.selectedTestSetsOrGroups = selectedTestSetsOrGroups == null ? null
+        : new ArrayList<>(selectedTestSetsOrGroups);
   }
 
   @Override
@@ -55,6 +70,8 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
       }
       TptVersion tptVersion = TptVersion.getVersion(api);
       Set<String> testCases = null;
+      Map<Integer, Set<String>> testCasesByItem = new HashMap<>();
+      Map<String, String> testCaseUuids = new HashMap<>();
       int totalTestCaseCount = 0;
 
       // Open the TPT Project via the TPT-API
@@ -79,12 +96,17 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
             testCases = new HashSet<>();
             for (Scenario testcase : TptApiHelper.getTestCasesFromTestSet(tptVersion,
                 definedTestset)) {
-              testCases.add(testcase.getName());
+              String name = testcase.getName();
+              testCases.add(name);
+              testCaseUuids.put(name, testcase.getUUIDString());
             }
+            int itemIndex = 0;
             for (ExecutionConfigurationItem item : executionConfig.getItems()) {
               if (item.isActive()) {
+                testCasesByItem.put(itemIndex, testCases);
                 totalTestCaseCount += testCases.size();
               }
+              itemIndex++;
             }
             testCaseConditionPresent =
                 checkForTestCaseConditionIfPossible(definedTestset, tptVersion);
@@ -97,7 +119,9 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
         }
       } else { // use test sets configured in TPT file
         testCases = new HashSet<>();
+        int itemIndex = 0;
         for (ExecutionConfigurationItem item : executionConfig.getItems()) {
+          int currentItemIndex = itemIndex++;
           if (item.isActive()) {
             TestSet testSet = item.getTestSet();
             if (testSet == null) {
@@ -106,10 +130,16 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
                       + " Please configure a test set.");
               return null;
             }
+            Set<String> itemTestCases = new HashSet<>();
             for (Scenario testcase : TptApiHelper.getTestCasesFromTestSet(tptVersion, testSet)) {
-              testCases.add(testcase.getName());
+              String name = testcase.getName();
+              if (testCases.add(name)) {
+                testCaseUuids.put(name, testcase.getUUIDString());
+              }
+              itemTestCases.add(name);
               totalTestCaseCount++;
             }
+            testCasesByItem.put(currentItemIndex, itemTestCases);
             testCaseConditionPresent |= checkForTestCaseConditionIfPossible(testSet, tptVersion);
           }
         }
@@ -120,8 +150,29 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
                 + " configured as test set. If so please change it to another existing test set");
         return null;
       }
-      return new GetTestCasesCallableResult(testCases, totalTestCaseCount, testCaseConditionPresent,
-          tptVersion);
+      // Only keep the test cases affected by the changes of the build
+      Set<String> notSelectedTestCases = new HashSet<>();
+      if (selectedTestSetsOrGroups != null) {
+        Set<String> selected = getTestCasesOfTestSetsOrGroups(logger, api, project, tptVersion);
+        Map<Integer, Set<String>> selectedByItem = new HashMap<>();
+        totalTestCaseCount = 0;
+        for (Map.Entry<Integer, Set<String>> entry : testCasesByItem.entrySet()) {
+          Set<String> itemTestCases = new HashSet<>(entry.getValue());
+          itemTestCases.retainAll(selected);
+          selectedByItem.put(entry.getKey(), itemTestCases);
+          totalTestCaseCount += itemTestCases.size();
+        }
+        testCasesByItem = selectedByItem;
+        notSelectedTestCases.addAll(testCases);
+        notSelectedTestCases.removeAll(selected);
+        testCases = new HashSet<>(testCases);
+        testCases.retainAll(selected);
+        logger.info("Selected " + testCases.size() + " test cases affected by the changes, "
+            + notSelectedTestCases.size() + " test cases are not selected.");
+      }
+      testCaseUuids.keySet().retainAll(testCases);
+      return new GetTestCasesCallableResult(testCases, testCasesByItem, testCaseUuids,
+          totalTestCaseCount, testCaseConditionPresent, tptVersion, notSelectedTestCases);
     } catch (RemoteException e) {
       logger.error("RemoteException: " + e.getMessage());
       return null;
@@ -131,6 +182,56 @@ public class GetTestCasesCallable extends TptApiCallable<GetTestCasesCallableRes
     }
   }
 
+  /**
+   * Collects the names of the test cases of the selected test sets and scenario groups. Names that
+   * are neither a test set nor a scenario group are ignored. The test sets are fetched once and the
+   * scenario tree is walked once for all names, only the test cases of the matching groups are
+   * collected afterwards.
+   */
+  private Set<String> getTestCasesOfTestSetsOrGroups(TptLogger logger, TptApi api,
+                                                     Project project, TptVersion tptVersion)
+      throws RemoteException {
+    Set<String> result = new HashSet<>();
+    Set<String> notFound = new HashSet<>(selectedTestSetsOrGroups);
+    for (TestSet definedTestset : project.getTestSets().getItems()) {
+      String name = definedTestset.getName();
+      if (selectedTestSetsOrGroups.contains(name)) {
+        notFound.remove(name);
+        for (Scenario testcase : TptApiHelper.getTestCasesFromTestSet(tptVersion,
+            definedTestset)) {
+          result.add(testcase.getName());
+        }
+      }
+    }
+    List<ScenarioGroup> selectedGroups = new ArrayList<>();
+    for (ScenarioOrGroup sog : project.getTopLevelTestlet().getTopLevelScenarioOrGroup()
+        .getItems()) {
+      if (!(sog instanceof ScenarioGroup)) {
+        continue;
+      }
+      for (WalkResultScenario walkResult : api.walkScenarios((ScenarioGroup)sog)) {
+        ScenarioGroup group = walkResult.getRoot();
+        String name = group.getName();
+        if (selectedTestSetsOrGroups.contains(name)) {
+          notFound.remove(name);
+          selectedGroups.add(group);
+        }
+      }
+    }
+    for (ScenarioGroup group : selectedGroups) {
+      for (WalkResultScenario walkResult : api.walkScenarios(group)) {
+        for (Scenario scenario : walkResult.getElements()) {
+          result.add(scenario.getName());
+        }
+      }
+    }
+    for (String name : notFound) {
+      logger.warn("The change impact mapping refers to \"" + name
+          + "\", which is neither a test set nor a scenario group.");
+    }
+    return result;
+  }
+
   private boolean checkForTestCaseConditionIfPossible(TestSet testset, TptVersion tptVersion)
       throws RemoteException {
     if (tptVersion.supportsTestCaseConditionAccess()) {
@@ -2,6 +2,7 @@ package com.piketec.jenkins.plugins.tpt.api.callables;
 
 import java.io.Serializable;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 import com.piketec.jenkins.plugins.tpt.TptVersion;
@@ -20,6 +21,18 @@ public class GetTestCasesCallableResult implements Serializable {
    */
   public final Set<String> testCases;
 
+  /**
+   * The names of the test cases by index of the active execution configuration item they are
+   * executed on.
+   */
+  public final Map<Integer, Set<String>> testCasesByItem;
+
+  /**
+   * The UUIDs of the test cases by name, so workers can look them up without searching the
+   * scenario tree.
+   */
+  public final Map<String, String> testCaseUuids;
+
   /**
    * The total number of test cases including duplicates.
    */
@@ -36,12 +49,23 @@ public class GetTestCasesCallableResult implements Serializable {
    */
   public final TptVersion tptVersion;
 
-  GetTestCasesCallableResult(Set<String> testCases, int testCaseCount,
-                             boolean testCaseConditionsPresent, TptVersion tptVersion) {
+  /**
+   * The names of the test cases that are not executed because they are not affected by the changes
+   * of the build.
+   */
+  public final Set<String> notSelectedTestCases;
+
+  GetTestCasesCallableResult(Set<String> testCases, Map<Integer, Set<String>> testCasesByItem,
+                             Map<String, String> testCaseUuids, int testCaseCount,
+                             boolean testCaseConditionsPresent, TptVersion tptVersion,
+                             Set<String> notSelectedTestCases) {
     this.testCases = Collections.unmodifiableSet(testCases);
+    this.testCasesByItem = Collections.unmodifiableMap(testCasesByItem);
+    this.testCaseUuids = Collections.unmodifiableMap(testCaseUuids);
     this.testCaseCount = testCaseCount;
     this.testCaseConditionsPresent = testCaseConditionsPresent;
     this.tptVersion = tptVersion;
+    this.notSelectedTestCases = Collections.unmodifiableSet(notSelectedTestCases);
   }
 
 }
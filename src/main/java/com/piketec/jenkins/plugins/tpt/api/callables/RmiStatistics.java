@@ -0,0 +1,278 @@
+package com.piketec.jenkins.plugins.tpt.api.callables;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.tpt.api.RemoteCollection;
+
+/**
+ * Records the number and the latency of the RMI calls made via the TPT API. The TPT API connection
+ * and every remote object returned by it are wrapped in dynamic proxies that measure each call per
+ * interface method. Arguments are unwrapped before they are passed on, so the proxies can be used
+ * like the original remote objects.
+ * <p>
+ * The statistics of the current thread are set by {@link RmiStatisticsCallable} while the
+ * instrumented callable runs. Remote objects that are not returned by an instrumented method, e.g.
+ * remote objects inside of serializable results, are only measured if they are passed to
+ * {@link #track(Object)}.
+ * </p>
+ */
+final class RmiStatistics {
+
+  private static final ThreadLocal<RmiStatistics> current = new ThreadLocal<>();
+
+  private final Map<String, MethodStatistics> methods = new HashMap<>();
+
+  /**
+   * @return the statistics the RMI calls of the current thread are recorded in or
+   *         <code>null</code> if they are not recorded
+   */
+  @CheckForNull
+  static RmiStatistics getCurrent() {
+    return current.get();
+  }
+
+  /**
+   * @param statistics
+   *          the statistics to record the RMI calls of the current thread in, <code>null</code> to
+   *          stop recording
+   */
+  static void setCurrent(@CheckForNull RmiStatistics statistics) {
+    if (statistics == null) {
+      current.remove();
+    } else {
+      current.set(statistics);
+    }
+  }
+
+  /**
+   * Wraps the given remote object, so its calls are recorded in the statistics of the current
+   * thread. Returns the object itself if no statistics are recorded.
+   *
+   * @param remote
+   *          the remote object, typed by one of its interfaces
+   * @return the instrumented remote object
+   */
+  static <T> T track(T remote) {
+    RmiStatistics statistics = getCurrent();
+    return statistics == null ? remote : statistics.instrument(remote);
+  }
+
+  /**
+   * @param object
+   *          an object that might be an instrumented remote object
+   * @return the original remote object if the given object is instrumented, the object itself
+   *         otherwise
+   */
+  static Object unwrap(Object object) {
+    if (object != null && Proxy.isProxyClass(object.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(object);
+      if (handler instanceof RecordingHandler) {
+        return ((RecordingHandler)handler).target;
+      }
+    }
+    return object;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T instrument(T remote) {
+    return (T)wrap(remote);
+  }
+
+  private Object wrap(Object result) {
+    if (result == null || unwrap(result) != result) {
+      return result;
+    }
+    if (result instanceof Remote || result instanceof RemoteCollection) {
+      Set<Class< ? >> interfaces = new LinkedHashSet<>();
+      for (Class< ? > c = result.getClass(); c != null; c = c.getSuperclass()) {
+        collectInterfaces(c, interfaces);
+      }
+      try {
+        return Proxy.newProxyInstance(RmiStatistics.class.getClassLoader(),
+            interfaces.toArray(new Class< ? >[0]), new RecordingHandler(result));
+      } catch (IllegalArgumentException e) {
+        // some interface is not visible, so the object cannot be instrumented
+        return result;
+      }
+    }
+    if (result instanceof RemoteCollection || !(result instanceof Collection)) {
+      return result;
+    }
+    Collection< ? > elements = (Collection< ? >)result;
+    Collection<Object> wrapped =
+        result instanceof Set ? new LinkedHashSet<>() : new ArrayList<>(elements.size());
+    for (Object element : elements) {
+      wrapped.add(wrap(element));
+    }
+    return wrapped;
+  }
+
+  private static void collectInterfaces(Class< ? > c, Set<Class< ? >> interfaces) {
+    for (Class< ? > i : c.getInterfaces()) {
+      if (interfaces.add(i)) {
+        collectInterfaces(i, interfaces);
+      }
+    }
+  }
+
+  private static Object[] unwrapArguments(Object[] args) {
+    if (args == null) {
+      return null;
+    }
+    Object[] result = new Object[args.length];
+    for (int i = 0; i < args.length; i++) {
+      Object arg = unwrap(args[i]);
+      if (arg instanceof Collection && !(arg instanceof RemoteCollection)) {
+        Collection< ? > elements = (Collection< ? >)arg;
+        Collection<Object> unwrapped =
+            arg instanceof Set ? new LinkedHashSet<>() : new ArrayList<>(elements.size());
+        for (Object element : elements) {
+          unwrapped.add(unwrap(element));
+        }
+        arg = unwrapped;
+      }
+      result[i] = arg;
+    }
+    return result;
+  }
+
+  private synchronized void record(String method, long nanos) {
+    MethodStatistics statistics = methods.get(method);
+    if (statistics == null) {
+      statistics = new MethodStatistics(method);
+      methods.put(method, statistics);
+    }
+    statistics.add(nanos);
+  }
+
+  /**
+   * @return the total number of recorded calls
+   */
+  synchronized int getCallCount() {
+    int count = 0;
+    for (MethodStatistics statistics : methods.values()) {
+      count += statistics.count;
+    }
+    return count;
+  }
+
+  /**
+   * @return a table with the number of calls and the latencies per method, the methods with the
+   *         highest total latency first
+   */
+  synchronized String toTable() {
+    List<MethodStatistics> sorted = new ArrayList<>(methods.values());
+    Collections.sort(sorted, new Comparator<MethodStatistics>() {
+
+      @Override
+      public int compare(MethodStatistics s1, MethodStatistics s2) {
+        return Long.compare(s2.totalNanos, s1.totalNanos);
+      }
+    });
+    StringBuilder sb = new StringBuilder();
+    String format = "%-60s %8s %12s %10s %10s %10s %10s %10s%n";
+    sb.append(String.format(format, "Method", "Calls", "Total [ms]", "Mean [ms]", "P50 [ms]",
+        "P90 [ms]", "P99 [ms]", "Max [ms]"));
+    long totalNanos = 0;
+    int totalCount = 0;
+    for (MethodStatistics s : sorted) {
+      long[] samples = Arrays.copyOf(s.samples, s.count);
+      Arrays.sort(samples);
+      sb.append(String.format(format, s.method, s.count, toMillis(s.totalNanos),
+          toMillis(s.totalNanos / s.count), toMillis(percentile(samples, 50)),
+          toMillis(percentile(samples, 90)), toMillis(percentile(samples, 99)),
+          toMillis(samples[samples.length - 1])));
+      totalNanos += s.totalNanos;
+      totalCount += s.count;
+    }
+    sb.append(String.format(format, "Total", totalCount, toMillis(totalNanos), "", "", "", "",
+        ""));
+    return sb.toString();
+  }
+
+  private static long percentile(long[] sortedSamples, int percent) {
+    int index = (int)Math.ceil(percent / 100.0 * sortedSamples.length) - 1;
+    return sortedSamples[Math.max(0, index)];
+  }
+
+  private static String toMillis(long nanos) {
+    return String.format("%.1f", nanos / 1e6);
+  }
+
+  /**
+   * Measures the calls of one remote object and instruments the remote objects it returns.
+   */
+  private final class RecordingHandler implements InvocationHandler {
+
+    private final Object target;
+
+    RecordingHandler(Object target) {
+      this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object[] unwrappedArgs = unwrapArguments(args);
+      if (method.getDeclaringClass() == Object.class) {
+        // equals, hashCode and toString are answered locally by RMI stubs
+        return method.invoke(target, unwrappedArgs);
+      }
+      Object result;
+      long start = System.nanoTime();
+      try {
+        result = method.invoke(target, unwrappedArgs);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      } finally {
+        record(method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+            System.nanoTime() - start);
+      }
+      return wrap(result);
+    }
+
+  }
+
+  /**
+   * The latencies of the calls of one interface method.
+   */
+  private static final class MethodStatistics {
+
+    private final String method;
+
+    private long[] samples = new long[16];
+
+    private int count = 0;
+
+    private long totalNanos = 0;
+
+    MethodStatistics(String method) {
+      this.method = method;
+    }
+
+    void add(long nanos) {
+      if (count == samples.length) {
+        samples = Arrays.copyOf(samples, count * 2);
+      }
+      samples[count++] = nanos;
+      totalNanos += nanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,84 @@
+package com.piketec.jenkins.plugins.tpt.api.callables;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.jenkins.plugins.tpt.TptLogger;
+
+import hudson.FilePath;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Executes a {@link TptApiCallable} and records the number and the latency of all TPT API calls it
+ * makes. The statistics are printed to the build log when the callable is done and appended to a
+ * file, if one is given.
+ *
+ * @param <S>
+ *          the return type of the executed callable
+ */
+public class RmiStatisticsCallable<S> extends MasterToSlaveCallable<S, InterruptedException> {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The name of the file in the workspace the statistics are written to.
+   */
+  public static final String FILE_NAME = "tpt-rmi-statistics.txt";
+
+  private final TptApiCallable<S> delegate;
+
+  @CheckForNull
+  private final FilePath statisticsFile;
+
+  /**
+   * @param delegate
+   *          the callable whose TPT API calls are recorded
+   * @param statisticsFile
+   *          the file on the same agent the statistics are appended to or <code>null</code> to only
+   *          print them
+   */
+  public RmiStatisticsCallable(TptApiCallable<S> delegate, @CheckForNull FilePath statisticsFile) {
+    this.delegate = delegate;
+    this.statisticsFile = statisticsFile;
+  }
+
+  @Override
+  public S call() throws InterruptedException {
+    RmiStatistics statistics = new RmiStatistics();
+    RmiStatistics.setCurrent(statistics);
+    long start = System.currentTimeMillis();
+    try {
+      return delegate.call();
+    } finally {
+      RmiStatistics.setCurrent(null);
+      report(statistics, System.currentTimeMillis() - start);
+    }
+  }
+
+  private void report(RmiStatistics statistics, long duration) {
+    TptLogger logger = delegate.getLogger();
+    String title = delegate.getClass().getSimpleName() + ": " + statistics.getCallCount()
+        + " TPT API calls in " + duration + " ms";
+    String table = statistics.toTable();
+    logger.info(title + "\n" + table);
+    if (statisticsFile == null) {
+      return;
+    }
+    // the callable is executed on the agent the file belongs to
+    Path path = Paths.get(statisticsFile.getRemote());
+    try {
+      Files.createDirectories(path.toAbsolutePath().getParent());
+      Files.write(path, (title + "\n" + table + "\n").getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      logger.error("Could not write TPT API call statistics to " + path + ": " + e.getMessage());
+    }
+  }
+
+}
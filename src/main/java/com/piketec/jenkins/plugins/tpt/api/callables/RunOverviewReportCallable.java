@@ -100,14 +100,12 @@ public class RunOverviewReportCallable extends TptApiCallable<Boolean> {
       }
 
       ExecutionStatus execStatus = api.reGenerateOverviewReport(executionConfig);
-      while (execStatus.isRunning() || execStatus.isPending()) {
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          execStatus.cancel();
-          return false;
-        }
+      try {
+        new ExecutionMonitor(execStatus, logger, null, true).join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        execStatus.cancel();
+        return false;
       }
       executionConfig.setDataDirPath(oldTestDataFile);
       executionConfig.setReportDirPath(oldReportDir);
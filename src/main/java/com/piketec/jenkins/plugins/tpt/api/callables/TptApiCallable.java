@@ -44,6 +44,10 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
 
   private static final long serialVersionUID = 1L;
 
+  private static final long FIRST_READINESS_POLL_DELAY = 500;
+
+  private static final long MAX_READINESS_POLL_DELAY = 5000;
+
   private TaskListener listener;
 
   private int tptPort;
@@ -98,13 +102,21 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
   }
 
   /**
-   * Only returns the TPT API if TPT is already running. Otherwise it returns null.
+   * Only returns the TPT API if TPT is already running. Otherwise it returns null. A connection
+   * that has already been established on this agent is reused.
    * 
    * @return the handle to the api
    */
   protected @Nullable TptApi getApiIfTptIsOpen() {
+    TptApi api = TptApiServerPool.getApi(getHostName(), tptPort, tptBindingName);
+    if (api != null) {
+      getLogger().info("Reusing connection to running TPT.");
+      return RmiStatistics.track(api);
+    }
     try {
-      return connectToTPT();
+      api = connectToTPT();
+      TptApiServerPool.putApi(getHostName(), tptPort, tptBindingName, api);
+      return RmiStatistics.track(api);
     } catch (RemoteException | NotBoundException e) {
       // That's fine, TPT is not running.
       TptLogger logger = getLogger();
@@ -181,11 +193,12 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
       builder = new ProcessBuilder(cmd);
 
     }
-    logger.info("Waiting " + startupWaitTime / 1000 + "s for TPT to start.");
+    logger.info("Waiting up to " + startupWaitTime / 1000 + "s for TPT to start.");
     TPTProcessOutputReaderThread outputThread = null;
     TPTProcessOutputReaderThread errorThread = null;
+    Process p;
     try {
-      Process p = builder.start();
+      p = builder.start();
       outputThread = new TPTProcessOutputReaderThread(p.getInputStream(), false, logger);
       errorThread = new TPTProcessOutputReaderThread(p.getErrorStream(), true, logger);
     } catch (IOException e) {
@@ -193,7 +206,29 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
       return false;
     }
     try {
-      Thread.sleep(startupWaitTime);
+      // poll with growing delays until TPT is ready, the process died or the wait time is over
+      long startTime = System.currentTimeMillis();
+      long delay = FIRST_READINESS_POLL_DELAY;
+      while (true) {
+        long remaining = startupWaitTime - (System.currentTimeMillis() - startTime);
+        if (remaining <= 0) {
+          logger.warn("TPT did not report to be ready within " + startupWaitTime / 1000
+              + "s. Trying to use it anyway.");
+          break;
+        }
+        Thread.sleep(Math.min(delay, remaining));
+        // a launcher might exit normally after starting TPT, so only an error exit is fatal
+        if (!p.isAlive() && p.exitValue() != 0) {
+          logger.error("TPT process terminated during start up with exit code " + p.exitValue());
+          return false;
+        }
+        if (isTptReady()) {
+          logger.info(
+              "TPT is ready after " + (System.currentTimeMillis() - startTime) / 1000 + "s.");
+          break;
+        }
+        delay = Math.min(delay * 2, MAX_READINESS_POLL_DELAY);
+      }
     } finally {
       outputThread.stopOutputForwarding();
       errorThread.stopOutputForwarding();
@@ -203,19 +238,54 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
   }
 
   /**
-   * Open the given TPT Project via the TPT API
+   * Checks without logging if the TPT API is bound and TPT has finished its start up.
+   * 
+   * @return <code>true</code> if TPT is ready to be used via API
+   */
+  private boolean isTptReady() {
+    try {
+      Registry registry = LocateRegistry.getRegistry(getHostName(), tptPort);
+      TptApi remoteApi = (TptApi)registry.lookup(tptBindingName);
+      return remoteApi.isReady();
+    } catch (RemoteException | NotBoundException e) {
+      // not started yet
+      return false;
+    }
+  }
+
+  /**
+   * Open the given TPT Project via the TPT API. If the project has already been opened on this
+   * agent and the file has not been modified since, the open project is reused. An open project
+   * that might be outdated is closed and opened again.
    */
   @CheckForNull
   Project getOpenProject(TptLogger logger, TptApi api, FilePath tptFilePath) {
     // Open the TPT Project via the TPT-API
     OpenResult openProject = null;
+    File file = new File(tptFilePath.getRemote());
     try {
-      openProject = api.openProject(new File(tptFilePath.getRemote()));
+      for (Project project : api.getOpenProjects()) {
+        if (!file.equals(project.getFile())) {
+          continue;
+        }
+        if (TptApiServerPool.isUpToDate(api, file)) {
+          logger.info("Reusing already opened project " + file.getName());
+          return project;
+        }
+        logger.info("Close project " + file.getName() + " because it might be outdated.");
+        project.closeProject();
+        TptApiServerPool.removeProject(api, file);
+        break;
+      }
+      long lastModified = file.lastModified();
+      openProject = api.openProject(file);
       if (openProject.getProject() == null) {
         logger.error("Could not open project:\n" + Utils.toString(openProject.getLogs(), "\n"));
         return null;
       }
-      return openProject.getProject();
+      TptApiServerPool.putProject(api, file, lastModified);
+      // the open result is serialized, so its project is not instrumented yet
+      return RmiStatistics.track(openProject.getProject());
     } catch (RemoteException e) {
       logger.error("RemoteException: " + e.getMessage());
       return null;
@@ -240,6 +310,7 @@ public abstract class TptApiCallable<S> extends MasterToSlaveCallable<S, Interru
         }
         logger.info("Close project " + tptFile.getName());
         project.closeProject();
+        TptApiServerPool.removeProject(api, file);
         return true;
       }
     } catch (RemoteException | ApiException e) {
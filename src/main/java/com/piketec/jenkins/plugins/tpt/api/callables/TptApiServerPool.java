@@ -0,0 +1,163 @@
+package com.piketec.jenkins.plugins.tpt.api.callables;
+
+import java.io.File;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import com.piketec.tpt.api.TptApi;
+
+/**
+ * Agent side registry of the TPT API servers the plugin is connected to and the projects opened in
+ * them. The registry lives as long as the agent, so builds and retries executed on the same agent
+ * can reuse a running TPT and an already opened project instead of starting TPT and loading the
+ * project again.
+ */
+final class TptApiServerPool {
+
+  private static final Map<String, TptApiServer> servers = new HashMap<>();
+
+  private TptApiServerPool() {
+  }
+
+  private static String getKey(String hostName, int tptPort, String tptBindingName) {
+    return hostName + ":" + tptPort + "/" + tptBindingName;
+  }
+
+  /**
+   * Returns the cached API connection if the TPT API server is still reachable. Dead connections
+   * are removed from the pool.
+   * 
+   * @param hostName
+   *          The host name of the RMI registry
+   * @param tptPort
+   *          The port of the RMI registry
+   * @param tptBindingName
+   *          The RMI binding name for TPT
+   * @return the cached API connection or <code>null</code> if there is no usable one
+   */
+  @CheckForNull
+  static TptApi getApi(String hostName, int tptPort, String tptBindingName) {
+    TptApiServer server;
+    synchronized (TptApiServerPool.class) {
+      server = servers.get(getKey(hostName, tptPort, tptBindingName));
+    }
+    if (server == null) {
+      return null;
+    }
+    try {
+      // cheap call to check if the server is still alive
+      server.api.isReady();
+      return server.api;
+    } catch (RemoteException e) {
+      remove(hostName, tptPort, tptBindingName, server);
+      return null;
+    }
+  }
+
+  /**
+   * Adds a new API connection to the pool. Projects remembered for a previous connection with the
+   * same settings are forgotten.
+   * 
+   * @param hostName
+   *          The host name of the RMI registry
+   * @param tptPort
+   *          The port of the RMI registry
+   * @param tptBindingName
+   *          The RMI binding name for TPT
+   * @param api
+   *          the API connection
+   */
+  static synchronized void putApi(String hostName, int tptPort, String tptBindingName,
+                                  TptApi api) {
+    String key = getKey(hostName, tptPort, tptBindingName);
+    TptApiServer server = servers.get(key);
+    if (server == null || server.api != api) {
+      servers.put(key, new TptApiServer(api));
+    }
+  }
+
+  private static synchronized void remove(String hostName, int tptPort, String tptBindingName,
+                                          TptApiServer server) {
+    String key = getKey(hostName, tptPort, tptBindingName);
+    if (servers.get(key) == server) {
+      servers.remove(key);
+    }
+  }
+
+  /**
+   * Checks if the given file has not been modified since it has been opened via
+   * {@link #putProject(TptApi, File, long)}.
+   * 
+   * @param api
+   *          the API connection the project was opened with
+   * @param file
+   *          the TPT file
+   * @return <code>true</code> if the opened project still matches the file
+   */
+  static synchronized boolean isUpToDate(TptApi api, File file) {
+    TptApiServer server = getServer(api);
+    Long lastModified = server == null ? null : server.projects.get(file.getAbsolutePath());
+    return lastModified != null && lastModified == file.lastModified();
+  }
+
+  /**
+   * Remembers the modification time of a freshly opened project file.
+   * 
+   * @param api
+   *          the API connection the project was opened with
+   * @param file
+   *          the TPT file
+   * @param lastModified
+   *          the modification time of the file before it has been opened
+   */
+  static synchronized void putProject(TptApi api, File file, long lastModified) {
+    TptApiServer server = getServer(api);
+    if (server != null) {
+      server.projects.put(file.getAbsolutePath(), lastModified);
+    }
+  }
+
+  /**
+   * Forgets the project opened for the given file, e.g. because it has been closed.
+   * 
+   * @param api
+   *          the API connection the project was opened with
+   * @param file
+   *          the TPT file
+   */
+  static synchronized void removeProject(TptApi api, File file) {
+    TptApiServer server = getServer(api);
+    if (server != null) {
+      server.projects.remove(file.getAbsolutePath());
+    }
+  }
+
+  @CheckForNull
+  private static TptApiServer getServer(TptApi api) {
+    // the given connection might be instrumented by RmiStatistics
+    Object unwrapped = RmiStatistics.unwrap(api);
+    for (TptApiServer server : servers.values()) {
+      if (server.api == unwrapped) {
+        return server;
+      }
+    }
+    return null;
+  }
+
+  private static class TptApiServer {
+
+    private final TptApi api;
+
+    // absolute path of opened TPT file -> modification time of the file when it was opened
+    private final Map<String, Long> projects = new HashMap<>();
+
+    TptApiServer(TptApi api) {
+      this.api = api;
+    }
+
+  }
+
+}
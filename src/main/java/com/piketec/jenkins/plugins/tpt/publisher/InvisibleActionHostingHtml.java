@@ -77,9 +77,17 @@ public abstract class InvisibleActionHostingHtml extends InvisibleAction {
         jenkinsConfigId);
   }
 
+  /**
+   * @return The path to the zip archive of the report, only existing if the report has been packed
+   */
+  protected File pathToReportPack() {
+    return TPTReportUtils.getReportPack(TPTReportUtils.getPikeTecDir(parentPage.getBuild()),
+        jenkinsConfigId);
+  }
+
   /**
    * This method is called when an InvisibleActionHostingHtml object is created. It displays the
-   * "index.html"
+   * "index.html". A packed report is served directly from its zip archive.
    * 
    * @param req
    *          The request
@@ -94,6 +102,11 @@ public abstract class InvisibleActionHostingHtml extends InvisibleAction {
   public void doDynamic(StaplerRequest req, StaplerResponse rsp)
       throws IOException, ServletException {
     getParentPage().getBuild().checkPermission(Job.READ);
+    File pathToReportPack = pathToReportPack();
+    if (pathToReportPack.isFile()) {
+      new ReportPackBrowser(pathToReportPack).generateResponse(req, rsp, this);
+      return;
+    }
     File pathToHtml = pathToHtml();
     DirectoryBrowserSupport dbs = new DirectoryBrowserSupport(this, new FilePath(pathToHtml),
         "TPT Report", "clipboard.png", false);
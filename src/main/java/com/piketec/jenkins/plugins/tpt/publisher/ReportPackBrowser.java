@@ -0,0 +1,319 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt.publisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.servlet.ServletException;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import hudson.Extension;
+import hudson.model.DirectoryBrowserSupport;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import jenkins.util.SystemProperties;
+
+/**
+ * Serves the files of a TPT report that is stored as one zip archive in the build directory. The
+ * requested entries are streamed from the archive, nothing is extracted. Like
+ * {@link DirectoryBrowserSupport} it serves the path below the URL of the action it is used by.
+ * <p>
+ * The content of a published report never changes, so every entry gets an ETag derived from its
+ * checksum and may be cached by the browser. Requests for an unchanged entry are answered with
+ * <code>304 Not Modified</code>.
+ * </p>
+ * <p>
+ * The archives of the recently viewed reports are kept open, so the central directory of an archive
+ * is not read again for every file a page loads. An archive is opened again if it has been
+ * modified and closed when its build is deleted.
+ * </p>
+ */
+public class ReportPackBrowser implements HttpResponse {
+
+  /**
+   * How long a browser may use a cached entry without revalidating it, in seconds.
+   */
+  private static final int MAX_AGE = 24 * 60 * 60;
+
+  /**
+   * How many archives are kept open at most.
+   */
+  private static final int MAX_OPEN_PACKS = 16;
+
+  // path of the archive -> open archive, least recently used first
+  private static final Map<String, OpenPack> openPacks = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final File pack;
+
+  private String indexFileName = "index.html";
+
+  /**
+   * @param pack
+   *          the zip archive containing the report
+   */
+  public ReportPackBrowser(File pack) {
+    this.pack = pack;
+  }
+
+  /**
+   * Set the name of the entry that is served if a directory is requested.
+   * 
+   * @param indexFileName
+   *          The name of the index file, "index.html" by default
+   */
+  public void setIndexFileName(String indexFileName) {
+    this.indexFileName = indexFileName;
+  }
+
+  @Override
+  public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node)
+      throws IOException, ServletException {
+    String path = req.getRestOfPath().replace('\\', '/');
+    while (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+    if (path.isEmpty() && !req.getRequestURI().endsWith("/")) {
+      // relative links of the report only work below a directory URL
+      rsp.sendRedirect2(req.getRequestURI() + "/");
+      return;
+    }
+    String entryName = path.isEmpty() || path.endsWith("/") ? path + indexFileName : path;
+    OpenPack openPack = open(pack);
+    try {
+      ZipFile zip = openPack.zip;
+      ZipEntry entry = zip.getEntry(entryName);
+      if (entry == null || entry.isDirectory()) {
+        if (zip.getEntry(entryName + "/" + indexFileName) != null) {
+          rsp.sendRedirect2(req.getRequestURI() + "/");
+        } else {
+          rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+        }
+        return;
+      }
+      String etag = "\"" + Long.toHexString(entry.getCrc()) + "-" + entry.getSize() + "\"";
+      setHeaders(rsp, etag);
+      if (etag.equals(req.getHeader("If-None-Match"))) {
+        rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+        return;
+      }
+      rsp.setContentType(getContentType(req, entryName));
+      rsp.setContentLengthLong(entry.getSize());
+      if ("HEAD".equals(req.getMethod())) {
+        return;
+      }
+      try (InputStream in = zip.getInputStream(entry)) {
+        IOUtils.copy(in, rsp.getOutputStream());
+      }
+    } finally {
+      close(openPack);
+    }
+  }
+
+  /**
+   * Reads a text file of the report.
+   * 
+   * @param entryName
+   *          The path of the file inside of the report
+   * @return the UTF-8 decoded content of the file
+   * @throws IOException
+   *           If the archive could not be read or does not contain the file
+   */
+  public String readEntry(String entryName) throws IOException {
+    OpenPack openPack = open(pack);
+    try {
+      ZipEntry entry = openPack.zip.getEntry(entryName);
+      if (entry == null) {
+        throw new IOException("There is no \"" + entryName + "\" in \"" + pack + "\"");
+      }
+      try (InputStream in = openPack.zip.getInputStream(entry)) {
+        return IOUtils.toString(in, StandardCharsets.UTF_8);
+      }
+    } finally {
+      close(openPack);
+    }
+  }
+
+  /**
+   * Returns the open archive, opens it if it is not open yet or has been modified since it has
+   * been opened. Every call has to be followed by a call of {@link #close(OpenPack)}.
+   */
+  private static synchronized OpenPack open(File pack) throws IOException {
+    String key = pack.getAbsolutePath();
+    long lastModified = pack.lastModified();
+    OpenPack openPack = openPacks.get(key);
+    if (openPack != null && openPack.lastModified != lastModified) {
+      evict(openPacks.remove(key));
+      openPack = null;
+    }
+    if (openPack == null) {
+      openPack = new OpenPack(new ZipFile(pack), lastModified);
+      openPacks.put(key, openPack);
+      Iterator<OpenPack> leastRecentlyUsed = openPacks.values().iterator();
+      while (openPacks.size() > MAX_OPEN_PACKS) {
+        OpenPack eldest = leastRecentlyUsed.next();
+        leastRecentlyUsed.remove();
+        evict(eldest);
+      }
+    }
+    openPack.users++;
+    return openPack;
+  }
+
+  /**
+   * Closes the archive if it has been evicted from the open archives and is not used anymore.
+   */
+  private static synchronized void close(OpenPack openPack) throws IOException {
+    openPack.users--;
+    if (openPack.evicted && openPack.users == 0) {
+      openPack.zip.close();
+    }
+  }
+
+  private static void evict(OpenPack openPack) {
+    openPack.evicted = true;
+    if (openPack.users == 0) {
+      try {
+        openPack.zip.close();
+      } catch (IOException e) {
+        // NOP, nothing is read from the archive anymore
+      }
+    }
+  }
+
+  /**
+   * Closes the archives in the given directory, so the directory can be deleted.
+   */
+  private static synchronized void closeAll(File dir) {
+    String prefix = dir.getAbsolutePath() + File.separator;
+    Iterator<Map.Entry<String, OpenPack>> iterator = openPacks.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, OpenPack> entry = iterator.next();
+      if (entry.getKey().startsWith(prefix)) {
+        iterator.remove();
+        evict(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Serves a generated page instead of an entry of the archive. Browsers have to revalidate the
+   * page on every request, but only get it again if its content changed.
+   * 
+   * @param req
+   *          The request
+   * @param rsp
+   *          The response
+   * @param html
+   *          The content of the page
+   * @throws IOException
+   *           If an IO error occures
+   */
+  public static void serveHtml(StaplerRequest req, StaplerResponse rsp, String html)
+      throws IOException {
+    byte[] content = html.getBytes(StandardCharsets.UTF_8);
+    String etag = "\"" + Integer.toHexString(html.hashCode()) + "-" + content.length + "\"";
+    setSecurityHeaders(rsp);
+    rsp.setHeader("ETag", etag);
+    rsp.setHeader("Cache-Control", "private, no-cache");
+    if (etag.equals(req.getHeader("If-None-Match"))) {
+      rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    rsp.setContentType("text/html;charset=UTF-8");
+    rsp.setContentLengthLong(content.length);
+    try (OutputStream out = rsp.getOutputStream()) {
+      out.write(content);
+    }
+  }
+
+  private void setHeaders(StaplerResponse rsp, String etag) {
+    setSecurityHeaders(rsp);
+    rsp.setHeader("ETag", etag);
+    // the report is only visible to users with read permission, shared caches must not store it
+    rsp.setHeader("Cache-Control", "private, max-age=" + MAX_AGE);
+    rsp.setDateHeader("Last-Modified", pack.lastModified());
+  }
+
+  /**
+   * Applies the same content security policy as {@link DirectoryBrowserSupport} does for the
+   * exploded reports.
+   */
+  private static void setSecurityHeaders(StaplerResponse rsp) {
+    String csp = SystemProperties.getString(DirectoryBrowserSupport.CSP_PROPERTY_NAME,
+        DirectoryBrowserSupport.DEFAULT_CSP_VALUE);
+    if (!csp.trim().isEmpty()) {
+      rsp.setHeader("Content-Security-Policy", csp);
+    }
+    rsp.setHeader("X-Content-Type-Options", "nosniff");
+  }
+
+  private static String getContentType(StaplerRequest req, String entryName) {
+    String contentType = req.getServletContext().getMimeType(entryName);
+    return contentType == null ? "application/octet-stream" : contentType;
+  }
+
+  /**
+   * An open archive and the number of requests reading from it.
+   */
+  private static final class OpenPack {
+
+    private final ZipFile zip;
+
+    private final long lastModified;
+
+    private int users = 0;
+
+    private boolean evicted = false;
+
+    private OpenPack(ZipFile zip, long lastModified) {
+      this.zip = zip;
+      this.lastModified = lastModified;
+    }
+
+  }
+
+  /**
+   * Closes the open archives of a build before the build directory is deleted.
+   */
+  @Extension
+  public static final class PackClosingRunListener extends RunListener<Run< ? , ? >> {
+
+    @Override
+    public void onDeleted(Run< ? , ? > run) {
+      closeAll(run.getRootDir());
+    }
+
+  }
+
+}
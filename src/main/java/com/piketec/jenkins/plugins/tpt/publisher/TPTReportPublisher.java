@@ -23,12 +23,22 @@ package com.piketec.jenkins.plugins.tpt.publisher;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -38,10 +48,13 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.xml.sax.SAXException;
 
+import com.piketec.jenkins.plugins.tpt.FileManifest;
 import com.piketec.jenkins.plugins.tpt.InvisibleActionTPTExecution;
 import com.piketec.jenkins.plugins.tpt.Publish;
+import com.piketec.jenkins.plugins.tpt.TarTransfer;
 import com.piketec.jenkins.plugins.tpt.TptLogger;
 import com.piketec.jenkins.plugins.tpt.Utils;
 
@@ -58,6 +71,8 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jenkins.tasks.SimpleBuildStep;
 
 /**
@@ -67,16 +82,39 @@ import jenkins.tasks.SimpleBuildStep;
  */
 public class TPTReportPublisher extends Recorder implements SimpleBuildStep {
 
+  private static final int MAX_REPORT_COPY_THREADS = 4;
+
+  private boolean packReports = DescriptorImpl.getDefaultPackReports();
+
   @DataBoundConstructor
   public TPTReportPublisher() {
     // NOP
   }
 
+  /**
+   * @return if the report of each configuration is stored as one zip archive instead of a directory
+   */
+  public boolean isPackReports() {
+    return packReports;
+  }
+
+  /**
+   * @param packReports
+   *          if the report of each configuration is stored as one zip archive instead of a
+   *          directory
+   */
+  @DataBoundSetter
+  public void setPackReports(boolean packReports) {
+    this.packReports = packReports;
+  }
+
   /**
    * Creates the directories on the build directory, loops over all JenkinsConfigurations and
    * extract from each one the data from the "test_summary.xml". Then it sets the failed tests and
    * finally it creates the TPTReportPage action . (Thats the one who is displaying the files,
-   * piechart and failed tests)
+   * piechart and failed tests). The report directories are copied concurrently while the test
+   * results are parsed. If the reports are packed, each report directory is stored as one zip
+   * archive instead.
    */
   @Override
   public void perform(Run< ? , ? > build, FilePath workspace, EnvVars env, Launcher launcher,
@@ -106,42 +144,86 @@ public class TPTReportPublisher extends Recorder implements SimpleBuildStep {
       }
     }
 
-    for (InvisibleActionTPTExecution cfg : jenkinsConfigurationsToPublishForThisWorkspace) {
-      // make file in build and copy report dir
-      File dirExConfig = TPTReportUtils.getReportDir(piketectptDir, cfg.getId());
-      if (!dirExConfig.mkdirs()) {
-        throw new IOException(
-            "Could not create directory \"" + dirExConfig.getAbsolutePath() + "\"");
-      }
-      FilePath reportDir = new FilePath(workspace, cfg.getReportDir());
-      FilePath testDataDir = new FilePath(workspace, cfg.getTestDataDir());
-      String tptFileName = FilenameUtils.getBaseName(cfg.getTptFile());
-      if (reportDir.exists()) {
-        Utils.copyRecursive(reportDir, new FilePath(dirExConfig), logger);
-      }
-      FilePath reportXML = new FilePath(testDataDir, "test_summary.xml");
-      if (reportXML.exists()) {
-        TPTFile newTPTFile = new TPTFile(tptFileName, cfg.getConfiguration(), cfg.getId());
-        // get the remote path, then cut the path and get just what is needed (the last part),
-        // see getLinkToFailedReport() in TPTReportSAXHandler.
-        // Because of the GenerateOverviewReport bug, we should check if there are
-        // testcase_information.xml, if there are not any of them, pass a flag to the parser.
-        boolean isFileCorrupt = checkForTestCaseInformation(testDataDir);
-        parse(reportXML, newTPTFile, failedTests, reportDir.getRemote(), cfg.getConfiguration(),
-            logger, isFileCorrupt);
-        tptFiles.add(newTPTFile);
-      } else {
-        logger.error("There is no test_summary.xml for the file \"" + tptFileName
-            + "\". It won't be published ");
-        continue;
+    Run< ? , ? > previousBuild = build.getPreviousBuild();
+    File previousPiketectptDir =
+        previousBuild == null ? null : TPTReportUtils.getPikeTecDir(previousBuild);
+    ExecutorService copyPool = Executors.newFixedThreadPool(
+        Math.min(MAX_REPORT_COPY_THREADS, jenkinsConfigurationsToPublishForThisWorkspace.size()),
+        new NamingThreadFactory(new DaemonThreadFactory(), "TPT report copy"));
+    try {
+      List<Future<Void>> reportCopies = new ArrayList<>();
+      for (InvisibleActionTPTExecution cfg : jenkinsConfigurationsToPublishForThisWorkspace) {
+        // make file in build and copy report dir
+        final File dirExConfig = TPTReportUtils.getReportDir(piketectptDir, cfg.getId());
+        if (!packReports && !dirExConfig.mkdirs()) {
+          throw new IOException(
+              "Could not create directory \"" + dirExConfig.getAbsolutePath() + "\"");
+        }
+        final FilePath reportDir = new FilePath(workspace, cfg.getReportDir());
+        FilePath testDataDir = new FilePath(workspace, cfg.getTestDataDir());
+        String tptFileName = FilenameUtils.getBaseName(cfg.getTptFile());
+        if (packReports && reportDir.exists()) {
+          final File packExConfig = TPTReportUtils.getReportPack(piketectptDir, cfg.getId());
+          reportCopies.add(copyPool.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException, InterruptedException {
+              packReport(reportDir, packExConfig, logger);
+              return null;
+            }
+          }));
+        } else if (reportDir.exists()) {
+          final File digestsExConfig = TPTReportUtils.getReportDigests(piketectptDir, cfg.getId());
+          final File previousDirExConfig = previousPiketectptDir == null ? null
+              : TPTReportUtils.getReportDir(previousPiketectptDir, cfg.getId());
+          final File previousDigestsExConfig = previousPiketectptDir == null ? null
+              : TPTReportUtils.getReportDigests(previousPiketectptDir, cfg.getId());
+          reportCopies.add(copyPool.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException, InterruptedException {
+              copyReport(reportDir, dirExConfig, digestsExConfig, previousDirExConfig,
+                  previousDigestsExConfig, logger);
+              return null;
+            }
+          }));
+        }
+        FilePath reportXML = new FilePath(testDataDir, "test_summary.xml");
+        if (reportXML.exists()) {
+          TPTFile newTPTFile = new TPTFile(tptFileName, cfg.getConfiguration(), cfg.getId());
+          // get the remote path, then cut the path and get just what is needed (the last part),
+          // see getLinkToFailedReport() in TPTReportSAXHandler.
+          // Because of the GenerateOverviewReport bug, we should check if there are
+          // testcase_information.xml, if there are not any of them, pass a flag to the parser.
+          boolean isFileCorrupt = checkForTestCaseInformation(testDataDir);
+          parse(reportXML, newTPTFile, failedTests, reportDir.getRemote(),
+              cfg.getConfiguration(), logger, isFileCorrupt);
+          tptFiles.add(newTPTFile);
+        } else {
+          logger.error("There is no test_summary.xml for the file \"" + tptFileName
+              + "\". It won't be published ");
+          continue;
+        }
+        // Check if the Testdata dir and the Report are unique, otherwise throw an exception
+        if (uniqueReportDataDir.contains(reportDir) || uniqueTestDataDir.contains(testDataDir)) {
+          throw new IOException("The directory \"" + cfg.getReportDir() + "\" or the directoy \""
+              + cfg.getTestDataDir() + "\" is already used, please choose another one");
+        }
+        uniqueReportDataDir.add(reportDir);
+        uniqueTestDataDir.add(testDataDir);
       }
-      // Check if the Testdata dir and the Report are unique, otherwise throw an exception
-      if (uniqueReportDataDir.contains(reportDir) || uniqueTestDataDir.contains(testDataDir)) {
-        throw new IOException("The directory \"" + cfg.getReportDir() + "\" or the directoy \""
-            + cfg.getTestDataDir() + "\" is already used, please choose another one");
+      // the report directories must be complete before the report page is created
+      for (Future<Void> reportCopy : reportCopies) {
+        try {
+          reportCopy.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof IOException ? (IOException)cause
+              : new IOException("Could not copy report: " + cause.getMessage(), cause);
+        }
       }
-      uniqueReportDataDir.add(reportDir);
-      uniqueTestDataDir.add(testDataDir);
+    } finally {
+      copyPool.shutdownNow();
     }
 
     // Failed Since. Look up test in previous build. If failed there. extract failed since
@@ -177,6 +259,117 @@ public class TPTReportPublisher extends Recorder implements SimpleBuildStep {
     }
   }
 
+  /**
+   * Copies a report directory into the build directory as one archive stream. Files with the same
+   * content as in the copy of the previous build are not transferred but hard linked to the file of
+   * the previous build instead. The digests of the copied files are stored next to the copy, so
+   * the next build compares against them instead of reading the files of this build again.
+   * 
+   * @param reportDir
+   *          the report directory in the workspace
+   * @param targetDir
+   *          the report directory in the build directory
+   * @param digestFile
+   *          the file to store the digests of the report files in
+   * @param previousTargetDir
+   *          the report directory of the same configuration in the previous build's directory or
+   *          <code>null</code> if there is no previous build
+   * @param previousDigestFile
+   *          the digests of the report files of the previous build or <code>null</code> if there
+   *          is no previous build
+   * @param logger
+   *          for dumping messages
+   */
+  private static void copyReport(FilePath reportDir, File targetDir, File digestFile,
+                                 File previousTargetDir, File previousDigestFile,
+                                 TptLogger logger)
+      throws IOException, InterruptedException {
+    FileManifest manifest = FileManifest.of(reportDir, true);
+    List<String> linkedFiles = new ArrayList<>();
+    Map<String, String> previousDigests = readDigests(previousDigestFile);
+    if (previousTargetDir != null && !previousDigests.isEmpty()) {
+      for (FileManifest.Entry entry : manifest.getEntries()) {
+        File previousFile = new File(previousTargetDir, entry.getPath());
+        if (!entry.getDigest().equals(previousDigests.get(entry.getPath()))
+            || previousFile.length() != entry.getSize() || !previousFile.isFile()) {
+          continue;
+        }
+        File file = new File(targetDir, entry.getPath());
+        try {
+          Files.createDirectories(file.getParentFile().toPath());
+          Files.createLink(file.toPath(), previousFile.toPath());
+          linkedFiles.add(entry.getPath());
+        } catch (IOException | UnsupportedOperationException e) {
+          // file system does not support hard links, just copy the remaining files
+          logger.info("Could not link \"" + file + "\": " + e.getMessage());
+          break;
+        }
+      }
+    }
+    int copiedFiles = TarTransfer.copy(reportDir, new FilePath(targetDir), Deflater.BEST_SPEED,
+        linkedFiles, logger);
+    writeDigests(digestFile, manifest);
+    logger.info("Copied " + copiedFiles + " files of report \"" + reportDir.getRemote()
+        + "\", linked " + linkedFiles.size() + " unchanged files of the previous build.");
+  }
+
+  /**
+   * Reads the digests of the report files stored by {@link #writeDigests(File, FileManifest)}.
+   * 
+   * @return the digests by path of the file, empty if the file does not exist, e.g. because the
+   *         build has been published by an older version of the plugin
+   */
+  private static Map<String, String> readDigests(File digestFile) throws IOException {
+    Map<String, String> digests = new HashMap<>();
+    if (digestFile == null || !digestFile.isFile()) {
+      return digests;
+    }
+    for (String line : Files.readAllLines(digestFile.toPath(), StandardCharsets.UTF_8)) {
+      int separator = line.indexOf(' ');
+      if (separator > 0) {
+        digests.put(line.substring(separator + 1), line.substring(0, separator));
+      }
+    }
+    return digests;
+  }
+
+  /**
+   * Stores the digests of the report files, one line "digest path" per file.
+   */
+  private static void writeDigests(File digestFile, FileManifest manifest) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (FileManifest.Entry entry : manifest.getEntries()) {
+      lines.add(entry.getDigest() + " " + entry.getPath());
+    }
+    Files.write(digestFile.toPath(), lines, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Stores a report directory as one zip archive in the build directory. The archive is created on
+   * the agent and streamed to the controller, the files are not extracted.
+   * 
+   * @param reportDir
+   *          the report directory in the workspace
+   * @param pack
+   *          the zip archive in the build directory
+   * @param logger
+   *          for dumping messages
+   */
+  private static void packReport(FilePath reportDir, File pack, TptLogger logger)
+      throws IOException, InterruptedException {
+    // write to a temporary file first, so a failed transfer does not leave a broken archive
+    File tmp = new File(pack.getParentFile(), pack.getName() + ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+      reportDir.zip(out, "**");
+    } catch (IOException | InterruptedException e) {
+      Files.deleteIfExists(tmp.toPath());
+      throw e;
+    }
+    Files.move(tmp.toPath(), pack.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    logger.info("Packed report \"" + reportDir.getRemote() + "\" into \"" + pack.getName()
+        + "\" (" + pack.length() / 1024 + " KiB).");
+  }
+
   private boolean checkForTestCaseInformation(FilePath testDataDir)
       throws IOException, InterruptedException {
     Collection<FilePath> files = new HashSet<>();
@@ -258,6 +451,13 @@ public class TPTReportPublisher extends Recorder implements SimpleBuildStep {
     public String getDisplayName() {
       return "TPT Report";
     }
+
+    /**
+     * @return <code>false</code>
+     */
+    public static boolean getDefaultPackReports() {
+      return false;
+    }
   }
 
   @Override
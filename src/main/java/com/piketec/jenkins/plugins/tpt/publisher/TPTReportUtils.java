@@ -19,6 +19,33 @@ public class TPTReportUtils {
     return new File(baseDir, id);
   }
 
+  /**
+   * Get the report archive that is stored instead of the report directory if the reports are
+   * packed.
+   * 
+   * @param baseDir
+   *          The base directory
+   * @param id
+   *          The unique ID of the configuration to create unique paths
+   * @return the zip file where the report is saved on the machine that runs Jenkins
+   */
+  public static File getReportPack(File baseDir, String id) {
+    return new File(baseDir, id + ".zip");
+  }
+
+  /**
+   * Get the file next to the report directory that lists the content digests of the report files.
+   * 
+   * @param baseDir
+   *          The base directory
+   * @param id
+   *          The unique ID of the configuration to create unique paths
+   * @return the file with the digests of the files in the report directory
+   */
+  public static File getReportDigests(File baseDir, String id) {
+    return new File(baseDir, id + ".digests");
+  }
+
   /**
    * 
    * @param build
@@ -228,6 +228,17 @@ public class TPTTestCase extends InvisibleActionHostingHtml {
   public void doIndex(StaplerRequest req, StaplerResponse rsp)
       throws IOException, ServletException {
     getParentPage().getBuild().checkPermission(Job.READ);
+    File pathToReportPack = pathToReportPack();
+    if (pathToReportPack.isFile()) {
+      if (!req.getRequestURI().endsWith("/")) {
+        rsp.sendRedirect2(req.getRequestURI() + "/");
+        return;
+      }
+      // nothing is written for packed reports, the page is generated for each request
+      String index = new ReportPackBrowser(pathToReportPack).readEntry("index.html");
+      ReportPackBrowser.serveHtml(req, rsp, index.replace("overview.html", reportFile));
+      return;
+    }
     File pathToHtml = pathToHtml();
     // TODO: This is approach is not working with parallel access
     // we simply write a failedTest.html where the page of the right frame is replaced
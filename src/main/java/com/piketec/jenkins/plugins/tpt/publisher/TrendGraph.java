@@ -24,7 +24,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.List;
 
 import javax.servlet.ServletException;
 
@@ -36,12 +35,8 @@ import org.kohsuke.stapler.StaplerResponse;
 
 import com.piketec.jenkins.plugins.tpt.Utils;
 
-import hudson.FilePath;
 import hudson.model.Action;
-import hudson.model.DirectoryBrowserSupport;
 import hudson.model.Job;
-import hudson.model.Result;
-import hudson.model.Run;
 import hudson.util.HttpResponses;
 
 /**
@@ -56,7 +51,7 @@ public class TrendGraph implements Action, StaplerProxy {
 
   private static final String LF = "\n";
 
-  private transient Run< ? , ? > lastSuccessBuild;
+  private static volatile String indexTemplate = null;
 
   private final Job< ? , ? > project;
 
@@ -73,79 +68,20 @@ public class TrendGraph implements Action, StaplerProxy {
   private ArrayList<ResultData> historyData = new ArrayList<>();
 
   /**
-   * Creates a new TrendGraph
+   * Creates a new TrendGraph from the trend index of the project. No build is loaded.
    * 
    * @param project
    *          The Jenkins project this Trendgraph belongs to.
    */
   public TrendGraph(final Job< ? , ? > project) {
     this.project = project;
-    initBuildAndTestCaseResultCounts();
-    setHistoryIterativ();
-  }
-
-  /**
-   * Gets the last successful build and gets the data (passed, inconclusive, error and failed tests)
-   * from there. We need this method although we have the setHistoryIterativ method because in the
-   * setHistoryIterativ method the call actualBuild.getPreviousBuildsOverThreshold doesnt get the
-   * data from actual build, thats why we have a method for the history and this one for the actual
-   * build.
-   */
-  private void initBuildAndTestCaseResultCounts() {
-    lastSuccessBuild = project.getLastSuccessfulBuild();
-    if (lastSuccessBuild == null) {
-      return;
-    }
-    Action tptAction = lastSuccessBuild.getAction(TPTReportPage.class);
-    if (tptAction == null) {
-      return;
-    }
-    this.passed = ((TPTReportPage)tptAction).getPassedCount();
-    this.inconclusive = ((TPTReportPage)tptAction).getInconclusiveCount();
-    this.error = ((TPTReportPage)tptAction).getErrorCount();
-    this.failed = ((TPTReportPage)tptAction).getFailedCount();
-  }
-
-  /**
-   * Regenerates the trend graph. It is called everytime the page is refreshed, this is useful
-   * because when a new build is created we want the graph to update on runtime.
-   */
-  private void refreshTrendGraph() {
-    historyData.clear();
-    setHistoryIterativ();
-    initBuildAndTestCaseResultCounts();
-  }
-
-  /**
-   * Fills the history Data with the data from the last 20 builds.
-   */
-  private void setHistoryIterativ() {
-    if (lastSuccessBuild == null) {
-      return;
-    }
-    Result result = lastSuccessBuild.getResult();
-    if (result == null) {
-      return;
-    }
-    @SuppressWarnings("unchecked")
-    List<Run> builds =
-        (List<Run>)lastSuccessBuild.getPreviousBuildsOverThreshold(20, Result.UNSTABLE);
-    if (result.isBetterOrEqualTo(Result.UNSTABLE)) {
-      builds.add(0, lastSuccessBuild);
-    }
-    for (Run run : builds) {
-      ResultData toAdd = new ResultData();
-      TPTReportPage tptAction = run.getAction(TPTReportPage.class); // is always unique
-      if (tptAction == null) {
-        continue;
-      }
-      toAdd.buildNummer = run.getNumber();
-      toAdd.error = tptAction.getErrorCount();
-      toAdd.passed = tptAction.getPassedCount();
-      toAdd.inconclusive = tptAction.getInconclusiveCount();
-      toAdd.failed = tptAction.getFailedCount();
-      toAdd.total = toAdd.error + toAdd.failed + toAdd.passed + toAdd.inconclusive;
-      historyData.add(toAdd);
+    this.historyData = TrendIndex.get(project).getHistory();
+    if (!historyData.isEmpty()) {
+      ResultData newest = historyData.get(0);
+      this.passed = newest.passed;
+      this.inconclusive = newest.inconclusive;
+      this.error = newest.error;
+      this.failed = newest.failed;
     }
   }
 
@@ -273,8 +209,6 @@ public class TrendGraph implements Action, StaplerProxy {
    *         previous builds.
    */
   public ArrayList<ResultData> getHistoryData() {
-    lastSuccessBuild = project.getLastSuccessfulBuild();
-    refreshTrendGraph();
     return this.historyData;
   }
 
@@ -284,9 +218,8 @@ public class TrendGraph implements Action, StaplerProxy {
   }
 
   /**
-   * This method is called everytime the page is refreshed. It regenerates the json file and
-   * refreshes the graph.
-   * 
+   * Serves the trend graph. The json data is injected into the page in memory, nothing is written
+   * to the build directories. The page is only sent again if the trend index changed.
    * 
    * @param req
    *          The request
@@ -296,69 +229,48 @@ public class TrendGraph implements Action, StaplerProxy {
    *           if the response could not be generated
    * @throws ServletException
    *           if the response could not be generated
-   * @throws InterruptedException
-   *           if the job is cancelled
    */
   // lgtm[jenkins/csrf]
   public void doDynamic(StaplerRequest req, StaplerResponse rsp)
-      throws IOException, ServletException, InterruptedException {
+      throws IOException, ServletException {
     project.checkPermission(Job.READ);
-    // For every refresh the actual build will be updated. If actual build equals null, nothing to
-    // show
-    lastSuccessBuild = project.getLastSuccessfulBuild();
-    refreshTrendGraph();
-    if (lastSuccessBuild == null) {
+    String path = req.getRestOfPath();
+    if (path.equals("")) {
+      throw HttpResponses.forwardToView(this, "index.jelly");
+    }
+    if (path.equals("/utils.js")) {
+      // static resource of the plugin, served and cached by Jenkins
+      rsp.sendRedirect2(req.getContextPath() + "/plugin/piketec-tpt/TrendGraph/utils.js");
       return;
     }
-    generateJson();
-    File buildDir = lastSuccessBuild.getRootDir();
-    DirectoryBrowserSupport dbs = new DirectoryBrowserSupport(this,
-        new FilePath(new File(buildDir.getAbsolutePath() + File.separator + "TrendGraph")),
-        "TPT Report", "/plugin/piketec-tpt/tpt.ico", false);
-
-    if (req.getRestOfPath().equals("")) {
-      throw HttpResponses.forwardToView(this, "index.jelly");
+    if (!path.equals("/index.html")) {
+      rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+      return;
     }
-    dbs.generateResponse(req, rsp, this);
+    // replace the place holder "toReplace" by actual json script
+    String html = getIndexTemplate().replace("toReplace", getResultArray(historyData));
+    ReportPackBrowser.serveHtml(req, rsp, html);
   }
 
   /**
-   * Generates the json file with the historyData.
-   * 
+   * @return the page of the trend graph with the place holder for the json data
    * @throws IOException
-   *           if files could not be created
-   * @throws InterruptedException
-   *           if the job is cancelled
+   *           if the page could not be read from the plugin directory
    */
-  private void generateJson() throws IOException, InterruptedException {
-    File oldIndexHTML =
-        new File(Utils.getTptPluginRootDir(), "TrendGraph" + File.separator + "index.html");
-    File utilsJs =
-        new File(Utils.getTptPluginRootDir(), "TrendGraph" + File.separator + "utils.js");
-
-    File buildDir = lastSuccessBuild.getRootDir();
-
-    File trendGraph = new File(buildDir.getAbsolutePath() + File.separator + "TrendGraph");
-
-    if (!trendGraph.isDirectory() && !trendGraph.mkdirs()) {
-      throw new IOException("Could not create directory \"" + trendGraph.getAbsolutePath() + "\"");
+  private static String getIndexTemplate() throws IOException {
+    String template = indexTemplate;
+    if (template == null) {
+      // the page only changes when the plugin is updated, which needs a restart
+      File indexHTML =
+          new File(Utils.getTptPluginRootDir(), "TrendGraph" + File.separator + "index.html");
+      template = FileUtils.readFileToString(indexHTML, Charset.forName("UTF-8"));
+      indexTemplate = template;
     }
-    if (utilsJs.exists()) {
-      FileUtils.copyFileToDirectory(utilsJs, trendGraph);
-      FileUtils.copyFileToDirectory(oldIndexHTML, trendGraph);
-    }
-    // replace the place holder "toReplace" by actual json script
-    String jsonScript = getResultArray(historyData);
-    String newIndexHTMLWithJson =
-        FileUtils.readFileToString(oldIndexHTML, Charset.forName("UTF-8"));
-    newIndexHTMLWithJson = newIndexHTMLWithJson.replace("toReplace", jsonScript);
-    File newIndexHTML = new File(
-        buildDir.getAbsolutePath() + File.separator + "TrendGraph" + File.separator + "index.html");
-    FileUtils.writeStringToFile(newIndexHTML, newIndexHTMLWithJson, Charset.forName("UTF-8"));
+    return template;
   }
 
   /**
-   * Minor function from generateJson()
+   * Creates the json data of the trend graph
    * 
    * @param data
    *          The data to create the graph from
@@ -384,7 +296,7 @@ public class TrendGraph implements Action, StaplerProxy {
   }
 
   /**
-   * Minor function from generateJson().
+   * Minor function from getResultArray().
    * 
    * @param total
    *          The total number of test cases
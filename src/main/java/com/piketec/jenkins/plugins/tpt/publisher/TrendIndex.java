@@ -0,0 +1,274 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt.publisher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import com.piketec.jenkins.plugins.tpt.TptLogger;
+import com.piketec.jenkins.plugins.tpt.publisher.TrendGraph.ResultData;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * The test result counts of the successful and unstable builds of a job, newest build first. The
+ * index is stored in the job directory and updated once when a build with a TPT report completes
+ * or is deleted, so showing the trend graph does not load any build.
+ * <p>
+ * Jobs without an index file, e.g. jobs whose builds ran with an older version of the plugin, get
+ * their index from the builds once. It is written when the next build completes.
+ * </p>
+ */
+public final class TrendIndex {
+
+  private static final Logger LOGGER = Logger.getLogger(TrendIndex.class.getName());
+
+  private static final String FILE_NAME = "tpt-trend-index.txt";
+
+  /**
+   * The number of builds shown in the trend graph.
+   */
+  static final int HISTORY_SIZE = 21;
+
+  // more builds than shown are kept, so the graph stays complete if builds are deleted
+  @Restricted(NoExternalUse.class)
+  static final int MAX_SIZE = 5 * HISTORY_SIZE;
+
+  private static final Map<Job< ? , ? >, TrendIndex> indexes = new WeakHashMap<>();
+
+  private final List<ResultData> entries;
+
+  @Restricted(NoExternalUse.class)
+  TrendIndex(List<ResultData> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * @param project
+   *          The Jenkins project
+   * @return The trend index of the project
+   */
+  static synchronized TrendIndex get(Job< ? , ? > project) {
+    TrendIndex index = indexes.get(project);
+    if (index == null) {
+      List<ResultData> entries = read(getFile(project));
+      index = new TrendIndex(entries == null ? collect(project) : entries);
+      indexes.put(project, index);
+    }
+    return index;
+  }
+
+  /**
+   * @return The counts of the newest builds, newest build first, at most {@link #HISTORY_SIZE}
+   */
+  synchronized ArrayList<ResultData> getHistory() {
+    return new ArrayList<>(entries.subList(0, Math.min(HISTORY_SIZE, entries.size())));
+  }
+
+  private static File getFile(Job< ? , ? > project) {
+    return new File(project.getRootDir(), FILE_NAME);
+  }
+
+  /**
+   * @return the entries of the index file or <code>null</code> if there is no readable index. A
+   *         broken index is collected from the builds again.
+   */
+  @Restricted(NoExternalUse.class)
+  static List<ResultData> read(File file) {
+    try {
+      List<ResultData> entries = new ArrayList<>();
+      for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+        String[] fields = line.trim().split(" ");
+        if (fields.length != 5) {
+          continue;
+        }
+        ResultData data = new ResultData();
+        data.buildNummer = Integer.parseInt(fields[0]);
+        data.passed = Integer.parseInt(fields[1]);
+        data.inconclusive = Integer.parseInt(fields[2]);
+        data.error = Integer.parseInt(fields[3]);
+        data.failed = Integer.parseInt(fields[4]);
+        data.total = data.passed + data.inconclusive + data.error + data.failed;
+        entries.add(data);
+      }
+      return entries;
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  @Restricted(NoExternalUse.class)
+  void write(File file) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (ResultData data : entries) {
+      sb.append(data.buildNummer).append(' ').append(data.passed).append(' ')
+          .append(data.inconclusive).append(' ').append(data.error).append(' ')
+          .append(data.failed).append('\n');
+    }
+    Path tmp = new File(file.getParentFile(), FILE_NAME + ".tmp").toPath();
+    Files.write(tmp, sb.toString().getBytes(StandardCharsets.UTF_8));
+    Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Collects the counts from the builds like the trend graph did before there was an index.
+   */
+  private static List<ResultData> collect(Job< ? , ? > project) {
+    List<ResultData> entries = new ArrayList<>();
+    Run< ? , ? > lastSuccessBuild = project.getLastSuccessfulBuild();
+    if (lastSuccessBuild == null) {
+      return entries;
+    }
+    List<Run< ? , ? >> builds = new ArrayList<>();
+    builds.add(lastSuccessBuild);
+    builds.addAll(lastSuccessBuild.getPreviousBuildsOverThreshold(MAX_SIZE, Result.UNSTABLE));
+    for (Run< ? , ? > run : builds) {
+      ResultData data = toResultData(run);
+      if (data != null) {
+        entries.add(data);
+      }
+    }
+    return entries;
+  }
+
+  private static ResultData toResultData(Run< ? , ? > run) {
+    TPTReportPage tptAction = run.getAction(TPTReportPage.class);
+    Result result = run.getResult();
+    if (tptAction == null || result == null || !result.isBetterOrEqualTo(Result.UNSTABLE)) {
+      return null;
+    }
+    ResultData data = new ResultData();
+    data.buildNummer = run.getNumber();
+    data.error = tptAction.getErrorCount();
+    data.passed = tptAction.getPassedCount();
+    data.inconclusive = tptAction.getInconclusiveCount();
+    data.failed = tptAction.getFailedCount();
+    data.total = data.error + data.failed + data.passed + data.inconclusive;
+    return data;
+  }
+
+  @Restricted(NoExternalUse.class)
+  synchronized void add(ResultData data, File file) throws IOException {
+    remove(data.buildNummer);
+    int i = 0;
+    while (i < entries.size() && entries.get(i).buildNummer > data.buildNummer) {
+      i++;
+    }
+    entries.add(i, data);
+    if (entries.size() > MAX_SIZE) {
+      entries.subList(MAX_SIZE, entries.size()).clear();
+    }
+    write(file);
+  }
+
+  private synchronized boolean remove(int buildNumber) {
+    for (int i = 0; i < entries.size(); i++) {
+      if (entries.get(i).buildNummer == buildNumber) {
+        entries.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Restricted(NoExternalUse.class)
+  synchronized void removeAndWrite(int buildNumber, File file) throws IOException {
+    if (remove(buildNumber)) {
+      write(file);
+    }
+  }
+
+  /**
+   * Removes a deleted build from the trend index of the project. An index that is not loaded is not
+   * collected for this, only its file is updated.
+   */
+  private static synchronized void removeBuild(Job< ? , ? > project, int buildNumber)
+      throws IOException {
+    File file = getFile(project);
+    TrendIndex index = indexes.get(project);
+    if (index == null) {
+      removeFromFile(buildNumber, file);
+    } else {
+      index.removeAndWrite(buildNumber, file);
+    }
+  }
+
+  @Restricted(NoExternalUse.class)
+  static void removeFromFile(int buildNumber, File file) throws IOException {
+    List<ResultData> entries = read(file);
+    if (entries != null) {
+      new TrendIndex(entries).removeAndWrite(buildNumber, file);
+    }
+  }
+
+  /**
+   * Updates the trend index of a job when one of its builds completes or is deleted.
+   */
+  @Extension
+  public static final class TrendIndexRunListener extends RunListener<Run< ? , ? >> {
+
+    @Override
+    public void onCompleted(Run< ? , ? > run, TaskListener listener) {
+      ResultData data = toResultData(run);
+      if (data == null) {
+        return;
+      }
+      Job< ? , ? > project = run.getParent();
+      try {
+        get(project).add(data, getFile(project));
+      } catch (IOException e) {
+        new TptLogger(listener.getLogger())
+            .warn("Could not update the TPT trend index: " + e.getMessage());
+      }
+    }
+
+    @Override
+    public void onDeleted(Run< ? , ? > run) {
+      Job< ? , ? > project = run.getParent();
+      try {
+        removeBuild(project, run.getNumber());
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING,
+            "Could not update the TPT trend index of " + project.getFullName(), e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014-2025 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.tpt.api.util;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * An {@link AccessIterator} that can deliver several elements per remote call. Iterating over a
+ * plain <code>AccessIterator</code> costs two remote calls per element, one for
+ * {@link #hasNext()} and one for {@link #next()}. A {@link RemoteIterator} created with a batch
+ * size uses {@link #nextBatch(int)} instead if the remote iterator implements this interface, and
+ * falls back to the single element methods otherwise.
+ * 
+ * @param <E>
+ *          the type of elements returned by this iterator
+ * 
+ * @author Copyright (c) 2014-2025 Synopsys Inc. - MIT License (MIT) - All rights reserved
+ */
+public interface BatchAccessIterator<E> extends AccessIterator<E> {
+
+  /**
+   * Get the next elements of the iteration at once.
+   * 
+   * @param maxCount
+   *          the maximal number of elements to return, at least 1
+   * @return the next elements of the iteration in order, at most <code>maxCount</code>. An empty
+   *         list if the iteration has no more elements.
+   * @throws RemoteException
+   *           remote communication problem
+   * 
+   * @see #next()
+   */
+  public List<E> nextBatch(int maxCount) throws RemoteException;
+
+}
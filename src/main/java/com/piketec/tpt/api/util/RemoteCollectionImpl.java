@@ -75,12 +75,34 @@ public class RemoteCollectionImpl<E, X extends AccessCollection<E>> extends Abst
   /**
    * Returns all items in a copy of this collection. Any change to the returned collection is
    * <i>local</i> and will not be sent to TPT.<br>
+   * The items are fetched in chunks of {@link RemoteIterator#DEFAULT_BATCH_SIZE} if TPT supports
+   * it, so this is much faster than iterating over the collection for large collections.
    * 
    * @return all items of this <code>RemoteCollection</code> at once.
    */
   @Override
   public Collection<E> getItems() {
-    return new ArrayList<>(this);
+    ArrayList<E> items = new ArrayList<>();
+    Iterator<E> iterator = prefetchingIterator();
+    while (iterator.hasNext()) {
+      items.add(iterator.next());
+    }
+    return items;
+  }
+
+  /**
+   * Returns an iterator that fetches the items in chunks of
+   * {@link RemoteIterator#DEFAULT_BATCH_SIZE} if TPT supports it. The iterator does not support
+   * {@link Iterator#remove()}.
+   * 
+   * @return a read only iterator over the items of this collection
+   */
+  public Iterator<E> prefetchingIterator() {
+    try {
+      return new RemoteIterator<>(delegate.remoteIterator(), RemoteIterator.DEFAULT_BATCH_SIZE);
+    } catch (RemoteException e) {
+      throw new ApiException(e);
+    }
   }
 
   @Override
@@ -22,13 +22,22 @@ package com.piketec.tpt.api.util;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import com.piketec.tpt.api.ApiException;
 
 /**
  * A wrapper for a {@link AccessIterator} that will catch all {@link RemoteException
  * RemoteExceptions} and rethrows them as {@link ApiException ApiExceptions}.
+ * <p>
+ * If created with a batch size and the delegate is a {@link BatchAccessIterator}, the elements are
+ * fetched in chunks and buffered locally. If the remote side does not support the batch call, the
+ * iterator silently falls back to one element per call. A prefetching iterator does not support
+ * {@link #remove()}, because the remote iterator is already ahead of the last returned element.
+ * </p>
  * 
  * @author Copyright (c) 2014-2025 Synopsys Inc. - MIT License (MIT) - All rights reserved
  * 
@@ -39,8 +48,24 @@ public class RemoteIterator<E> implements Serializable, Iterator<E> {
 
   private static final long serialVersionUID = 2L;
 
+  /**
+   * The number of elements fetched per remote call by prefetching iterators of
+   * {@link RemoteCollectionImpl}.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
   private final AccessIterator<E> delegate;
 
+  private final int batchSize;
+
+  private final ArrayDeque<E> buffer = new ArrayDeque<>();
+
+  private boolean batched;
+
+  private boolean batchSupported = false;
+
+  private boolean exhausted = false;
+
   /**
    * Creates a new <code>ApiIterator</code>.
    * 
@@ -48,12 +73,34 @@ public class RemoteIterator<E> implements Serializable, Iterator<E> {
    *          The <code>RemoteIterator</code> where the method calls will be delgated to.
    */
   public RemoteIterator(AccessIterator<E> delegate) {
+    this(delegate, 1);
+  }
+
+  /**
+   * Creates a new <code>ApiIterator</code> that fetches up to <code>batchSize</code> elements per
+   * remote call if the delegate supports it.
+   * 
+   * @param delegate
+   *          The <code>RemoteIterator</code> where the method calls will be delgated to.
+   * @param batchSize
+   *          The maximal number of elements to fetch at once. A value of 1 or below disables
+   *          prefetching.
+   */
+  public RemoteIterator(AccessIterator<E> delegate, int batchSize) {
     this.delegate = delegate;
+    this.batchSize = batchSize;
+    this.batched = batchSize > 1 && delegate instanceof BatchAccessIterator;
   }
 
   @Override
   public boolean hasNext() {
     try {
+      if (batched) {
+        fetch();
+        if (batched) {
+          return !buffer.isEmpty();
+        }
+      }
       return delegate.hasNext();
     } catch (RemoteException e) {
       throw new ApiException(e);
@@ -63,14 +110,53 @@ public class RemoteIterator<E> implements Serializable, Iterator<E> {
   @Override
   public E next() {
     try {
+      if (batched) {
+        fetch();
+        if (batched) {
+          if (buffer.isEmpty()) {
+            throw new NoSuchElementException();
+          }
+          return buffer.poll();
+        }
+      }
       return delegate.next();
     } catch (RemoteException e) {
       throw new ApiException(e);
     }
   }
 
+  /**
+   * Fills the buffer if it is empty. Disables prefetching if the first batch call fails, e.g.
+   * because the remote side does not implement it.
+   */
+  private void fetch() throws RemoteException {
+    if (!buffer.isEmpty() || exhausted) {
+      return;
+    }
+    List<E> elements;
+    try {
+      elements = ((BatchAccessIterator<E>)delegate).nextBatch(batchSize);
+    } catch (RemoteException e) {
+      if (batchSupported) {
+        throw e;
+      }
+      batched = false;
+      return;
+    }
+    batchSupported = true;
+    if (elements == null || elements.isEmpty()) {
+      exhausted = true;
+    } else {
+      buffer.addAll(elements);
+    }
+  }
+
   @Override
   public void remove() {
+    if (batched) {
+      throw new UnsupportedOperationException(
+          "remove() is not supported by an iterator that prefetches elements");
+    }
     try {
       delegate.remove();
     } catch (RemoteException e) {
@@ -21,7 +21,6 @@
 package com.piketec.tpt.api.util;
 
 import java.rmi.RemoteException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.ListIterator;
@@ -144,11 +143,6 @@ public class RemoteListImpl<E, X extends AccessList<E>> extends RemoteCollection
     throw new UnsupportedOperationException();
   }
 
-  @Override
-  public Collection<E> getItems() {
-    return new ArrayList<>(this);
-  }
-
   @Override
   public RemoteList<E> asIterable() {
     return this;
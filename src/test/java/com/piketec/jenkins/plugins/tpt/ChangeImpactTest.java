@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+class ChangeImpactTest {
+
+  private static final String MAPPING = "# lights and wipers\r\n" //
+      + "src/lights/** = Lights Tests, Common Tests\r\n" //
+      + "src/wipers/** = Wiper Tests,Common Tests\r\n" //
+      + "doc/** =\r\n";
+
+  private final TptLogger logger = new TptLogger(new PrintStream(new ByteArrayOutputStream()));
+
+  @Test
+  void affectedTestSetsOfAllChangesAreCombined() {
+    assertEquals(new HashSet<>(Arrays.asList("Lights Tests", "Wiper Tests", "Common Tests")),
+        ChangeImpact.getAffectedTestSetsOrGroups(
+            Arrays.asList("src/lights/front/Light.c", "src/wipers/Wiper.c"), MAPPING, logger));
+  }
+
+  @Test
+  void changesWithoutTestSetsSelectNothing() {
+    assertEquals(Collections.emptySet(), ChangeImpact
+        .getAffectedTestSetsOrGroups(Arrays.asList("doc/manual.md"), MAPPING, logger));
+  }
+
+  @Test
+  void uncoveredChangeSelectsAllTestCases() {
+    assertNull(ChangeImpact.getAffectedTestSetsOrGroups(
+        Arrays.asList("src/lights/Light.c", "src/engine/Engine.c"), MAPPING, logger));
+  }
+
+  @Test
+  void backslashesInPathsAreSeparators() {
+    assertEquals(new HashSet<>(Arrays.asList("Wiper Tests", "Common Tests")), ChangeImpact
+        .getAffectedTestSetsOrGroups(Arrays.asList("src\\wipers\\Wiper.c"), MAPPING, logger));
+  }
+
+  @Test
+  void commentsAndInvalidLinesAreIgnored() {
+    String mapping = "# src/** = Commented Tests\n" //
+        + "src/**\n" //
+        + "= Orphaned Tests\n" //
+        + "\n" //
+        + "  src/** = All Tests  \n";
+    assertEquals(Collections.singleton("All Tests"), ChangeImpact
+        .getAffectedTestSetsOrGroups(Arrays.asList("src/Main.c"), mapping, logger));
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JUnitMergeCallableTest {
+
+  @TempDir
+  Path tmp;
+
+  private Path testDataDir;
+
+  private Path fragmentDir;
+
+  private Path jUnitXmlFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    testDataDir = Files.createDirectories(tmp.resolve("testdata"));
+    fragmentDir = Files.createDirectories(tmp.resolve("fragments"));
+    jUnitXmlFile = tmp.resolve("junit.xml");
+  }
+
+  @Test
+  void completeFragmentsAreMerged() throws Exception {
+    writeSummary();
+    writeResult("1");
+    writeResult("2");
+    writeFragment("worker1.xml", "<testcase classname=\"cfg\" name=\"tc1\" time=\"1.0\"/>");
+    writeFragment("worker2.xml", "<testcase classname=\"cfg\" name=\"tc2\" time=\"2.0\">"
+        + "<error message=\"failed\"/></testcase>");
+    assertEquals(2, merge());
+    String jUnitXml = new String(Files.readAllBytes(jUnitXmlFile), StandardCharsets.UTF_8);
+    assertTrue(jUnitXml.contains("tc1"));
+    assertTrue(jUnitXml.contains("tc2"));
+  }
+
+  @Test
+  void missingFragmentIsNotMerged() throws Exception {
+    writeSummary();
+    writeResult("1");
+    writeResult("2");
+    writeFragment("worker1.xml", "<testcase classname=\"cfg\" name=\"tc1\" time=\"1.0\"/>");
+    assertEquals(-1, merge());
+    assertFalse(Files.exists(jUnitXmlFile));
+  }
+
+  @Test
+  void fragmentsWithoutResultsAreNotMerged() throws Exception {
+    writeSummary();
+    writeResult("1");
+    writeFragment("worker1.xml", "<testcase classname=\"cfg\" name=\"tc1\" time=\"1.0\"/>"
+        + "<testcase classname=\"cfg\" name=\"tc2\" time=\"1.0\"/>");
+    assertEquals(-1, merge());
+    assertFalse(Files.exists(jUnitXmlFile));
+  }
+
+  @Test
+  void nothingIsMergedWithoutFragments() throws Exception {
+    writeSummary();
+    writeResult("1");
+    assertEquals(-1, merge());
+    assertFalse(Files.exists(jUnitXmlFile));
+  }
+
+  @Test
+  void nothingIsMergedWithoutTestSummary() throws Exception {
+    writeResult("1");
+    writeFragment("worker1.xml", "<testcase classname=\"cfg\" name=\"tc1\" time=\"1.0\"/>");
+    assertEquals(-1, merge());
+    assertFalse(Files.exists(jUnitXmlFile));
+  }
+
+  private int merge() throws Exception {
+    return new JUnitMergeCallable("test.tpt", fragmentDir.toString(), jUnitXmlFile.toString())
+        .invoke(testDataDir.toFile(), null);
+  }
+
+  private void writeSummary() throws IOException {
+    write(testDataDir.resolve("test_summary.xml"),
+        "<Summary><Header ExecutionConfig=\"cfg\"/></Summary>");
+  }
+
+  private void writeResult(String testCaseDir) throws IOException {
+    write(Files.createDirectories(testDataDir.resolve(testCaseDir))
+        .resolve(JUnitConversionCallable.TESTCASE_INFORMATION_XML), "<TestcaseInformation/>");
+  }
+
+  private void writeFragment(String name, String testcases) throws IOException {
+    write(fragmentDir.resolve(name), "<testsuite>" + testcases + "</testsuite>");
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
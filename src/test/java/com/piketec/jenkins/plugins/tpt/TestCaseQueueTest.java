@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class TestCaseQueueTest {
+
+  @Test
+  void handsOutBatchesInOrder() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a", "b", "c", "d", "e"), 2);
+    assertEquals(3, queue.getBatchCount());
+    assertEquals(Arrays.asList("a", "b"), queue.nextBatch().getTestCases());
+    assertEquals(Arrays.asList("c", "d"), queue.nextBatch().getTestCases());
+    assertEquals(Arrays.asList("e"), queue.nextBatch().getTestCases());
+    assertNull(queue.nextBatch());
+    assertTrue(queue.isEmpty());
+    assertFalse(queue.isDone());
+  }
+
+  @Test
+  void batchSizeBelowOneHandsOutEverythingAtOnce() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a", "b", "c"), 0);
+    assertEquals(1, queue.getBatchCount());
+    assertEquals(Arrays.asList("a", "b", "c"), queue.nextBatch().getTestCases());
+  }
+
+  @Test
+  void claimedBatchIsDone() {
+    AtomicInteger doneCalls = new AtomicInteger();
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a", "b"), 1);
+    queue.setDoneListener(new Runnable() {
+
+      @Override
+      public void run() {
+        doneCalls.incrementAndGet();
+      }
+    });
+    TestCaseQueue.Attempt first = queue.nextBatch();
+    TestCaseQueue.Attempt second = queue.nextBatch();
+    assertTrue(queue.claim(first, true));
+    queue.batchDone(first);
+    assertFalse(queue.isDone());
+    assertTrue(queue.claim(second, true));
+    queue.batchDone(second);
+    assertTrue(queue.isDone());
+    assertEquals(1, doneCalls.get());
+  }
+
+  @Test
+  void batchDoneWithoutClaimIsIgnored() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a"), 1);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    queue.batchDone(attempt);
+    assertFalse(queue.isDone());
+  }
+
+  @Test
+  void givenBackTestCasesAreHandedOutNext() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a", "b", "c", "d"), 2);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    queue.giveBack(attempt, Collections.singletonList("b"));
+    assertEquals(2, queue.getBatchCount());
+    assertEquals(Arrays.asList("b", "c"), queue.nextBatch().getTestCases());
+    assertEquals(Arrays.asList("d"), queue.nextBatch().getTestCases());
+  }
+
+  @Test
+  void givingBackNothingFinishesTheBatch() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a"), 1);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    queue.giveBack(attempt, Collections.<String> emptyList());
+    assertTrue(queue.isDone());
+  }
+
+  @Test
+  void secondGiveBackIsIgnored() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a", "b"), 2);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    queue.giveBack(attempt, Collections.singletonList("a"));
+    queue.giveBack(attempt, attempt.getTestCases());
+    assertEquals(Arrays.asList("a"), queue.nextBatch().getTestCases());
+    assertNull(queue.nextBatch());
+  }
+
+  @Test
+  void giveBackAfterBatchDoneIsIgnored() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a"), 1);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    assertTrue(queue.claim(attempt, true));
+    queue.batchDone(attempt);
+    queue.giveBack(attempt, attempt.getTestCases());
+    assertTrue(queue.isDone());
+    assertNull(queue.nextBatch());
+  }
+
+  @Test
+  void failedSingleAttemptClaimsItsBatch() {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a"), 1);
+    TestCaseQueue.Attempt attempt = queue.nextBatch();
+    assertTrue(queue.claim(attempt, false));
+    assertFalse(attempt.isCancelled());
+  }
+
+  @Test
+  void withoutSpeculationNothingIsCopied() throws InterruptedException {
+    TestCaseQueue queue = new TestCaseQueue(Arrays.asList("a"), 1);
+    assertEquals(Arrays.asList("a"), queue.nextBatchOrCopy().getTestCases());
+    assertNull(queue.nextBatchOrCopy());
+  }
+
+  @Test
+  void overdueBatchesAreCopiedOnce() throws InterruptedException {
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a", "b"), 1000);
+    TestCaseQueue.Attempt a = queue.nextBatchOrCopy();
+    TestCaseQueue.Attempt b = queue.nextBatchOrCopy();
+    assertFalse(a.isSpeculative());
+    queue.now = TestCaseQueue.MIN_SPECULATION_DELAY;
+    TestCaseQueue.Attempt copyOfA = queue.nextBatchOrCopy();
+    assertTrue(copyOfA.isSpeculative());
+    assertEquals(a.getTestCases(), copyOfA.getTestCases());
+    TestCaseQueue.Attempt copyOfB = queue.nextBatchOrCopy();
+    assertEquals(b.getTestCases(), copyOfB.getTestCases());
+    assertNull(queue.nextBatchOrCopy());
+  }
+
+  @Test
+  void batchesAreCopiedAfterSpeculationFactorTimesExpectedDuration()
+      throws InterruptedException {
+    long expectedDuration = TestCaseQueue.MIN_SPECULATION_DELAY;
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), expectedDuration);
+    queue.nextBatchOrCopy();
+    queue.now = 2 * expectedDuration;
+    assertTrue(queue.nextBatchOrCopy().isSpeculative());
+  }
+
+  @Test
+  void batchesWithoutExpectedDurationAreNotCopied() throws InterruptedException {
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), 0);
+    queue.nextBatchOrCopy();
+    queue.now = 100 * TestCaseQueue.MIN_SPECULATION_DELAY;
+    assertNull(queue.nextBatchOrCopy());
+  }
+
+  @Test
+  void firstCompleteAttemptWinsAndCancelsTheOther() throws InterruptedException {
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), 1000);
+    TestCaseQueue.Attempt original = queue.nextBatchOrCopy();
+    queue.now = TestCaseQueue.MIN_SPECULATION_DELAY;
+    TestCaseQueue.Attempt copy = queue.nextBatchOrCopy();
+    assertNotSame(original, copy);
+    assertTrue(queue.claim(copy, true));
+    assertTrue(original.isCancelled());
+    assertFalse(copy.isCancelled());
+    assertFalse(queue.claim(original, false));
+    queue.giveBack(original, original.getTestCases());
+    assertFalse(queue.isDone());
+    queue.batchDone(copy);
+    assertTrue(queue.isDone());
+    assertNull(queue.nextBatchOrCopy());
+  }
+
+  @Test
+  void failedAttemptDoesNotClaimWhileAnotherRuns() throws InterruptedException {
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), 1000);
+    TestCaseQueue.Attempt original = queue.nextBatchOrCopy();
+    queue.now = TestCaseQueue.MIN_SPECULATION_DELAY;
+    TestCaseQueue.Attempt copy = queue.nextBatchOrCopy();
+    assertFalse(queue.claim(copy, false));
+    assertFalse(original.isCancelled());
+    assertTrue(queue.claim(original, true));
+    queue.batchDone(original);
+    assertTrue(queue.isDone());
+  }
+
+  @Test
+  void batchIsGivenBackWhenAllAttemptsFailed() throws InterruptedException {
+    ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), 1000);
+    TestCaseQueue.Attempt original = queue.nextBatchOrCopy();
+    queue.now = TestCaseQueue.MIN_SPECULATION_DELAY;
+    TestCaseQueue.Attempt copy = queue.nextBatchOrCopy();
+    queue.giveBack(copy, copy.getTestCases());
+    assertTrue(queue.isEmpty());
+    queue.giveBack(original, original.getTestCases());
+    assertEquals(Arrays.asList("a"), queue.nextBatch().getTestCases());
+  }
+
+  @Test
+  void waitingWorkerGetsGivenBackTestCases() throws InterruptedException {
+    final ClockedQueue queue = new ClockedQueue(Arrays.asList("a"), 1000);
+    TestCaseQueue.Attempt original = queue.nextBatchOrCopy();
+    final AtomicReference<List<String>> taken = new AtomicReference<>();
+    Thread worker = new Thread() {
+
+      @Override
+      public void run() {
+        try {
+          taken.set(queue.nextBatchOrCopy().getTestCases());
+        } catch (InterruptedException e) {
+          // NOP, the test fails
+        }
+      }
+    };
+    worker.start();
+    // the batch is not due before the delay, so the worker waits
+    Thread.sleep(100);
+    queue.giveBack(original, original.getTestCases());
+    worker.join(10000);
+    assertEquals(Arrays.asList("a"), taken.get());
+  }
+
+  /**
+   * A queue with speculation enabled whose clock is set by the test.
+   */
+  private static final class ClockedQueue extends TestCaseQueue {
+
+    private volatile long now = 0;
+
+    ClockedQueue(List<String> testCases, long expectedDuration) {
+      super(testCases, 1);
+      Map<String, Long> expectedDurations = new HashMap<>();
+      for (String testCase : testCases) {
+        expectedDurations.put(testCase, expectedDuration);
+      }
+      setSpeculation(expectedDurations, 2);
+    }
+
+    @Override
+    long currentTimeMillis() {
+      return now;
+    }
+
+  }
+
+}
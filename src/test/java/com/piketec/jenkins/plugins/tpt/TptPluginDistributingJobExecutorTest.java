@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class TptPluginDistributingJobExecutorTest {
+
+  private final TptLogger logger = new TptLogger(new PrintStream(new ByteArrayOutputStream()));
+
+  @Test
+  void longestTestCaseGoesToLeastLoadedWorkerJob() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a", 7L);
+    durations.put("b", 5L);
+    durations.put("c", 4L);
+    durations.put("d", 3L);
+    durations.put("e", 1L);
+    List<List<String>> subTestSets = TptPluginDistributingJobExecutor
+        .getSubTestSetsByDuration(Arrays.asList("e", "d", "c", "b", "a"), 2, durations, logger);
+    assertEquals(Arrays.asList(Arrays.asList("a", "d"), Arrays.asList("b", "c", "e")),
+        subTestSets);
+  }
+
+  @Test
+  void unknownDurationsAreAssumedToBeTheAverage() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a", 10L);
+    durations.put("b", 2L);
+    List<List<String>> subTestSets = TptPluginDistributingJobExecutor
+        .getSubTestSetsByDuration(Arrays.asList("a", "b", "c"), 2, durations, logger);
+    assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("c", "b")), subTestSets);
+  }
+
+  @Test
+  void equalDurationsAreDistributedByName() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a", 1L);
+    durations.put("b", 1L);
+    durations.put("c", 1L);
+    List<List<String>> subTestSets = TptPluginDistributingJobExecutor
+        .getSubTestSetsByDuration(Arrays.asList("c", "a", "b"), 3, durations, logger);
+    assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b"), Arrays.asList("c")),
+        subTestSets);
+  }
+
+  @Test
+  void noEmptySubTestSetsForFewTestCases() {
+    Map<String, Long> durations = new HashMap<>();
+    durations.put("a", 1L);
+    List<List<String>> subTestSets = TptPluginDistributingJobExecutor
+        .getSubTestSetsByDuration(Arrays.asList("a", "b"), 5, durations, logger);
+    assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b")), subTestSets);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.FilePath;
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+
+@WithJenkins
+class TptPortAllocatorTest {
+
+  @TempDir
+  Path tmp;
+
+  @Test
+  void firstLeaseGetsConfiguredPortAndBindingName(JenkinsRule r) throws Exception {
+    Run< ? , ? > build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+    int basePort = getUnusedPort();
+    try {
+      TptPortAllocator.Lease lease =
+          TptPortAllocator.acquire(new FilePath(tmp.toFile()), build, basePort, "TptApi");
+      assertEquals(basePort, lease.getPort());
+      assertEquals("TptApi", lease.getBindingName());
+    } finally {
+      TptPortAllocator.release(build);
+    }
+  }
+
+  @Test
+  void busyLeaseIsNotShared(JenkinsRule r) throws Exception {
+    Run< ? , ? > build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+    int basePort = getUnusedPort();
+    FilePath workspace = new FilePath(tmp.toFile());
+    try {
+      TptPortAllocator.Lease first = TptPortAllocator.acquire(workspace, build, basePort, "TptApi");
+      TptPortAllocator.Lease second =
+          TptPortAllocator.acquire(workspace, build, basePort, "TptApi");
+      assertNotEquals(first.getPort(), second.getPort());
+      assertNotEquals(first.getBindingName(), second.getBindingName());
+    } finally {
+      TptPortAllocator.release(build);
+    }
+  }
+
+  @Test
+  void idleLeaseIsReusedOnlyBySameDistributingBuild(JenkinsRule r) throws Exception {
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > build = r.buildAndAssertSuccess(project);
+    Run< ? , ? > otherBuild = r.buildAndAssertSuccess(project);
+    int basePort = getUnusedPort();
+    FilePath workspace = new FilePath(tmp.toFile());
+    try {
+      TptPortAllocator.Lease lease = TptPortAllocator.acquire(workspace, build, basePort, "TptApi");
+      TptPortAllocator.free(lease);
+      TptPortAllocator.Lease otherLease =
+          TptPortAllocator.acquire(workspace, otherBuild, basePort, "TptApi");
+      assertNotEquals(lease.getPort(), otherLease.getPort());
+      assertSame(lease, TptPortAllocator.acquire(workspace, build, basePort, "TptApi"));
+    } finally {
+      TptPortAllocator.release(build);
+      TptPortAllocator.release(otherBuild);
+    }
+  }
+
+  @Test
+  void portsInUseOnTheNodeAreSkipped(JenkinsRule r) throws Exception {
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > build = r.buildAndAssertSuccess(project);
+    Run< ? , ? > otherBuild = r.buildAndAssertSuccess(project);
+    FilePath workspace = new FilePath(tmp.toFile());
+    try (ServerSocket otherProcess = new ServerSocket()) {
+      otherProcess.bind(new InetSocketAddress(0));
+      int basePort = otherProcess.getLocalPort() - 1;
+      TptPortAllocator.acquire(workspace, build, basePort, "TptApi");
+      TptPortAllocator.Lease lease =
+          TptPortAllocator.acquire(workspace, otherBuild, basePort, "TptApi");
+      assertEquals(basePort + 2, lease.getPort());
+      assertEquals("TptApi2", lease.getBindingName());
+    } finally {
+      TptPortAllocator.release(build);
+      TptPortAllocator.release(otherBuild);
+    }
+  }
+
+  @Test
+  void configuredPortIsNotProbed(JenkinsRule r) throws Exception {
+    Run< ? , ? > build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+    try (ServerSocket keptOpenTpt = new ServerSocket()) {
+      keptOpenTpt.bind(new InetSocketAddress(0));
+      int basePort = keptOpenTpt.getLocalPort();
+      TptPortAllocator.Lease lease =
+          TptPortAllocator.acquire(new FilePath(tmp.toFile()), build, basePort, "TptApi");
+      assertEquals(basePort, lease.getPort());
+    } finally {
+      TptPortAllocator.release(build);
+    }
+  }
+
+  @Test
+  void releasedPortsAreHandedOutAgain(JenkinsRule r) throws Exception {
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > build = r.buildAndAssertSuccess(project);
+    Run< ? , ? > otherBuild = r.buildAndAssertSuccess(project);
+    int basePort = getUnusedPort();
+    FilePath workspace = new FilePath(tmp.toFile());
+    try {
+      TptPortAllocator.acquire(workspace, build, basePort, "TptApi");
+      TptPortAllocator.release(build);
+      TptPortAllocator.Lease lease =
+          TptPortAllocator.acquire(workspace, otherBuild, basePort, "TptApi");
+      assertEquals(basePort, lease.getPort());
+    } finally {
+      TptPortAllocator.release(otherBuild);
+    }
+  }
+
+  private static int getUnusedPort() throws Exception {
+    try (ServerSocket socket = new ServerSocket()) {
+      socket.bind(new InetSocketAddress(0));
+      return socket.getLocalPort();
+    }
+  }
+
+}
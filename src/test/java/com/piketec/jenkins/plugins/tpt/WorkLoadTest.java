@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+
+@WithJenkins
+class WorkLoadTest {
+
+  @Test
+  void workloadsOfConcurrentBuildsInterleave(JenkinsRule r) throws Exception {
+    String jobName = "interleave";
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > first = r.buildAndAssertSuccess(project);
+    Run< ? , ? > second = r.buildAndAssertSuccess(project);
+    WorkLoad[] a = put(jobName, first, 1, 3);
+    WorkLoad[] b = put(jobName, second, 1, 3);
+    assertPolled(jobName, a[0], b[0], a[1], b[1], a[2], b[2]);
+  }
+
+  @Test
+  void buildWithTwiceThePriorityGetsTwiceTheShare(JenkinsRule r) throws Exception {
+    String jobName = "priority";
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > first = r.buildAndAssertSuccess(project);
+    Run< ? , ? > second = r.buildAndAssertSuccess(project);
+    WorkLoad[] a = put(jobName, first, 2, 4);
+    WorkLoad[] b = put(jobName, second, 1, 2);
+    assertPolled(jobName, a[0], a[1], b[0], a[2], a[3], b[1]);
+  }
+
+  @Test
+  void laterBuildDoesNotWaitForEarlierBuild(JenkinsRule r) throws Exception {
+    String jobName = "late";
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > first = r.buildAndAssertSuccess(project);
+    Run< ? , ? > second = r.buildAndAssertSuccess(project);
+    WorkLoad[] a = put(jobName, first, 1, 5);
+    assertSame(a[0], WorkLoad.pollWorkload(jobName));
+    assertSame(a[1], WorkLoad.pollWorkload(jobName));
+    WorkLoad[] b = put(jobName, second, 1, 1);
+    assertPolled(jobName, a[2], b[0], a[3], a[4]);
+  }
+
+  @Test
+  void cleanRemovesOnlyWorkloadsOfTheBuild(JenkinsRule r) throws Exception {
+    String jobName = "clean";
+    FreeStyleProject project = r.createFreeStyleProject();
+    Run< ? , ? > first = r.buildAndAssertSuccess(project);
+    Run< ? , ? > second = r.buildAndAssertSuccess(project);
+    put(jobName, first, 1, 2);
+    WorkLoad[] b = put(jobName, second, 1, 1);
+    WorkLoad.clean(jobName, first);
+    assertPolled(jobName, b[0]);
+    WorkLoad.clean(jobName, second);
+    assertNull(WorkLoad.pollWorkload(jobName));
+  }
+
+  @Test
+  void workloadIsOnlyQueuedOnce(JenkinsRule r) throws Exception {
+    String jobName = "once";
+    Run< ? , ? > build = r.buildAndAssertSuccess(r.createFreeStyleProject());
+    WorkLoad[] a = put(jobName, build, 1, 1);
+    WorkLoad.putWorkLoad(jobName, a[0]);
+    assertPolled(jobName, a[0]);
+  }
+
+  private static WorkLoad[] put(String jobName, Run< ? , ? > build, int priority, int count) {
+    DistributingSettings settings = new DistributingSettings();
+    settings.setWorkerJobPriority(priority);
+    WorkLoad[] result = new WorkLoad[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = new WorkLoad(null, new TestCaseQueue(Arrays.asList("test" + i), 1), null, build,
+          null, null);
+      result[i].setSettings(settings);
+      WorkLoad.putWorkLoad(jobName, result[i]);
+    }
+    return result;
+  }
+
+  private static void assertPolled(String jobName, WorkLoad... expected) {
+    for (WorkLoad w : expected) {
+      assertSame(w, WorkLoad.pollWorkload(jobName));
+    }
+    assertNull(WorkLoad.pollWorkload(jobName));
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2018 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.jenkins.plugins.tpt.publisher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.piketec.jenkins.plugins.tpt.publisher.TrendGraph.ResultData;
+
+class TrendIndexTest {
+
+  @TempDir
+  Path tmp;
+
+  private File file;
+
+  @BeforeEach
+  void setUp() {
+    file = tmp.resolve("tpt-trend-index.txt").toFile();
+  }
+
+  @Test
+  void writtenIndexIsReadAgain() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    index.add(data(1, 4, 3, 2, 1), file);
+    index.add(data(2, 10, 0, 0, 0), file);
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(2, entries.size());
+    assertData(entries.get(0), 2, 10, 0, 0, 0);
+    assertData(entries.get(1), 1, 4, 3, 2, 1);
+    assertEquals(10, entries.get(1).total);
+  }
+
+  @Test
+  void entriesAreOrderedNewestFirst() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    index.add(data(3, 1, 0, 0, 0), file);
+    index.add(data(1, 1, 0, 0, 0), file);
+    index.add(data(2, 1, 0, 0, 0), file);
+    List<ResultData> history = index.getHistory();
+    assertEquals(3, history.get(0).buildNummer);
+    assertEquals(2, history.get(1).buildNummer);
+    assertEquals(1, history.get(2).buildNummer);
+  }
+
+  @Test
+  void addingABuildAgainReplacesItsEntry() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    index.add(data(1, 1, 0, 0, 0), file);
+    index.add(data(1, 0, 0, 0, 1), file);
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(1, entries.size());
+    assertData(entries.get(0), 1, 0, 0, 0, 1);
+  }
+
+  @Test
+  void indexIsLimitedToMaxSize() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    for (int i = 1; i <= TrendIndex.MAX_SIZE + 5; i++) {
+      index.add(data(i, 1, 0, 0, 0), file);
+    }
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(TrendIndex.MAX_SIZE, entries.size());
+    assertEquals(TrendIndex.MAX_SIZE + 5, entries.get(0).buildNummer);
+    assertEquals(6, entries.get(TrendIndex.MAX_SIZE - 1).buildNummer);
+    assertEquals(TrendIndex.HISTORY_SIZE, index.getHistory().size());
+  }
+
+  @Test
+  void removedBuildIsWritten() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    index.add(data(1, 1, 0, 0, 0), file);
+    index.add(data(2, 1, 0, 0, 0), file);
+    index.removeAndWrite(1, file);
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(1, entries.size());
+    assertEquals(2, entries.get(0).buildNummer);
+  }
+
+  @Test
+  void removingAnUnknownBuildDoesNotWrite() throws IOException {
+    TrendIndex index = new TrendIndex(new ArrayList<ResultData>());
+    index.removeAndWrite(1, file);
+    assertFalse(file.exists());
+  }
+
+  @Test
+  void removedBuildIsWrittenWithoutLoadedIndex() throws IOException {
+    write("2 1 0 0 0\n1 1 0 0 0\n");
+    TrendIndex.removeFromFile(1, file);
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(1, entries.size());
+    assertEquals(2, entries.get(0).buildNummer);
+  }
+
+  @Test
+  void missingIndexIsNotCreatedWhenRemoving() throws IOException {
+    TrendIndex.removeFromFile(1, file);
+    assertFalse(file.exists());
+  }
+
+  @Test
+  void missingIndexIsNotRead() {
+    assertNull(TrendIndex.read(file));
+  }
+
+  @Test
+  void brokenIndexIsNotRead() throws IOException {
+    write("2 1 0 0 0\n1 x 0 0 0\n");
+    assertNull(TrendIndex.read(file));
+  }
+
+  @Test
+  void linesWithWrongFieldCountAreSkipped() throws IOException {
+    write("2 1 0 0 0\n\n1 1 0 0\n");
+    List<ResultData> entries = TrendIndex.read(file);
+    assertEquals(1, entries.size());
+    assertEquals(2, entries.get(0).buildNummer);
+  }
+
+  private void write(String content) throws IOException {
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ResultData data(int buildNumber, int passed, int inconclusive, int error,
+                                 int failed) {
+    ResultData data = new ResultData();
+    data.buildNummer = buildNumber;
+    data.passed = passed;
+    data.inconclusive = inconclusive;
+    data.error = error;
+    data.failed = failed;
+    data.total = passed + inconclusive + error + failed;
+    return data;
+  }
+
+  private static void assertData(ResultData data, int buildNumber, int passed, int inconclusive,
+                                 int error, int failed) {
+    assertEquals(buildNumber, data.buildNummer);
+    assertEquals(passed, data.passed);
+    assertEquals(inconclusive, data.inconclusive);
+    assertEquals(error, data.error);
+    assertEquals(failed, data.failed);
+  }
+
+}
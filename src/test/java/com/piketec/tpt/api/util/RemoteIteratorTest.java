@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014-2025 Synopsys Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.piketec.tpt.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import com.piketec.tpt.api.ApiException;
+
+class RemoteIteratorTest {
+
+  @Test
+  void elementsAreFetchedInBatches() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b", "c", "d", "e");
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+        toList(new RemoteIterator<>(delegate, 2)));
+    // two full batches, the rest and the empty batch marking the end
+    assertEquals(4, delegate.batchCalls);
+    assertEquals(0, delegate.singleCalls);
+  }
+
+  @Test
+  void singleElementMethodsAreUsedIfBatchCallIsNotSupported() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b", "c");
+    delegate.batchCallsBeforeFailure = 0;
+    assertEquals(Arrays.asList("a", "b", "c"), toList(new RemoteIterator<>(delegate, 2)));
+    assertEquals(1, delegate.batchCalls);
+  }
+
+  @Test
+  void failingBatchCallAfterSuccessfulOneIsAnApiException() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b", "c");
+    delegate.batchCallsBeforeFailure = 1;
+    final RemoteIterator<String> iterator = new RemoteIterator<>(delegate, 2);
+    assertEquals("a", iterator.next());
+    assertEquals("b", iterator.next());
+    assertThrows(ApiException.class, new Executable() {
+
+      @Override
+      public void execute() {
+        iterator.hasNext();
+      }
+    });
+  }
+
+  @Test
+  void batchSizeOfOneDoesNotFetchBatches() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b");
+    RemoteIterator<String> iterator = new RemoteIterator<>(delegate, 1);
+    assertEquals(Arrays.asList("a", "b"), toList(iterator));
+    assertEquals(0, delegate.batchCalls);
+    iterator.remove();
+    assertEquals(1, delegate.removeCalls);
+  }
+
+  @Test
+  void plainAccessIteratorIsNotBatched() {
+    FakeIterator delegate = new FakeIterator("a", "b");
+    assertEquals(Arrays.asList("a", "b"), toList(new RemoteIterator<>(delegate, 2)));
+  }
+
+  @Test
+  void removeIsNotSupportedWhileBatched() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b");
+    final RemoteIterator<String> iterator = new RemoteIterator<>(delegate, 2);
+    iterator.next();
+    assertThrows(UnsupportedOperationException.class, new Executable() {
+
+      @Override
+      public void execute() {
+        iterator.remove();
+      }
+    });
+    assertEquals(0, delegate.removeCalls);
+  }
+
+  @Test
+  void removeIsDelegatedAfterFallback() {
+    FakeBatchIterator delegate = new FakeBatchIterator("a", "b");
+    delegate.batchCallsBeforeFailure = 0;
+    RemoteIterator<String> iterator = new RemoteIterator<>(delegate, 2);
+    iterator.next();
+    iterator.remove();
+    assertEquals(1, delegate.removeCalls);
+  }
+
+  @Test
+  void nextAfterLastBatchedElementThrows() {
+    final RemoteIterator<String> iterator =
+        new RemoteIterator<>(new FakeBatchIterator("a"), 2);
+    assertEquals("a", iterator.next());
+    assertFalse(iterator.hasNext());
+    assertThrows(NoSuchElementException.class, new Executable() {
+
+      @Override
+      public void execute() {
+        iterator.next();
+      }
+    });
+  }
+
+  @Test
+  void remoteExceptionOfSingleElementCallIsAnApiException() {
+    FakeIterator delegate = new FakeIterator("a");
+    delegate.failing = true;
+    final RemoteIterator<String> iterator = new RemoteIterator<>(delegate);
+    assertThrows(ApiException.class, new Executable() {
+
+      @Override
+      public void execute() {
+        iterator.hasNext();
+      }
+    });
+  }
+
+  private static List<String> toList(RemoteIterator<String> iterator) {
+    List<String> result = new ArrayList<>();
+    while (iterator.hasNext()) {
+      result.add(iterator.next());
+    }
+    return result;
+  }
+
+  private static class FakeIterator implements AccessIterator<String> {
+
+    final List<String> elements;
+
+    int position = 0;
+
+    int singleCalls = 0;
+
+    int removeCalls = 0;
+
+    boolean failing = false;
+
+    FakeIterator(String... elements) {
+      this.elements = Arrays.asList(elements);
+    }
+
+    @Override
+    public boolean hasNext() throws RemoteException {
+      call();
+      return position < elements.size();
+    }
+
+    @Override
+    public String next() throws RemoteException {
+      call();
+      return elements.get(position++);
+    }
+
+    @Override
+    public void remove() throws RemoteException {
+      call();
+      removeCalls++;
+    }
+
+    private void call() throws RemoteException {
+      if (failing) {
+        throw new RemoteException("connection lost");
+      }
+      singleCalls++;
+    }
+
+  }
+
+  private static class FakeBatchIterator extends FakeIterator
+      implements BatchAccessIterator<String> {
+
+    int batchCalls = 0;
+
+    int batchCallsBeforeFailure = Integer.MAX_VALUE;
+
+    FakeBatchIterator(String... elements) {
+      super(elements);
+    }
+
+    @Override
+    public List<String> nextBatch(int maxCount) throws RemoteException {
+      batchCalls++;
+      if (batchCalls > batchCallsBeforeFailure) {
+        throw new RemoteException("not supported");
+      }
+      int end = Math.min(elements.size(), position + maxCount);
+      List<String> batch = new ArrayList<>(elements.subList(position, end));
+      position = end;
+      return batch;
+    }
+
+  }
+
+}